@@ -0,0 +1,110 @@
+import cache.BinaryFormat;
+import cache.CompilationCache;
+import parser.AstArena;
+import parser.AstPrinter;
+import parser.Parser;
+import parser.Node;
+import parser.TreeNode;
+import parser.TreePrinter;
+import csemachine.ControlStructureGenerator;
+import csemachine.ControlStructureSharing;
+import optimizer.OptimizationPass;
+import optimizer.Optimizer;
+import standardizer.Standardizer;
+import standardizer.TreeSharing;
+
+import java.io.*;
+
+// Output of the -ast, -st, -sharing and -opt-stats switches. Kept out of myrpal, so running a program, and a .rpc
+// file in particular, does not load the parser, standardizer or optimizer classes these need.
+class Inspector {
+    // -Drpal.ast=stream prints the -ast output while parsing, without building the tree
+    private static final boolean STREAM = "stream".equals(System.getProperty("rpal.ast"));
+    // -Drpal.tree.format=json or binary dumps the -ast and -st trees instead of printing them as text
+    private static final String TREE_FORMAT = System.getProperty("rpal.tree.format", "text");
+
+    private Inspector() {
+    }
+
+    static void printAbstractSyntaxTree(String fileName) throws IOException {
+        if (STREAM) {
+            System.out.println("Abstract Syntax Tree:");
+            AstPrinter printer = new AstPrinter(System.out);
+            try {
+                Parser.parse(fileName, printer);
+            } finally {
+                printer.flush();
+            }
+            System.out.println();
+        } else if (myrpal.ARENA) {
+            AstArena ast = Parser.parseArena(fileName);
+            printTree("Abstract Syntax Tree:", ast.node(ast.root()));
+        } else {
+            Node ast = Parser.parse(fileName);
+            printTree("Abstract Syntax Tree:", ast);
+        }
+    }
+
+    static void printStandardizedTree(String fileName) throws IOException {
+        TreeNode standardizedTree = CompilationCache.open(myrpal.ARENA).standardizedTree(fileName);
+        printTree("Standardized Tree:", standardizedTree);
+    }
+
+    // Print a tree as text under its title, or as a JSON or binary dump chosen with -Drpal.tree.format
+    private static void printTree(String title, TreeNode tree) throws IOException {
+        if ("json".equals(TREE_FORMAT)) {
+            TreePrinter printer = new TreePrinter(System.out);
+            printer.printJson(tree);
+            printer.flush();
+        } else if ("binary".equals(TREE_FORMAT)) {
+            // Readable with cache.BinaryFormat.readTree
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out, 1 << 16));
+            BinaryFormat.writeTree(out, tree);
+            out.flush();
+        } else {
+            System.out.println(title);
+            TreePrinter printer = new TreePrinter(System.out);
+            printer.print(tree);
+            printer.flush();
+            System.out.println();
+        }
+    }
+
+    // Report how much of the standardized tree and of the control structures is shared
+    static void printSharing(String fileName) throws IOException {
+        TreeSharing trees = new TreeSharing();
+        Node tree = trees.shareTree(Standardizer.makeStandardizedTree(Parser.parse(fileName)));
+        ControlStructureSharing structures = new ControlStructureSharing();
+        ControlStructureGenerator.generate(tree, structures);
+
+        System.out.println("Sharing:");
+        printShared("Standardized tree nodes", trees.getNodes(), trees.getSharedNodes());
+        printShared("Control structures", structures.getStructures(), structures.getSharedStructures());
+        printShared("Control elements", structures.getElements(), structures.getSharedElements());
+    }
+
+    // Report what each optimization pass did to the program and how much smaller it became
+    static void printOptimization(String fileName, int level) throws IOException {
+        Node tree = Standardizer.makeStandardizedTree(Parser.parse(fileName));
+        Optimizer optimizer = new Optimizer(level);
+        Node optimized = optimizer.optimize(tree);
+        ControlStructureSharing before = new ControlStructureSharing();
+        ControlStructureGenerator.generate(tree, before);
+        ControlStructureSharing after = new ControlStructureSharing();
+        ControlStructureGenerator.generate(optimized, after);
+
+        int rounds = optimizer.getRounds();
+        System.out.println("Optimization (-O" + level + ", " + rounds + (rounds == 1 ? " round):" : " rounds):"));
+        for (OptimizationPass pass : optimizer.getPasses()) {
+            System.out.printf("%-24s %10d rewrites%n", pass.getName(), pass.getRewrites());
+        }
+        printShared("Control structures", before.getSharedStructures(), after.getSharedStructures());
+        printShared("Control elements", before.getSharedElements(), after.getSharedElements());
+    }
+
+    private static void printShared(String name, int before, int after) {
+        // Hoisting adds a few structures, so the program can also grow
+        System.out.printf("%-24s %10d -> %10d (%.1f%% %s)%n", name, before, after,
+                before == 0 ? 0.0 : 100.0 * Math.abs(before - after) / before, after > before ? "more" : "less");
+    }
+}
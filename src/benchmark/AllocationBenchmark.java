@@ -0,0 +1,74 @@
+package benchmark;
+
+import csemachine.CSEMachine;
+import csemachine.Program;
+import parser.Parser;
+import scanner.LexicalAnalyzer;
+import standardizer.Standardizer;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Heap allocated and time taken by one run of the CSE machine, and collections over all timed runs, on programs
+// compiled beforehand: some of the test programs and generated deep and branching recursion. Then the bytes
+// allocated per integer operator, from two generated loops that differ only in how many operators they apply.
+// Usage: java benchmark.AllocationBenchmark [tests directory] [depth] [fibonacci] [rounds] [iterations]
+public class AllocationBenchmark {
+    private static final String[] TESTS = {"towers", "recurs.1", "sum", "vectorsum"};
+
+    public static void main(String[] args) throws IOException {
+        Path tests = Paths.get(args.length > 0 ? args[0] : "../Tests");
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int fibonacci = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int iterations = args.length > 4 ? Integer.parseInt(args[4]) : 10_000;
+
+        for (String test : TESTS) {
+            measure(test, compile(Files.readString(tests.resolve(test))), rounds);
+        }
+        measure("Sum " + depth, compile(SyntheticPrograms.sum(depth)), rounds);
+        measure("Fib " + fibonacci, compile(SyntheticPrograms.recursion(0, fibonacci)), rounds);
+
+        Program shorter = compile(SyntheticPrograms.arithmetic(iterations, 10));
+        Program longer = compile(SyntheticPrograms.arithmetic(iterations, 20));
+        for (int i = 0; i < rounds; i++) {
+            Timing.run(shorter);
+            Timing.run(longer);
+        }
+        long before = Timing.allocated();
+        Timing.run(shorter);
+        long middle = Timing.allocated();
+        Timing.run(longer);
+        long extra = Timing.allocated() - middle - (middle - before);
+        long operators = 50L * iterations;
+        System.out.printf("%d more operators %10d bytes %8.3f bytes/operator%n", operators, extra,
+                (double) extra / operators);
+    }
+
+    private static Program compile(String source) {
+        return CSEMachine.compile(Standardizer.makeStandardizedTree(
+                new Parser(LexicalAnalyzer.scan(source).cursor()).parseTokens()));
+    }
+
+    private static void measure(String name, Program program, int rounds) {
+        long collections = collections();
+        double time = Timing.time(rounds, () -> Timing.run(program));
+        collections = collections() - collections;
+        long before = Timing.allocated();
+        Timing.run(program);
+        long bytes = Timing.allocated() - before;
+        System.out.printf("%-12s %12d bytes %10.3f ms %6d collections%n", name, bytes, time, collections);
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += collector.getCollectionCount();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,59 @@
+package benchmark;
+
+import parser.AstArena;
+import parser.Node;
+import parser.Parser;
+import scanner.LexicalAnalyzer;
+import scanner.TokenBuffer;
+
+// Compares the heap taken by an AST of Node objects with the same AST in an AstArena.
+// Usage: java benchmark.AstMemoryBenchmark [definitions]
+public class AstMemoryBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int definitions = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+        // The recursive parser needs a deep stack for the long let chain
+        Thread thread = new Thread(null, () -> run(definitions), "benchmark", 1L << 30);
+        thread.start();
+        thread.join();
+    }
+
+    private static void run(int definitions) {
+        TokenBuffer tokens = LexicalAnalyzer.scan(SyntheticPrograms.definitions(definitions));
+
+        long before = usedHeap();
+        Node tree = new Parser(tokens.cursor()).parseTokens();
+        long nodeBytes = usedHeap() - before;
+        int nodes = count(tree);
+
+        before = usedHeap();
+        AstArena arena = new Parser(tokens.cursor()).parseArena();
+        long arenaBytes = usedHeap() - before;
+
+        System.out.printf("%d nodes%n", nodes);
+        System.out.printf("Node objects %10d bytes %6.1f bytes/node%n", nodeBytes, (double) nodeBytes / nodes);
+        System.out.printf("AstArena     %10d bytes %6.1f bytes/node (%d slots)%n", arenaBytes, (double) arenaBytes / nodes, arena.size());
+
+        // Keep both trees reachable until they are measured
+        if (tree.getChildren().isEmpty() || arena.root() < 0) {
+            System.out.println();
+        }
+    }
+
+    private static int count(Node node) {
+        int nodes = 1;
+        for (Node child : node.getChildren()) {
+            nodes += count(child);
+        }
+        return nodes;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,52 @@
+package benchmark;
+
+import scanner.CharScanner;
+import scanner.LexicalAnalyzer;
+import scanner.ScalarCharScanner;
+import scanner.TokenBuffer;
+
+// Compares lexing throughput with the scalar and the vector run scanner.
+// The vector scanner is only measured when started with --add-modules jdk.incubator.vector.
+// Usage: java --add-modules jdk.incubator.vector benchmark.CharScannerBenchmark [definitions] [rounds]
+public class CharScannerBenchmark {
+
+    public static void main(String[] args) {
+        int definitions = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        CharScanner scalar = new ScalarCharScanner();
+        CharScanner vector = loadVectorScanner();
+        if (vector == null) {
+            System.out.println("Vector API not available; measuring the scalar scanner only");
+        }
+
+        run("generated program", SyntheticPrograms.definitions(definitions).toCharArray(), rounds, scalar, vector);
+        run("long comments and indentation", SyntheticPrograms.commentHeavy(definitions).toCharArray(), rounds, scalar, vector);
+    }
+
+    private static void run(String name, char[] source, int rounds, CharScanner scalar, CharScanner vector) {
+        double megabytes = source.length / (1024.0 * 1024.0);
+        System.out.printf("%s (%.1f MB of characters)%n", name, megabytes);
+
+        TokenBuffer expected = LexicalAnalyzer.scan(source, scalar);
+        double scalarTime = Timing.time(rounds, () -> LexicalAnalyzer.scan(source, scalar));
+        System.out.printf("  scalar %8.1f ms %8.1f MB/s%n", scalarTime, megabytes * 1000 / scalarTime);
+
+        if (vector != null) {
+            if (!LexicalAnalyzer.scan(source, vector).sameTokens(expected)) {
+                throw new IllegalStateException("Vector scanner output differs on " + name);
+            }
+            double vectorTime = Timing.time(rounds, () -> LexicalAnalyzer.scan(source, vector));
+            System.out.printf("  vector %8.1f ms %8.1f MB/s  speedup %.2fx%n",
+                    vectorTime, megabytes * 1000 / vectorTime, scalarTime / vectorTime);
+        }
+    }
+
+    private static CharScanner loadVectorScanner() {
+        try {
+            return (CharScanner) Class.forName("scanner.VectorCharScanner").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
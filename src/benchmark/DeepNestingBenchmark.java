@@ -0,0 +1,73 @@
+package benchmark;
+
+import parser.Node;
+import parser.Parser;
+import scanner.LexicalAnalyzer;
+import scanner.TokenBuffer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Parses deeply nested programs with the recursive and the iterative parser.
+// The recursive parser runs on the default thread stack and is expected to overflow; the iterative
+// parser must succeed and produce the same tree as the recursive parser given a huge stack.
+// Usage: java benchmark.DeepNestingBenchmark [depth]
+public class DeepNestingBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        for (String shape : SyntheticPrograms.NESTED_SHAPES) {
+            TokenBuffer tokens = LexicalAnalyzer.scan(SyntheticPrograms.nested(shape, depth));
+
+            long start = System.nanoTime();
+            Node iterative = parse(tokens, true);
+            double milliseconds = (System.nanoTime() - start) / 1e6;
+
+            String recursive;
+            try {
+                parse(tokens, false);
+                recursive = "ok";
+            } catch (StackOverflowError e) {
+                recursive = "StackOverflowError";
+            }
+
+            Node[] expected = new Node[1];
+            Thread thread = new Thread(null, () -> expected[0] = parse(tokens, false), "recursive", 1L << 32);
+            thread.start();
+            thread.join();
+            if (expected[0] == null) {
+                throw new IllegalStateException("Recursive parse failed on " + shape);
+            }
+            if (!sameTree(iterative, expected[0])) {
+                throw new IllegalStateException("Iterative parser produced a different tree for " + shape);
+            }
+
+            System.out.printf("%-12s depth %d: iterative %8.1f ms, recursive on default stack: %s%n",
+                    shape, depth, milliseconds, recursive);
+        }
+    }
+
+    private static Node parse(TokenBuffer tokens, boolean iterative) {
+        Parser parser = new Parser(tokens.cursor());
+        parser.setIterative(iterative);
+        return parser.parseTokens();
+    }
+
+    // Compare two trees without recursion
+    private static boolean sameTree(Node first, Node second) {
+        Deque<Node[]> pending = new ArrayDeque<>();
+        pending.push(new Node[] { first, second });
+        while (!pending.isEmpty()) {
+            Node[] pair = pending.pop();
+            if (!pair[0].getValue().equals(pair[1].getValue())
+                    || pair[0].getChildren().size() != pair[1].getChildren().size()) {
+                return false;
+            }
+            for (int i = 0; i < pair[0].getChildren().size(); i++) {
+                pending.push(new Node[] { pair[0].getChildren().get(i), pair[1].getChildren().get(i) });
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,62 @@
+package benchmark;
+
+import csemachine.CSEMachine;
+import csemachine.Program;
+import parser.Node;
+import parser.Parser;
+import scanner.LexicalAnalyzer;
+import standardizer.Standardizer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+// Times the CSE machine alone, on programs compiled beforehand: every program of the test directory, and
+// generated deep and branching recursion. Programs that fail are reported and skipped.
+// Usage: java benchmark.ExecutionBenchmark [tests directory] [rounds] [depth] [fibonacci]
+public class ExecutionBenchmark {
+    // Uses a name it never defines, on which the machine exits the whole process
+    private static final List<String> SKIPPED = List.of("add");
+
+    public static void main(String[] args) throws IOException {
+        Path tests = Paths.get(args.length > 0 ? args[0] : "../Tests");
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        int fibonacci = args.length > 3 ? Integer.parseInt(args[3]) : 18;
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(tests)) {
+            list.filter(Files::isRegularFile).filter(file -> !SKIPPED.contains(file.getFileName().toString()))
+                    .sorted().forEach(files::add);
+        }
+        double corpus = 0;
+        int timed = 0;
+        for (Path file : files) {
+            Program program = compile(Files.readString(file));
+            try {
+                Timing.run(program);
+            } catch (RuntimeException e) {
+                System.out.printf("%-16s fails: %s%n", file.getFileName(), e);
+                continue;
+            }
+            double time = Timing.time(rounds, () -> Timing.run(program));
+            System.out.printf("%-16s %10.4f ms%n", file.getFileName(), time);
+            corpus += time;
+            timed++;
+        }
+        System.out.printf("%d test programs  %10.4f ms%n", timed, corpus);
+
+        Program recursion = compile(SyntheticPrograms.recursion(depth, fibonacci));
+        System.out.printf("Sum %d, Fib %d   %10.4f ms%n", depth, fibonacci,
+                Timing.time(Math.max(1, rounds / 20), () -> Timing.run(recursion)));
+    }
+
+    private static Program compile(String source) {
+        Node tree = new Parser(LexicalAnalyzer.scan(source).cursor()).parseTokens();
+        return CSEMachine.compile(Standardizer.makeStandardizedTree(tree));
+    }
+}
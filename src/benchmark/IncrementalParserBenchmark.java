@@ -0,0 +1,44 @@
+package benchmark;
+
+import parser.IncrementalParser;
+
+// Latency of one edit through IncrementalParser on programs of growing size, at the front, middle and back of the
+// let chain. One edit replaces a digit, so the tokens stay the same; the other inserts two tokens and removes them
+// again. An edit should cost about the same however many definitions there are.
+// Usage: java benchmark.IncrementalParserBenchmark [rounds]
+public class IncrementalParserBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+
+        // The first parse of a long let chain recurses deeply
+        Thread thread = new Thread(null, () -> run(rounds), "benchmark", 1L << 30);
+        thread.start();
+        thread.join();
+    }
+
+    private static void run(int rounds) {
+        System.out.printf("%12s %-6s %14s %14s%n", "definitions", "where", "us/digit edit", "us/token edit");
+        for (int definitions = 1000; definitions <= 64000; definitions *= 4) {
+            String source = SyntheticPrograms.definitions(definitions);
+            IncrementalParser parser = new IncrementalParser(source);
+
+            int front = source.indexOf("* 2 -") + 2;
+            int back = source.lastIndexOf("* 2 -") + 2;
+            int middle = source.indexOf("* 2 -", source.length() / 3) + 2;
+            for (int offset : new int[] { front, middle, back }) {
+                // Each round edits twice and leaves the text as it was
+                double digit = Timing.time(rounds, () -> {
+                    parser.edit(offset, 1, "3");
+                    parser.edit(offset, 1, "2");
+                });
+                double token = Timing.time(rounds, () -> {
+                    parser.edit(offset + 1, 0, " + 1");
+                    parser.edit(offset + 1, 4, "");
+                });
+                System.out.printf("%12d %-6s %14.1f %14.1f%n", definitions,
+                        offset == front ? "front" : offset == back ? "back" : "middle", digit * 1e3 / 2, token * 1e3 / 2);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package benchmark;
+
+import csemachine.CSEMachine;
+import csemachine.Program;
+import parser.Parser;
+import scanner.LexicalAnalyzer;
+import standardizer.Standardizer;
+
+// Times numeric programs whose integers stay within a long and the same programs grown past it, on programs
+// compiled beforehand, with what they print.
+// Usage: java benchmark.IntegerBenchmark [rounds]
+public class IntegerBenchmark {
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        measure("Sum 2000", SyntheticPrograms.sum(2000), rounds);
+        measure("Factorial 20", SyntheticPrograms.factorial(20), rounds);
+        measure("Factorial 300", SyntheticPrograms.factorial(300), rounds);
+        measure("Binomials 60", SyntheticPrograms.binomials(60), rounds);
+        measure("Binomials 200", SyntheticPrograms.binomials(200), rounds);
+        measure("Powers 3, 39", SyntheticPrograms.powers(3, 39), rounds);
+        measure("Powers 3, 300", SyntheticPrograms.powers(3, 300), rounds);
+    }
+
+    private static void measure(String name, String source, int rounds) {
+        Program program = CSEMachine.compile(Standardizer.makeStandardizedTree(
+                new Parser(LexicalAnalyzer.scan(source).cursor()).parseTokens()));
+        String printed = Timing.run(program).trim();
+        double time = Timing.time(rounds, () -> Timing.run(program));
+        if (printed.length() > 40) {
+            printed = printed.substring(0, 18) + "..." + printed.substring(printed.length() - 18);
+        }
+        System.out.printf("%-14s %10.4f ms  %s%n", name, time, printed);
+    }
+}
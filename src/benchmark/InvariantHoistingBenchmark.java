@@ -0,0 +1,35 @@
+package benchmark;
+
+import csemachine.CSEMachine;
+import csemachine.Program;
+import optimizer.Optimizer;
+import parser.Node;
+import parser.Parser;
+import scanner.LexicalAnalyzer;
+import standardizer.Standardizer;
+
+// Runs a recursive tuple walker compiled with -O1 and with -O2, which hoists the expression its recursive function
+// computes on every call out of the recursion, and checks that both print the same.
+// Usage: java benchmark.InvariantHoistingBenchmark [length] [rounds]
+public class InvariantHoistingBenchmark {
+
+    public static void main(String[] args) {
+        int length = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        String source = SyntheticPrograms.tupleWalker(length);
+        Node tree = Standardizer.makeStandardizedTree(new Parser(LexicalAnalyzer.scan(source).cursor()).parseTokens());
+        Program plain = CSEMachine.compile(new Optimizer(1).optimize(tree));
+        Program hoisted = CSEMachine.compile(new Optimizer(2).optimize(tree));
+
+        String expected = Timing.run(plain);
+        if (!Timing.run(hoisted).equals(expected)) {
+            throw new IllegalStateException("Output differs with invariant hoisting");
+        }
+        System.out.printf("tuple walker: %d elements, prints %s", length, expected);
+
+        double before = Timing.time(rounds, () -> Timing.run(plain));
+        double after = Timing.time(rounds, () -> Timing.run(hoisted));
+        System.out.printf("-O1 %8.2f ms%n-O2 %8.2f ms  speedup %.2fx%n", before, after, before / after);
+    }
+}
@@ -0,0 +1,39 @@
+package benchmark;
+
+import scanner.LexicalAnalyzer;
+import scanner.ParallelLexer;
+import scanner.TokenBuffer;
+
+import java.util.concurrent.ForkJoinPool;
+
+// Compares the sequential lexer with the parallel lexer on 1, 2, 4, ... worker threads.
+// Usage: java benchmark.ParallelLexerBenchmark [definitions] [rounds]
+public class ParallelLexerBenchmark {
+
+    public static void main(String[] args) {
+        int definitions = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        char[] source = SyntheticPrograms.definitions(definitions).toCharArray();
+        double megabytes = source.length / (1024.0 * 1024.0);
+        System.out.printf("Source: %.1f MB of characters%n", megabytes);
+
+        TokenBuffer expected = LexicalAnalyzer.scan(source);
+        double sequential = Timing.time(rounds, () -> LexicalAnalyzer.scan(source));
+        System.out.printf("sequential   %8.1f ms %8.1f MB/s%n", sequential, megabytes * 1000 / sequential);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelLexer lexer = new ParallelLexer(pool, 1 << 18);
+
+            if (!lexer.scan(source).sameTokens(expected)) {
+                throw new IllegalStateException("Parallel lexer output differs with " + threads + " threads");
+            }
+            double parallel = Timing.time(rounds, () -> lexer.scan(source));
+            System.out.printf("%2d thread(s) %8.1f ms %8.1f MB/s  speedup %.2fx%n",
+                    threads, parallel, megabytes * 1000 / parallel, sequential / parallel);
+            pool.shutdown();
+        }
+    }
+}
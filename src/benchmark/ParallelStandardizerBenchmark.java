@@ -0,0 +1,83 @@
+package benchmark;
+
+import parser.Node;
+import parser.Parser;
+import parser.TreePrinter;
+import scanner.LexicalAnalyzer;
+import scanner.TokenBuffer;
+import standardizer.ParallelStandardizer;
+import standardizer.Standardizer;
+
+import java.io.StringWriter;
+import java.util.concurrent.ForkJoinPool;
+
+// Compares the sequential standardizer with the parallel one on 1, 2, 4, ... worker threads, for a long let
+// chain and for simultaneous definitions joined by 'and', and checks that every result equals the sequential one.
+// Usage: java benchmark.ParallelStandardizerBenchmark [definitions] [rounds] [threshold]
+public class ParallelStandardizerBenchmark {
+
+    public static void main(String[] args) {
+        int definitions = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int threshold = args.length > 2 ? Integer.parseInt(args[2]) : ParallelStandardizer.DEFAULT_THRESHOLD;
+
+        run("let chain", SyntheticPrograms.definitions(definitions), rounds, threshold);
+        run("8 x 'and'", SyntheticPrograms.simultaneous(8, definitions / 8), rounds, threshold);
+    }
+
+    private static void run(String name, String source, int rounds, int threshold) {
+        TokenBuffer tokens = LexicalAnalyzer.scan(source);
+        String expected = print(Standardizer.makeStandardizedTree(parse(tokens)));
+        System.out.printf("%s: %d characters%n", name, source.length());
+
+        // Standardizing changes the tree, so the trees of all rounds are parsed before timing
+        double sequential = time(rounds, tokens, Standardizer::makeStandardizedTree);
+        System.out.printf("sequential   %8.1f ms%n", sequential);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelStandardizer standardizer = new ParallelStandardizer(pool, threshold);
+
+            if (!print(standardizer.standardize(parse(tokens))).equals(expected)) {
+                throw new IllegalStateException("Parallel standardizer output differs with " + threads + " threads");
+            }
+            double parallel = time(rounds, tokens, standardizer::standardize);
+            System.out.printf("%2d thread(s) %8.1f ms  speedup %.2fx%n", threads, parallel, sequential / parallel);
+            pool.shutdown();
+        }
+    }
+
+    private interface Standardization {
+        Node standardize(Node root);
+    }
+
+    // Average milliseconds per round, after the same number of warm-up rounds
+    private static double time(int rounds, TokenBuffer tokens, Standardization standardization) {
+        double total = 0;
+        for (int round = -rounds; round < rounds; round++) {
+            Node tree = parse(tokens);
+            long start = System.nanoTime();
+            standardization.standardize(tree);
+            if (round >= 0) {
+                total += (System.nanoTime() - start) / 1e6;
+            }
+        }
+        return total / rounds;
+    }
+
+    // The iterative parser, so the long let chains do not need a large stack
+    private static Node parse(TokenBuffer tokens) {
+        Parser parser = new Parser(tokens.cursor());
+        parser.setIterative(true);
+        return parser.parseTokens();
+    }
+
+    private static String print(Node root) {
+        StringWriter text = new StringWriter();
+        TreePrinter printer = new TreePrinter(text);
+        printer.printJson(root);
+        printer.flush();
+        return text.toString();
+    }
+}
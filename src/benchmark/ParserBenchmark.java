@@ -0,0 +1,126 @@
+package benchmark;
+
+import parser.Parser;
+import scanner.LexicalAnalyzer;
+import scanner.TokenBuffer;
+import scanner.TokenCursor;
+import scanner.TokenKind;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Parse throughput of the precedence-climbing parser, with the layer-by-layer IterativeParser for reference.
+// Token inspections (TokenCursor.kind calls) per token stand in for the comparisons a parser makes.
+// Then the same program is parsed from a file through LexicalAnalyzer.open, the cursor myrpal uses, with the bytes
+// that cursor allocates per token while only lexing.
+// Usage: java benchmark.ParserBenchmark [definitions] [rounds]
+public class ParserBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int definitions = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        // The recursive parser needs a deep stack for the long let chain
+        Thread thread = new Thread(null, () -> run(definitions, rounds), "benchmark", 1L << 30);
+        thread.start();
+        thread.join();
+    }
+
+    private static void run(int definitions, int rounds) {
+        String source = SyntheticPrograms.definitions(definitions);
+        TokenBuffer tokens = LexicalAnalyzer.scan(source);
+        System.out.printf("%d tokens%n", tokens.size());
+
+        for (boolean iterative : new boolean[] { false, true }) {
+            CountingCursor counter = new CountingCursor(tokens.cursor());
+            parse(counter, iterative);
+
+            double milliseconds = Timing.time(rounds, () -> parse(tokens.cursor(), iterative));
+            System.out.printf("%-26s %8.1f ms %8.1f ns/token %6.2f token inspections/token%n",
+                    iterative ? "iterative (grammar layers)" : "precedence climbing",
+                    milliseconds, milliseconds * 1e6 / tokens.size(), (double) counter.inspections / tokens.size());
+        }
+
+        try {
+            Path file = Files.createTempFile("parser-benchmark", ".rpal");
+            try {
+                Files.writeString(file, source);
+                double milliseconds = Timing.time(rounds, () -> parse(file));
+                Timing.time(rounds, () -> lex(file));
+                long before = Timing.allocated();
+                lex(file);
+                long bytes = Timing.allocated() - before;
+                System.out.printf("%-26s %8.1f ms %8.1f ns/token %6.2f bytes/token lexed%n", "from a file",
+                        milliseconds, milliseconds * 1e6 / tokens.size(), (double) bytes / tokens.size());
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void parse(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            new Parser(LexicalAnalyzer.open(channel)).parseTokens();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void lex(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            TokenCursor tokens = LexicalAnalyzer.open(channel);
+            while (tokens.kind() != TokenKind.END_OF_INPUT) {
+                tokens.advance();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void parse(TokenCursor tokens, boolean iterative) {
+        Parser parser = new Parser(tokens);
+        parser.setIterative(iterative);
+        parser.parseTokens();
+    }
+
+    private static class CountingCursor implements TokenCursor {
+        private final TokenCursor tokens;
+        private long inspections;
+
+        CountingCursor(TokenCursor tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public TokenKind kind() {
+            inspections++;
+            return tokens.kind();
+        }
+
+        @Override
+        public String value() {
+            return tokens.value();
+        }
+
+        @Override
+        public int symbol() {
+            return tokens.symbol();
+        }
+
+        @Override
+        public int line() {
+            return tokens.line();
+        }
+
+        @Override
+        public void advance() {
+            tokens.advance();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package benchmark;
+
+import csemachine.CSEMachine;
+import csemachine.Program;
+import parser.Parser;
+import scanner.LexicalAnalyzer;
+import standardizer.Standardizer;
+
+import java.util.function.IntFunction;
+
+// Times function returns as the machine gets deeper: a recursive sum, where every call returns through all the
+// calls above it, and a tuple of calls, where each returns above the values computed before it. The time per call
+// stays the same as the size doubles when leaving a function does not depend on what is on the stack.
+// Usage: java benchmark.ReturnBenchmark [depth] [width] [rounds]
+public class ReturnBenchmark {
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        measure("Sum", SyntheticPrograms::sum, depth, rounds);
+        measure("Calls", SyntheticPrograms::calls, width, rounds);
+    }
+
+    private static void measure(String name, IntFunction<String> source, int size, int rounds) {
+        for (int n = Math.max(1, size / 8); n <= size; n *= 2) {
+            Program program = CSEMachine.compile(Standardizer.makeStandardizedTree(
+                    new Parser(LexicalAnalyzer.scan(source.apply(n)).cursor()).parseTokens()));
+            double time = Timing.time(rounds, () -> Timing.run(program));
+            System.out.printf("%-6s %8d %10.2f ms %8.1f ns/call%n", name, n, time, time * 1e6 / n);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package benchmark;
+
+import parser.AstArena;
+import parser.Node;
+import parser.Parser;
+import scanner.LexicalAnalyzer;
+import scanner.TokenBuffer;
+import standardizer.Standardizer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Measures how fast the Standardizer rewrites the trees of large synthetic programs, as Node objects and in an
+// AstArena, then checks that programs nested far deeper than the thread stack allows can be standardized.
+// Usage: java benchmark.StandardizerBenchmark [definitions] [rounds] [depth]
+public class StandardizerBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int definitions = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+
+        TokenBuffer tokens = LexicalAnalyzer.scan(SyntheticPrograms.definitions(definitions));
+        int nodes = count(parse(tokens));
+
+        double nodeTime = 0;
+        double arenaTime = 0;
+        for (int round = -rounds; round < rounds; round++) {
+            // Standardizing changes the tree, so every round gets a fresh one; the first rounds warm up
+            Node tree = parse(tokens);
+            long start = System.nanoTime();
+            Standardizer.makeStandardizedTree(tree);
+            double nodeRound = (System.nanoTime() - start) / 1e6;
+
+            AstArena arena = parseArena(tokens);
+            start = System.nanoTime();
+            Standardizer.makeStandardizedTree(arena);
+            double arenaRound = (System.nanoTime() - start) / 1e6;
+
+            if (round >= 0) {
+                nodeTime += nodeRound / rounds;
+                arenaTime += arenaRound / rounds;
+            }
+        }
+        System.out.printf("%d definitions, %d nodes%n", definitions, nodes);
+        System.out.printf("Node     %8.1f ms %6.1f M nodes/s%n", nodeTime, nodes / nodeTime / 1e3);
+        System.out.printf("AstArena %8.1f ms %6.1f M nodes/s%n", arenaTime, nodes / arenaTime / 1e3);
+
+        for (String shape : SyntheticPrograms.NESTED_SHAPES) {
+            Node tree = parse(LexicalAnalyzer.scan(SyntheticPrograms.nested(shape, depth)));
+            String result;
+            try {
+                Standardizer.makeStandardizedTree(tree);
+                result = "ok";
+            } catch (StackOverflowError e) {
+                result = "StackOverflowError";
+            }
+            System.out.printf("%-12s depth %d: %s%n", shape, depth, result);
+        }
+    }
+
+    // The iterative parser, so the long let chains do not need a large stack
+    private static Node parse(TokenBuffer tokens) {
+        Parser parser = new Parser(tokens.cursor());
+        parser.setIterative(true);
+        return parser.parseTokens();
+    }
+
+    private static AstArena parseArena(TokenBuffer tokens) {
+        Parser parser = new Parser(tokens.cursor());
+        parser.setIterative(true);
+        return parser.parseArena();
+    }
+
+    private static int count(Node root) {
+        int nodes = 0;
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            nodes++;
+            for (Node child : node.getChildren()) {
+                pending.push(child);
+            }
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,183 @@
+package benchmark;
+
+// Generators for large RPAL programs used by the benchmarks
+public class SyntheticPrograms {
+
+    // A chain of 'count' let definitions with arithmetic, conditionals, tuples, strings and comments,
+    // ending in a Print of a value that depends on all of them
+    public static String definitions(int count) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            source.append("// definition ").append(i).append(": helper with a 'quoted' comment\n");
+            source.append("let f").append(i).append(" x y =\n");
+            source.append("    x gr y -> (x - y) * ").append(i % 97 + 1).append(" + y / 2\n");
+            source.append("           | (x + ").append(i).append(") * 2 - Order ('a', 'b', x)\n");
+            source.append("    where z = 'label ").append(i).append("'\n");
+            source.append("in\n");
+        }
+        source.append("Print (");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                source.append(i % 8 == 0 ? " +\n    " : " + ");
+            }
+            source.append("f").append(i).append(' ').append(i % 5).append(' ').append(i % 7);
+        }
+        source.append(")\n");
+        return source.toString();
+    }
+
+    // 'groups' simultaneous definitions joined by 'and', each with a body of 'count' local let definitions,
+    // ending in a Print of the tuple of their results
+    public static String simultaneous(int groups, int count) {
+        StringBuilder source = new StringBuilder();
+        for (int g = 0; g < groups; g++) {
+            source.append(g == 0 ? "let " : "and ").append('g').append(g).append(" a b =\n");
+            for (int i = 0; i < count; i++) {
+                source.append("    let f").append(i).append(" x y = x gr y -> (x - y) * ").append(i % 97 + 1)
+                        .append(" | (x + ").append(i).append(") * 2 - Order ('a', x) where z = 'label ")
+                        .append(i).append("' in\n");
+            }
+            source.append("    f0 a b");
+            for (int i = 1; i < count; i++) {
+                source.append(i % 8 == 0 ? " +\n    " : " + ").append('f').append(i).append(" a b");
+            }
+            source.append('\n');
+        }
+        source.append("in\nPrint (");
+        for (int g = 0; g < groups; g++) {
+            source.append(g > 0 ? ", " : "").append('g').append(g).append(' ').append(g).append(' ').append(g % 3);
+        }
+        source.append(")\n");
+        return source.toString();
+    }
+
+    // A recursive function that walks a tuple of 'length' integers and weighs each element with an expression
+    // that is the same on every call
+    public static String tupleWalker(int length) {
+        StringBuilder source = new StringBuilder("let V = (");
+        for (int i = 0; i < length; i++) {
+            source.append(i > 0 ? ", " : "").append(i % 97);
+        }
+        source.append(") in\n");
+        source.append("let Weights = (2, 3, 5, 7) in\n");
+        source.append("let rec Walk N = N eq 0 -> 0\n");
+        source.append("    | V N * (Weights 1 + Weights 2 * Weights 3 - Order Weights) + Walk (N - 1)\n");
+        source.append("in Print (Walk (Order V))\n");
+        return source.toString();
+    }
+
+    // Deep and branching recursion: a sum down from 'depth' and the Fibonacci number of 'fibonacci'
+    public static String recursion(int depth, int fibonacci) {
+        return "let rec Sum N = N eq 0 -> 0 | N + Sum (N - 1) in\n"
+                + "let rec Fib N = N ls 2 -> N | Fib (N - 1) + Fib (N - 2) in\n"
+                + "Print (Sum " + depth + ", Fib " + fibonacci + ")\n";
+    }
+
+    // The sum down from 'depth' by recursion that is not in tail position, so every call returns through all others
+    public static String sum(int depth) {
+        return "let rec Sum N = N eq 0 -> 0 | N + Sum (N - 1) in\n"
+                + "Print (Sum " + depth + ")\n";
+    }
+
+    // A tuple of 'width' function calls, each returning above the values of the calls before it
+    public static String calls(int width) {
+        StringBuilder source = new StringBuilder("let F X = X + 1 in\nPrint (Order (");
+        for (int i = 0; i < width; i++) {
+            source.append(i == 0 ? "" : i % 16 == 0 ? ",\n    " : ", ").append("F ").append(i);
+        }
+        source.append("))\n");
+        return source.toString();
+    }
+
+    // The factorial of 'n' by recursion
+    public static String factorial(int n) {
+        return "let rec F N = N eq 0 -> 1 | N * F (N - 1) in\n"
+                + "Print (F " + n + ")\n";
+    }
+
+    // The sum of the binomial coefficients of 'n', each computed by the multiplicative formula, which is 2 ** n
+    public static String binomials(int n) {
+        return "let rec C N K = K eq 0 -> 1 | C N (K - 1) * (N - K + 1) / K in\n"
+                + "let rec R K = K gr " + n + " -> 0 | C " + n + " K + R (K + 1) in\n"
+                + "Print (R 0, R 0 eq 2 ** " + n + ")\n";
+    }
+
+    // The sum of the powers of 'base' up to 'count'
+    public static String powers(int base, int count) {
+        return "let rec P I = I eq 0 -> 0 | " + base + " ** I + P (I - 1) in\n"
+                + "Print (P " + count + ")\n";
+    }
+
+    // A loop of 'iterations' rounds, each computing 'terms' terms of five integer operators, counting the one
+    // adding the term, and throwing the result away
+    public static String arithmetic(int iterations, int terms) {
+        StringBuilder source = new StringBuilder("let rec L N = N eq 0 -> 0 | L (N - 1 + 0 * (\n    ");
+        for (int i = 1; i <= terms; i++) {
+            source.append(i == 1 ? "" : i % 4 == 1 ? " +\n    " : " + ")
+                    .append("(N * ").append(i).append(" - ").append(i).append(" ls N -> N - ").append(i)
+                    .append(" | N + ").append(i).append(')');
+        }
+        source.append("))\nin Print (L ").append(iterations).append(")\n");
+        return source.toString();
+    }
+
+    // A loop of 'iterations' rounds written as tail recursion
+    public static String loop(int iterations) {
+        return "let rec Loop N = N gr 0 -> Loop (N - 1) | N in\n"
+                + "Print (Loop " + iterations + ")\n";
+    }
+
+    // Like definitions, but with long comment lines, deep indentation and long identifiers
+    public static String commentHeavy(int count) {
+        StringBuilder source = new StringBuilder();
+        String indent = " ".repeat(24);
+        for (int i = 0; i < count; i++) {
+            source.append("// ").append("This comment describes definition number ").append(i)
+                    .append(" in a lot more words than anybody would ever need to read.\n");
+            source.append("let a_rather_long_function_name_").append(i).append(" parameter =\n");
+            source.append(indent).append("parameter + 1234567890 * ").append(i).append('\n');
+            source.append("in\n");
+        }
+        source.append(indent).append("Print (a_rather_long_function_name_0 1)\n");
+        return source.toString();
+    }
+
+    // Programs that nest one construct 'depth' times, by name
+    public static final String[] NESTED_SHAPES = { "parentheses", "let", "fn", "conditional", "power", "at" };
+
+    public static String nested(String shape, int depth) {
+        StringBuilder source = new StringBuilder();
+        switch (shape) {
+            case "parentheses":
+                source.append("(".repeat(depth)).append('1').append(")".repeat(depth));
+                break;
+            case "let":
+                for (int i = 0; i < depth; i++) {
+                    source.append("let x").append(i).append(" = ").append(i).append(" in\n");
+                }
+                source.append("x0");
+                break;
+            case "fn":
+                source.append("fn x . ".repeat(depth)).append('x');
+                break;
+            case "conditional":
+                for (int i = 0; i < depth; i++) {
+                    source.append("x eq ").append(i).append(" -> ").append(i).append(" |\n");
+                }
+                source.append("0");
+                break;
+            case "power":
+                source.append("1 ** ".repeat(depth)).append('1');
+                break;
+            case "at":
+                source.append("'a'");
+                for (int i = 0; i < depth; i++) {
+                    source.append(" @Conc 'b'");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+        return source.toString();
+    }
+}
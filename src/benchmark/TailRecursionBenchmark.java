@@ -0,0 +1,52 @@
+package benchmark;
+
+import csemachine.CSEMachine;
+import csemachine.Program;
+import parser.Parser;
+import scanner.LexicalAnalyzer;
+import standardizer.Standardizer;
+
+// Runs a loop written as tail recursion for growing numbers of iterations, sampling the heap that survives a
+// collection while it runs. Frames no closure refers to any more are collected, so the peak stays flat.
+// Usage: java benchmark.TailRecursionBenchmark [iterations]
+public class TailRecursionBenchmark {
+    private static final long SAMPLE_MILLIS = 100;
+
+    public static void main(String[] args) throws InterruptedException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        for (int n = Math.max(1, iterations / 100); n <= iterations; n *= 10) {
+            Program program = CSEMachine.compile(Standardizer.makeStandardizedTree(
+                    new Parser(LexicalAnalyzer.scan(SyntheticPrograms.loop(n)).cursor()).parseTokens()));
+            long[] peak = {usedHeap()};
+            long base = peak[0];
+
+            Thread sampler = new Thread(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(SAMPLE_MILLIS);
+                        peak[0] = Math.max(peak[0], usedHeap());
+                    }
+                } catch (InterruptedException e) {
+                    // Run finished
+                }
+            });
+            sampler.setDaemon(true);
+            sampler.start();
+            long start = System.nanoTime();
+            String output = Timing.run(program);
+            long time = System.nanoTime() - start;
+            sampler.interrupt();
+            sampler.join();
+
+            System.out.printf("%,12d iterations %10.1f ms %10d bytes live at most (printed %s)%n",
+                    n, time / 1e6, peak[0] - base, output.trim());
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,47 @@
+package benchmark;
+
+import csemachine.CSEMachine;
+import csemachine.Program;
+
+import com.sun.management.ThreadMXBean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+// Measurements shared by the benchmarks
+final class Timing {
+
+    private Timing() {
+    }
+
+    // Average milliseconds per round, after the same number of warm-up rounds
+    static double time(int rounds, Runnable action) {
+        for (int i = 0; i < rounds; i++) {
+            action.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            action.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / rounds;
+    }
+
+    // Output of one run of the program on a new machine
+    static String run(Program program) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true));
+        try {
+            new CSEMachine().execute(program);
+        } finally {
+            System.setOut(out);
+        }
+        return printed.toString();
+    }
+
+    // Bytes allocated so far by the current thread
+    static long allocated() {
+        return ((ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,81 @@
+package benchmark;
+
+import parser.Node;
+import parser.Parser;
+import parser.TreePrinter;
+import scanner.LexicalAnalyzer;
+import standardizer.Standardizer;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Compares printing a standardized tree the way Node.preorderTraversal used to (recursive, one println per node
+// on an autoflushing stream like System.out) with TreePrinter. Both write to the same temporary file.
+// Usage: java benchmark.TreePrinterBenchmark [definitions] [rounds]
+public class TreePrinterBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int definitions = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        // The recursive parser and printer need a deep stack for the long let chain
+        Thread thread = new Thread(null, () -> run(definitions, rounds), "benchmark", 1L << 30);
+        thread.start();
+        thread.join();
+    }
+
+    private static void run(int definitions, int rounds) {
+        Node tree = Standardizer.makeStandardizedTree(
+                new Parser(LexicalAnalyzer.scan(SyntheticPrograms.definitions(definitions)).cursor()).parseTokens());
+        try {
+            Path file = Files.createTempFile("tree", ".txt");
+            try {
+                double recursive = Timing.time(rounds, () -> {
+                    // Same stream as System.out: a small buffer flushed on every println
+                    try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file.toFile()), 128), true)) {
+                        printRecursively(out, tree);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                long recursiveSize = Files.size(file);
+
+                double iterative = Timing.time(rounds, () -> {
+                    try (OutputStream out = Files.newOutputStream(file)) {
+                        TreePrinter printer = new TreePrinter(out);
+                        printer.print(tree);
+                        printer.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (Files.size(file) != recursiveSize) {
+                    throw new IllegalStateException("The printers wrote different output");
+                }
+
+                System.out.printf("%d bytes of output%n", recursiveSize);
+                System.out.printf("println per node %8.1f ms%n", recursive);
+                System.out.printf("TreePrinter      %8.1f ms (%.1fx)%n", iterative, recursive / iterative);
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The previous Node.preorderTraversal
+    private static void printRecursively(PrintStream out, Node root) {
+        out.println(".".repeat(root.getLevel()) + root.getValue());
+        for (Node child : root.getChildren()) {
+            child.setLevel(root.getLevel() + 1);
+            printRecursively(out, child);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package cache;
+
+import parser.Node;
+import parser.NodeKind;
+import parser.TreeNode;
+import scanner.Symbols;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary encoding of standardized trees; programs are stored in the csemachine.ProgramFile format.
+// Numbers are written as variable-length unsigned ints. Every distinct string is written once;
+// later occurrences refer back to it by index. Trees are written in preorder with a child count per node,
+// without recursion, so the depth of a tree is not limited by the thread stack.
+public class BinaryFormat {
+    private static final NodeKind[] NODE_KINDS = NodeKind.values();
+
+    private final Map<String, Integer> writtenStrings = new HashMap<>();
+    private final List<String> readStrings = new ArrayList<>();
+
+    public static void writeTree(DataOutputStream out, TreeNode root) throws IOException {
+        BinaryFormat format = new BinaryFormat();
+        Deque<TreeNode> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            TreeNode node = pending.pop();
+            List<? extends TreeNode> children = node.getChildren();
+            format.writeNode(out, node);
+            writeNumber(out, children.size());
+            for (int i = children.size() - 1; i >= 0; i--) {
+                pending.push(children.get(i));
+            }
+        }
+    }
+
+    public static Node readTree(DataInputStream in) throws IOException {
+        BinaryFormat format = new BinaryFormat();
+        Node root = format.readNode(in);
+        // Nodes still waiting for children, with the number they are missing
+        Deque<Node> parents = new ArrayDeque<>();
+        Deque<Integer> missing = new ArrayDeque<>();
+        int children = readNumber(in);
+        if (children > 0) {
+            parents.push(root);
+            missing.push(children);
+        }
+        while (!parents.isEmpty()) {
+            Node node = format.readNode(in);
+            parents.peek().addChild(node);
+            int left = missing.pop() - 1;
+            if (left > 0) {
+                missing.push(left);
+            } else {
+                parents.pop();
+            }
+            children = readNumber(in);
+            if (children > 0) {
+                parents.push(node);
+                missing.push(children);
+            }
+        }
+        return root;
+    }
+
+    // Kind and payload of a node, without its children
+    private void writeNode(DataOutputStream out, TreeNode node) throws IOException {
+        out.writeByte(node.getKind().ordinal());
+        if (node.getKind().hasPayload()) {
+            writeString(out, node.getText());
+        }
+    }
+
+    private Node readNode(DataInputStream in) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= NODE_KINDS.length) {
+            throw new IOException("Unknown node kind " + ordinal);
+        }
+        NodeKind kind = NODE_KINDS[ordinal];
+        switch (kind) {
+            case IDENTIFIER:
+                String name = readString(in);
+                return Node.identifier(name, Symbols.GLOBAL.intern(name));
+            case INTEGER:
+                return Node.integer(readString(in));
+            case STRING:
+                return Node.string(readString(in));
+            default:
+                return new Node(kind);
+        }
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        Integer index = writtenStrings.get(value);
+        if (index != null) {
+            writeNumber(out, index + 1);
+        } else {
+            writtenStrings.put(value, writtenStrings.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeNumber(out, 0);
+            writeNumber(out, bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        int reference = readNumber(in);
+        if (reference == 0) {
+            byte[] bytes = new byte[readNumber(in)];
+            in.readFully(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            readStrings.add(value);
+            return value;
+        }
+        if (reference > readStrings.size()) {
+            throw new IOException("Bad string reference " + reference);
+        }
+        return readStrings.get(reference - 1);
+    }
+
+    static void writeNumber(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readNumber(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number");
+    }
+}
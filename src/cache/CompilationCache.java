@@ -0,0 +1,335 @@
+package cache;
+
+import csemachine.CSEMachine;
+import csemachine.Program;
+import csemachine.ProgramFile;
+import parser.AstArena;
+import parser.Node;
+import parser.Parser;
+import parser.TreeNode;
+import scanner.LexicalAnalyzer;
+import scanner.TokenCursor;
+import optimizer.Optimizer;
+import standardizer.Standardizer;
+import standardizer.TreeSharing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Cache of compiled programs keyed by a SHA-256 hash of the source bytes and of the build of myrpal compiling them.
+// A source is lexed, parsed and standardized once; afterwards its standardized tree and control structures
+// come from memory, or from <hash>.st and <hash>-O<level>.rpc files in the cache directory in later runs.
+// The directory is kept under a size limit by deleting the least recently used entries.
+// The in-memory layer can be shared by threads compiling many programs in one process.
+// Cached trees and programs are shared, so callers must not modify them. Standardized Node trees are hash-consed
+// by TreeSharing and repeated control structures are stored once.
+public class CompilationCache {
+    // Change whenever the tree format changes, so old entries are ignored
+    static final int FORMAT_VERSION = 1;
+
+    // Size limit of the cache directory in megabytes, unless -Drpal.cache.max=<megabytes> says otherwise
+    static final long DEFAULT_MAX_MEGABYTES = 256;
+
+    // Part of every key, so entries written by another build of myrpal are never read
+    private static final byte[] BUILD = build();
+
+    private static final int MAGIC = 0x5250434D;
+    private static final int PROGRAM = 1;
+    private static final int TREE = 2;
+
+    private final Path directory;
+    private final boolean arena;
+    private final int optimizationLevel;
+    private final long maxBytes;
+    private final Map<String, Program> programs = new ConcurrentHashMap<>();
+    private final Map<String, TreeNode> trees = new ConcurrentHashMap<>();
+
+    // Cache that stores entries under 'directory', or only in memory if it is null, and keeps the directory under
+    // maxBytes. With 'arena' set, sources are compiled through an AstArena instead of Node objects; those trees are
+    // not optimized. Otherwise programs are compiled from the tree optimized at the given level.
+    public CompilationCache(Path directory, boolean arena, int optimizationLevel, long maxBytes) {
+        this.directory = directory;
+        this.arena = arena;
+        this.optimizationLevel = arena ? 0 : optimizationLevel;
+        this.maxBytes = maxBytes;
+    }
+
+    public CompilationCache(Path directory, boolean arena, int optimizationLevel) {
+        this(directory, arena, optimizationLevel, DEFAULT_MAX_MEGABYTES << 20);
+    }
+
+    public CompilationCache(Path directory, boolean arena) {
+        this(directory, arena, Optimizer.DEFAULT_LEVEL);
+    }
+
+    public static CompilationCache open(boolean arena) {
+        return open(arena, Optimizer.DEFAULT_LEVEL);
+    }
+
+    // Cache configured by -Drpal.cache.dir=<directory> (default ~/.rpal/cache) and -Drpal.cache.max=<megabytes>,
+    // or memory only with -Drpal.cache=off
+    public static CompilationCache open(boolean arena, int optimizationLevel) {
+        if ("off".equals(System.getProperty("rpal.cache"))) {
+            return new CompilationCache(null, arena, optimizationLevel);
+        }
+        String directory = System.getProperty("rpal.cache.dir");
+        if (directory == null) {
+            directory = Paths.get(System.getProperty("user.home"), ".rpal", "cache").toString();
+        }
+        long maxMegabytes = Long.getLong("rpal.cache.max", DEFAULT_MAX_MEGABYTES);
+        return new CompilationCache(Paths.get(directory), arena, optimizationLevel, maxMegabytes << 20);
+    }
+
+    // Control structures of the program in the given file
+    public Program program(String fileName) throws IOException {
+        try (FileChannel source = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            String key = key(source);
+
+            Program program = programs.get(key);
+            if (program == null) {
+                program = (Program) load(key, PROGRAM);
+                if (program == null) {
+                    program = compile(tree(source, key));
+                    store(key, PROGRAM, program);
+                }
+                programs.put(key, program);
+            }
+            return program;
+        }
+    }
+
+    // Standardized tree of the program in the given file
+    // Only the front end runs for it; the program is compiled when program asks for it
+    public TreeNode standardizedTree(String fileName) throws IOException {
+        try (FileChannel source = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            return tree(source, key(source));
+        }
+    }
+
+    private TreeNode tree(FileChannel source, String key) throws IOException {
+        TreeNode tree = trees.get(key);
+        if (tree == null) {
+            tree = (TreeNode) load(key, TREE);
+            if (tree != null) {
+                // Entries hold the tree written out in full; share its repeated subtrees again
+                tree = TreeSharing.share((Node) tree);
+            } else {
+                tree = standardize(source);
+                store(key, TREE, tree);
+            }
+            trees.put(key, tree);
+        }
+        return tree;
+    }
+
+    private TreeNode standardize(FileChannel source) throws IOException {
+        // Lexed like Parser.parse, so errors are reported in the same order
+        TokenCursor tokens = LexicalAnalyzer.open(source);
+
+        if (arena) {
+            AstArena ast = Standardizer.makeStandardizedTree(new Parser(tokens).parseArena());
+            return ast.node(ast.root());
+        }
+        return TreeSharing.share(Standardizer.makeStandardizedTree(new Parser(tokens).parseTokens()));
+    }
+
+    // The tree is kept as standardized for -st; only the program comes from the optimized tree
+    private Program compile(TreeNode tree) {
+        return CSEMachine.compile(optimizationLevel > 0 ? new Optimizer(optimizationLevel).optimize((Node) tree) : tree);
+    }
+
+    // Read an entry from the cache directory; a missing, outdated or damaged entry counts as a miss
+    private Object load(String key, int type) {
+        if (directory == null) {
+            return null;
+        }
+        Path path = file(key, type);
+        if (type == PROGRAM) {
+            try {
+                Program program = ProgramFile.read(path);
+                used(path);
+                return program;
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readByte() != type) {
+                return null;
+            }
+            TreeNode tree = BinaryFormat.readTree(in);
+            used(path);
+            return tree;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Write an entry through a temporary file, so readers never see a partial entry.
+    // The cache is only an optimization: if the directory is not writable the entry is simply not stored.
+    private void store(String key, int type, Object value) {
+        if (directory == null) {
+            return;
+        }
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            try (OutputStream file = Files.newOutputStream(temporary);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                if (type == PROGRAM) {
+                    // Programs are kept as compiled program files, which carry their own version
+                    ProgramFile.write((Program) value, out);
+                } else {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeByte(type);
+                    BinaryFormat.writeTree(out, (TreeNode) value);
+                }
+            }
+            Files.move(temporary, file(key, type), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            trim();
+        } catch (IOException e) {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // Nothing more to clean up
+                }
+            }
+        }
+    }
+
+    // The modification time of an entry is when it was last used, for trim
+    private static void used(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // The entry is only trimmed earlier
+        }
+    }
+
+    // Delete the least recently used entries until the directory holds at most maxBytes. Entries of other builds
+    // are never used again, so they go first. Another process may delete the same files at the same time.
+    private void trim() throws IOException {
+        List<Path> files = new ArrayList<>();
+        Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+        long total = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                try {
+                    BasicFileAttributes entryAttributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                    if (entryAttributes.isRegularFile()) {
+                        files.add(entry);
+                        attributes.put(entry, entryAttributes);
+                        total += entryAttributes.size();
+                    }
+                } catch (NoSuchFileException e) {
+                    // Deleted meanwhile
+                }
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        files.sort(Comparator.comparing(file -> attributes.get(file).lastModifiedTime()));
+        for (int i = 0; i < files.size() && total > maxBytes; i++) {
+            Files.deleteIfExists(files.get(i));
+            total -= attributes.get(files.get(i)).size();
+        }
+    }
+
+    private Path file(String key, int type) {
+        return directory.resolve(key + (type == PROGRAM ? "-O" + optimizationLevel + ".rpc" : ".st"));
+    }
+
+    // The source is decoded with the default charset, so the charset is part of the key.
+    // The file is hashed a block at a time, so it is never held in memory as a whole.
+    private static String key(FileChannel source) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(BUILD);
+            digest.update(Charset.defaultCharset().name().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            ByteBuffer block = ByteBuffer.allocate(1 << 16);
+            long position = 0;
+            int read;
+            // Positional reads leave the channel position alone
+            while ((read = source.read(block, position)) > 0) {
+                position += read;
+                block.flip();
+                digest.update(block);
+                block.clear();
+            }
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Hash of the cache and program file versions and of the size and modification time of every class file
+    // myrpal was loaded from, so recompiling any part of it starts a new set of entries
+    private static byte[] build() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((FORMAT_VERSION + "/" + ProgramFile.VERSION).getBytes(StandardCharsets.UTF_8));
+            try {
+                Path classes = Paths.get(CompilationCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+                List<Path> files = new ArrayList<>();
+                if (Files.isDirectory(classes)) {
+                    try (Stream<Path> walk = Files.walk(classes)) {
+                        walk.filter(file -> file.toString().endsWith(".class")).sorted().forEach(files::add);
+                    }
+                } else {
+                    files.add(classes);
+                }
+                for (Path file : files) {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    String stamp = classes.relativize(file) + " " + attributes.size() + " "
+                            + attributes.lastModifiedTime().toMillis() + "\n";
+                    digest.update(stamp.getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                // Where the classes come from is unknown; only the versions tell builds apart
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package csemachine;
+
+import structures.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compiles control structures, as generated and shared, into the int code of a Program.
+// The elements of a control structure run from the last to the first; code is laid out in the order it runs.
+// A conditional, which a structure holds as the deltas of its branches followed by 'beta', becomes
+//   condition, JUMP_IF_FALSE past the then branch, then branch, JUMP past the else branch, else branch
+// with the branches compiled in place, so only lambda bodies and the main program get code of their own.
+// Each body ends in EXIT, which the machine runs in place of a body's last instruction returning.
+class Assembler {
+    // Work left while laying out one body, three ints each
+    private static final int ELEMENTS = 0;   // structure, last element not yet compiled
+    private static final int ELSE = 1;       // JUMP_IF_FALSE operand to patch, else structure
+    private static final int END = 2;        // JUMP operand to patch
+
+    private final List<List<Object>> structures;
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<String, Integer> symbolIndex = new HashMap<>();
+    private final List<String> symbols = new ArrayList<>();
+    private final Map<List<Object>, Integer> lambdaIndex = new HashMap<>();
+    private final List<Lambda> lambdas = new ArrayList<>();
+
+    private int[] code = new int[64];
+    private int size;
+    private int[] tasks = new int[48];
+    private int top;
+
+    private Assembler(List<List<Object>> structures) {
+        this.structures = structures;
+    }
+
+    static Program assemble(List<List<Object>> structures) {
+        return new Assembler(structures).assemble();
+    }
+
+    private Program assemble() {
+        // Bodies of lambdas get code; the numbers only used by deltas are compiled into their conditionals
+        boolean[] bodies = new boolean[structures.size()];
+        bodies[0] = true;
+        for (List<Object> structure : structures) {
+            for (Object element : structure) {
+                if (element instanceof Lambda) {
+                    bodies[((Lambda) element).getNumber()] = true;
+                }
+            }
+        }
+
+        int[][] bodyCode = new int[structures.size()][];
+        for (int i = 0; i < bodyCode.length; i++) {
+            if (bodies[i]) {
+                bodyCode[i] = body(i);
+            }
+        }
+
+        int[] lambdaNumbers = new int[lambdas.size()];
+        int[] lambdaLabels = new int[lambdas.size()];
+        String[][] lambdaVariables = new String[lambdas.size()][];
+        for (int i = 0; i < lambdaNumbers.length; i++) {
+            lambdaNumbers[i] = lambdas.get(i).getNumber();
+            lambdaLabels[i] = lambdas.get(i).getLabel();
+            lambdaVariables[i] = lambdas.get(i).getBoundedVariables();
+        }
+        return new Program(bodyCode, constants.toArray(), symbols.toArray(new String[0]), lambdaNumbers, lambdaLabels,
+                lambdaVariables);
+    }
+
+    private int[] body(int number) {
+        size = 0;
+        top = 0;
+        task(ELEMENTS, number, structures.get(number).size() - 1);
+        while (top > 0) {
+            top -= 3;
+            int kind = tasks[top];
+            int first = tasks[top + 1];
+            int second = tasks[top + 2];
+            if (kind == ELEMENTS) {
+                elements(first, second);
+            } else if (kind == ELSE) {
+                // The then branch is done: jump over the else branch, which starts here
+                emit(Opcode.JUMP, 0);
+                code[first] = size - first - 1;
+                task(END, size - 1, 0);
+                task(ELEMENTS, second, structures.get(second).size() - 1);
+            } else {
+                code[first] = size - first - 1;
+            }
+        }
+        emit(Opcode.EXIT);
+        return Arrays.copyOf(code, size);
+    }
+
+    // Compile the elements of a structure from 'last' down, until a conditional leaves its branches as tasks
+    private void elements(int number, int last) {
+        List<Object> structure = structures.get(number);
+        for (int i = last; i >= 0; i--) {
+            Object element = structure.get(i);
+            if ("beta".equals(element)) {
+                // The condition was compiled before; the else delta comes next, then the then delta
+                int elseNumber = ((Delta) structure.get(i - 1)).getNumber();
+                int thenNumber = ((Delta) structure.get(i - 2)).getNumber();
+                emit(Opcode.JUMP_IF_FALSE, 0);
+                task(ELEMENTS, number, i - 3);
+                task(ELSE, size - 1, elseNumber);
+                task(ELEMENTS, thenNumber, structures.get(thenNumber).size() - 1);
+                return;
+            }
+            element(element);
+        }
+    }
+
+    private void element(Object element) {
+        if (element instanceof Identifier) {
+            Identifier identifier = (Identifier) element;
+            String name = identifier.getName();
+            // A built-in name always denotes the function, which is the name itself
+            if (CSEMachine.isBuiltInFunction(name)) {
+                emit(Opcode.PUSH, constant(name));
+            } else if (identifier.getDepth() >= 0) {
+                emit(Opcode.LOAD, identifier.getDepth());
+                emit(identifier.getSlot());
+            } else {
+                emit(Opcode.UNDEFINED, symbol(name));
+            }
+        } else if (element instanceof Constant) {
+            emit(Opcode.PUSH, constant(((Constant) element).getValue()));
+        } else if (element instanceof Lambda) {
+            emit(Opcode.LAMBDA, lambda((Lambda) element));
+        } else if (element instanceof Tau) {
+            emit(Opcode.TUPLE, ((Tau) element).getNumber());
+        } else if ("gamma".equals(element)) {
+            emit(Opcode.APPLY);
+        } else if (element instanceof String) {
+            // Operators the machine has no instruction for compile to nothing
+            int opcode = Opcode.operator((String) element);
+            if (opcode >= 0) {
+                emit(opcode);
+            }
+        } else {
+            throw new IllegalArgumentException("Cannot compile control structure element " + element);
+        }
+    }
+
+    private void emit(int opcode) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+        }
+        code[size++] = opcode;
+    }
+
+    private void emit(int opcode, int operand) {
+        emit(opcode);
+        emit(operand);
+    }
+
+    private void task(int kind, int first, int second) {
+        if (top + 3 > tasks.length) {
+            tasks = Arrays.copyOf(tasks, tasks.length * 2);
+        }
+        tasks[top++] = kind;
+        tasks[top++] = first;
+        tasks[top++] = second;
+    }
+
+    private int constant(Object value) {
+        Integer index = constantIndex.get(value);
+        if (index == null) {
+            index = constants.size();
+            constantIndex.put(value, index);
+            constants.add(value);
+        }
+        return index;
+    }
+
+    private int symbol(String name) {
+        Integer index = symbolIndex.get(name);
+        if (index == null) {
+            index = symbols.size();
+            symbolIndex.put(name, index);
+            symbols.add(name);
+        }
+        return index;
+    }
+
+    // Lambdas with the same body, label and variables share an entry
+    private int lambda(Lambda lambda) {
+        List<Object> key = Arrays.asList(lambda.getNumber(), lambda.getLabel(), Arrays.asList(lambda.getBoundedVariables()));
+        Integer index = lambdaIndex.get(key);
+        if (index == null) {
+            index = lambdas.size();
+            lambdaIndex.put(key, index);
+            lambdas.add(lambda);
+        }
+        return index;
+    }
+}
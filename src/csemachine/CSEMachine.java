@@ -1,283 +1,182 @@
 package csemachine;
 
-import parser.Node;
+import parser.TreeNode;
 import structures.*;
 
 
+import java.math.BigInteger;
 import java.util.*;
 
 public class CSEMachine {
-    private List<List<Object>> controlStructures = new ArrayList<>();
-    private Stack<Object> stack = new Stack<>();
-    private List<Environment> environments = new ArrayList<>();
-    private int currentEnvironment = 0;
-    private int count = 0;
+    private Program program;
+    private OperandStack stack = new OperandStack();
+    // Frames are referenced by the closures over them and by the return stack, never kept otherwise
+    private Environment root = new Environment(0, null, 0);
+    private Environment currentEnvironment = root;
+    private int environments = 1; // Frames created, which numbers the next
     private boolean printPresent = false;
     String finalResult = "";
 
-    private static final List<String> builtInFunctions = Arrays.asList(
+    // Body being run and the position of its next instruction; bodies are run in place, never copied
+    private int[] code;
+    private int pc;
+    // Body, position and environment to go back to at the EXIT of each body being run, the caller of the
+    // current one on top
+    private int[][] codes = new int[64][];
+    private int[] pcs = new int[64];
+    private Environment[] frames = new Environment[64];
+    private int depth;
+
+    // Applies a lambda to an Eta and the result to the argument, as applying the Eta does
+    private static final int[] ETA = {Opcode.APPLY, Opcode.APPLY, Opcode.EXIT};
+
+    private static final Set<String> builtInFunctions = new HashSet<>(Arrays.asList(
             "Order", "Print", "print", "Conc", "Stern", "Stem", "Isinteger", "Istruthvalue",
             "Isstring", "Istuple", "Isfunction", "ItoS"
-    );
-
-    public CSEMachine() {
-        environments.add(new Environment(0, null)); // Root environment
-    }
+    ));
 
     // Main method to execute the CSE Machine
-    public void execute(Node root) {
+    public void execute(TreeNode root) {
+        execute(compile(root));
+    }
 
-        generateControlStructure(root, 0);
+    // Generate the code of a standardized tree without running it
+    public static Program compile(TreeNode root) {
+        return ControlStructureGenerator.generate(root);
+    }
 
-        List<Object> control = new ArrayList<>();
-        control.add(environments.get(0).getName());
-        control.addAll(controlStructures.get(0));
-        stack.push(environments.get(0).getName());
+    // Run a program compiled before, e.g. by compile or loaded from a cache
+    public void execute(Program program) {
+        this.program = program;
 
+        code = program.code[0];
+        pc = 0;
+        depth = 0;
+        currentEnvironment = root;
 
-        applyRules(control);
+        applyRules();
 
         if (printPresent) {
             System.out.println(finalResult);
         }
     }
 
-    // Generate control structures recursively
-    private void generateControlStructure(Node root, int i) {
-
-        while (controlStructures.size() <= i) {
-            controlStructures.add(new ArrayList<>());
-        }
-
-        if (root.getValue().equals("lambda")) {
-            count++;
-            Node leftChild = root.getChildren().get(0);
-            Lambda lambda = new Lambda(count);
-
-            if (leftChild.getValue().equals(",")) {
-                StringBuilder boundedVariables = new StringBuilder();
-                for (Node child : leftChild.getChildren()) {
-                    boundedVariables.append(child.getValue().substring(4, child.getValue().length() - 1)).append(",");
-                }
-                lambda.setBoundedVariable(boundedVariables.substring(0, boundedVariables.length() - 1));
-            } else {
-                lambda.setBoundedVariable(leftChild.getValue().substring(4, leftChild.getValue().length() - 1));
+    // Run 'body' in 'environment', then go on after the current instruction
+    private void call(int[] body, Environment environment) {
+        if (!tailCall()) {
+            if (depth == frames.length) {
+                codes = Arrays.copyOf(codes, depth * 2);
+                pcs = Arrays.copyOf(pcs, depth * 2);
+                frames = Arrays.copyOf(frames, depth * 2);
             }
+            codes[depth] = code;
+            pcs[depth] = pc;
+            frames[depth] = currentEnvironment;
+            depth++;
+        }
+        code = body;
+        pc = 0;
+        currentEnvironment = environment;
+    }
 
-            controlStructures.get(i).add(lambda);
-
-            for (int j = 1; j < root.getChildren().size(); j++) {
-                generateControlStructure(root.getChildren().get(j), count);
-            }
-        } else if (root.getValue().equals("->")) {
-            count++;
-            Delta delta1 = new Delta(count);
-            controlStructures.get(i).add(delta1);
-            generateControlStructure(root.getChildren().get(1), count);
-
-            count++;
-            Delta delta2 = new Delta(count);
-            controlStructures.get(i).add(delta2);
-            generateControlStructure(root.getChildren().get(2), count);
-
-            controlStructures.get(i).add("beta");
-            generateControlStructure(root.getChildren().get(0), i);
-        } else if (root.getValue().equals("tau")) {
-            Tau tau = new Tau(root.getChildren().size());
-            controlStructures.get(i).add(tau);
-            for (Node child : root.getChildren()) {
-                generateControlStructure(child, i);
-            }
-        } else {
-            controlStructures.get(i).add(root.getValue());
-            for (Node child : root.getChildren()) {
-                generateControlStructure(child, i);
-            }
+    // Go back to the caller of the current body; the main program has none, and ends the run
+    private void leave() {
+        if (depth == 0) {
+            code = null;
+            return;
         }
+        depth--;
+        code = codes[depth];
+        pc = pcs[depth];
+        currentEnvironment = frames[depth];
+        codes[depth] = null;
+        frames[depth] = null;
     }
 
-    private void applyRules(List<Object> control) {
-        List<String> op = Arrays.asList("+", "-", "", "/", "*", "gr", "ge", "ls", "le", "eq", "ne", "or", "&", "aug");
-        List<String> uop = Arrays.asList("neg", "not");
-
-        while (!control.isEmpty()) {
-            Object symbol = control.remove(control.size() - 1);
-
-            if (symbol instanceof String && ((String) symbol).startsWith("<") && ((String) symbol).endsWith(">")) {
-                stack.push(lookup((String) symbol));
-            } else if (symbol instanceof Lambda) {
-                Lambda lambda = (Lambda) symbol;
-                Lambda temp = new Lambda(lambda.getNumber());
-                temp.setBoundedVariable(lambda.getBoundedVariable());
-                temp.setEnvironment(currentEnvironment);
-                stack.push(temp);
-            } else if ("gamma".equals(symbol)) {
-                Object stackSymbol1 = stack.pop();
-                Object stackSymbol2 = stack.pop();
-
-                if (stackSymbol1 instanceof Lambda) {
-                    Lambda lambda = (Lambda) stackSymbol1;
-                    currentEnvironment = environments.size();
-
-                    Environment parent = environments.get(lambda.getEnvironment());
-                    Environment child = new Environment(currentEnvironment, parent);
-                    parent.addChild(child);
-                    environments.add(child);
-
-                    String[] variableList = lambda.getBoundedVariable().split(",");
-                    if (variableList.length > 1) {
-                        for (int i = 0; i < variableList.length; i++) {
-                            child.addVariable(variableList[i], ((List<?>) stackSymbol2).get(i));
-                        }
-                    } else {
-                        child.addVariable(lambda.getBoundedVariable(), stackSymbol2);
-                    }
+    private void applyRules() {
+        Object[] constants = program.constants;
 
-                    stack.push(child.getName());
-                    control.add(child.getName());
-                    control.addAll(controlStructures.get(lambda.getNumber()));
-                } else if (stackSymbol1 instanceof List) {
-                    stack.push(((List<?>) stackSymbol1).get((int) stackSymbol2 - 1));
-                } else if ("Y*".equals(stackSymbol1)) {
-                    Eta temp = new Eta(((Lambda) stackSymbol2).getNumber());
-                    temp.setBoundedVariable(((Lambda) stackSymbol2).getBoundedVariable());
-                    temp.setEnvironment(((Lambda) stackSymbol2).getEnvironment());
-                    stack.push(temp);
-                } else if (stackSymbol1 instanceof Eta) {
-                    Lambda temp = new Lambda(((Eta) stackSymbol1).getNumber());
-                    temp.setBoundedVariable(((Eta) stackSymbol1).getBoundedVariable());
-                    temp.setEnvironment(((Eta) stackSymbol1).getEnvironment());
-
-                    control.add("gamma");
-                    control.add("gamma");
-                    stack.push(stackSymbol2);
-                    stack.push(stackSymbol1);
-                    stack.push(temp);
-                } else if (stackSymbol1 instanceof String && builtInFunctions.contains(stackSymbol1)) {
-                    builtIn((String) stackSymbol1, stackSymbol2,  control);
+        while (code != null) {
+            int opcode = code[pc++];
+            switch (opcode) {
+                case Opcode.PUSH:
+                    stack.push(constants[code[pc++]]);
+                    break;
+                case Opcode.LOAD: {
+                    int depth = code[pc++];
+                    int slot = code[pc++];
+                    stack.push(currentEnvironment.getVariable(depth, slot));
+                    break;
                 }
-            } else if (symbol instanceof String && ((String) symbol).startsWith("e_")) {
-                Object stackSymbol = stack.pop();
-                stack.pop();
-
-                if (currentEnvironment != 0) {
-                    for (int i = stack.size() - 1; i >= 0; i--) {
-                        Object element = stack.get(i);
-                        if (element instanceof String && ((String) element).startsWith("e_")) {
-                            currentEnvironment = Integer.parseInt(((String) element).substring(2));
-                            break;
-                        }
-                    }
+                case Opcode.UNDEFINED:
+                    // A name bound nowhere ends the run, before anything is printed
+                    System.exit(1);
+                    break;
+                case Opcode.LAMBDA: {
+                    int index = code[pc++];
+                    Lambda lambda = new Lambda(program.lambdaNumbers[index]);
+                    lambda.setLabel(program.lambdaLabels[index]);
+                    lambda.setBoundedVariables(program.lambdaVariables[index]);
+                    lambda.setEnvironment(currentEnvironment);
+                    stack.push(lambda);
+                    break;
                 }
-                stack.push(stackSymbol);
-            } else if (op.contains(symbol)) {
-
-                Object rand1 = stack.pop();
-                Object rand2 = stack.pop();
-
-                switch ((String) symbol) {
-                    case "+":
-                        stack.push((int) rand1 + (int) rand2);
-                        break;
-                    case "-":
-                        stack.push((int) rand1 - (int) rand2);
-                        break;
-                    case "*":
-                        stack.push((int) rand1 * (int) rand2);
-                        break;
-                    case "/":
-                        stack.push((int) rand1 / (int) rand2);
-                        break;
-                    case "":
-                        stack.push((int) Math.pow((int) rand1, (int) rand2));
-                        break;
-                    case "gr":
-                        stack.push((int) rand1 > (int) rand2);
-                        break;
-                    case "ge":
-                        stack.push((int) rand1 >= (int) rand2);
-                        break;
-                    case "ls":
-                        stack.push((int) rand1 < (int) rand2);
-                        break;
-                    case "le":
-                        stack.push((int) rand1 <= (int) rand2);
-                        break;
-                    case "eq":
-                        stack.push(rand1.equals(rand2));
-                        break;
-                    case "ne":
-                        stack.push(!rand1.equals(rand2));
-                        break;
-                    case "or":
-                        stack.push((boolean) rand1 || (boolean) rand2);
-                        break;
-                    case "&":
-                        stack.push((boolean) rand1 && (boolean) rand2);
-                        break;
-                    case "aug":
-
-                        List<Object> newTuple = new ArrayList<>();
-
-                        if (rand1 instanceof List) {
-                            // rand1 is already a tuple → copy it
-                            newTuple.addAll((List<?>) rand1);
-                        } else {
-                        }
-
-                        // always add rand2 at the end
-                        newTuple.add(rand2);
+                case Opcode.APPLY:
+                    apply();
+                    break;
+                case Opcode.TUPLE: {
+                    int n = code[pc++];
+                    List<Object> tauList = new ArrayList<>();
 
-                        stack.push(newTuple);
-                        break;
+                    for (int i = 0; i < n; i++) {
+                        Object value = stack.pop();
+                        tauList.add(value);
+                    }
 
 
-                    default:
-                        throw new IllegalStateException("Unexpected value: " + (String) symbol);
-                }
-            } else if (uop.contains(symbol)) {
-                Object rand = stack.pop();
-
-                switch ((String) symbol) {
-                    case "not":
-                        stack.push(!(boolean) rand);
-                        break;
-                    case "neg":
-                        stack.push(-(int) rand);
-                        break;
+                    List<Object> tauTuple = new ArrayList<>(tauList); // Representing tuple as a list in Java
+                    stack.push(tauTuple);
+                    break;
                 }
-            } else if ("beta".equals(symbol)) {
-                boolean condition = (boolean) stack.pop();
-                Object elsePart = control.remove(control.size() - 1);
-                Object thenPart = control.remove(control.size() - 1);
-
-                if (condition) {
-                    control.addAll(controlStructures.get(((Delta) thenPart).getNumber()));
-                } else {
-                    control.addAll(controlStructures.get(((Delta) elsePart).getNumber()));
+                case Opcode.JUMP: {
+                    int offset = code[pc++];
+                    pc += offset;
+                    break;
                 }
-            } else if (symbol instanceof Tau) {
-                Tau tau = (Tau) symbol;
-                int n = tau.getNumber();
-                List<Object> tauList = new ArrayList<>();
-
-                for (int i = 0; i < n; i++) {
-                    Object value = stack.pop();
-                    tauList.add(value);
+                case Opcode.JUMP_IF_FALSE: {
+                    int offset = code[pc++];
+                    boolean condition = stack.popBoolean();
+                    if (!condition) {
+                        pc += offset;
+                    }
+                    break;
                 }
-
-
-                List<Object> tauTuple = new ArrayList<>(tauList); // Representing tuple as a list in Java
-                stack.push(tauTuple);
-
-            } else if ("Y*".equals(symbol)) {
-                stack.push(symbol);
+                case Opcode.EXIT:
+                    leave();
+                    break;
+                case Opcode.NOT:
+                    stack.pushBoolean(!stack.popBoolean());
+                    break;
+                case Opcode.NEG:
+                    if (stack.integer()) {
+                        long operand = stack.popLong();
+                        if (operand != Long.MIN_VALUE) {
+                            stack.pushLong(-operand);
+                        } else {
+                            stack.push(Integers.negate(operand));
+                        }
+                    } else {
+                        stack.push(Integers.negate(stack.pop()));
+                    }
+                    break;
+                default:
+                    operate(opcode);
             }
         }
 
         if (stack.peek() instanceof Lambda) {
             Lambda lambda = (Lambda) stack.pop();
-            stack.push("[lambda closure: " + lambda.getBoundedVariable() + ": " + lambda.getNumber() + "]");
+            stack.push("[lambda closure: " + lambda.getBoundedVariable() + ": " + lambda.getLabel() + "]");
         }
 
         if (stack.peek() instanceof List) {
@@ -300,82 +199,189 @@ public class CSEMachine {
         }
     }
 
-    public Object lookup(String name) {
-
-        // Remove the enclosing angle brackets
-        name = name.substring(1, name.length() - 1);
+    // Position in 'tuple' of the element that applying it to 'index' selects; tuples count from 1
+    private static int tupleIndex(List<?> tuple, Object index) {
+        if (!(index instanceof Long) && !(index instanceof BigInteger)) {
+            throw new RuntimeException("A tuple can only be applied to an integer, got: " + index);
+        }
+        if (index instanceof BigInteger || (Long) index < 1 || (Long) index > tuple.size()) {
+            throw new RuntimeException("Tuple index " + index + " is out of range 1.." + tuple.size());
+        }
+        return ((Long) index).intValue() - 1;
+    }
 
-        // Split the name into type and value
-        String[] info = name.split(":");
-        String value;
+    private void apply() {
+        Object stackSymbol1 = stack.pop();
+        Object stackSymbol2 = stack.pop();
 
-        if (info.length == 1) {
-            // If no type is specified, treat the entire name as the value
-            value = info[0];
-        } else {
-            // Extract the data type and value
-            String dataType = info[0];
-            value = info[1];
+        if (stackSymbol1 instanceof Lambda) {
+            Lambda lambda = (Lambda) stackSymbol1;
+            String[] variableList = lambda.getBoundedVariables();
+            Environment child = new Environment(environments++, lambda.getEnvironment(), variableList.length);
 
-            // Handle different data types
-            switch (dataType) {
-                case "INT":
-                    return Integer.parseInt(value);
+            if (variableList.length > 1) {
+                for (int i = 0; i < variableList.length; i++) {
+                    child.setVariable(i, ((List<?>) stackSymbol2).get(i));
+                }
+            } else {
+                child.setVariable(0, stackSymbol2);
+            }
 
-                case "STR":
-                    return value.strip().replace("'", "");
+            call(program.code[lambda.getNumber()], child);
+        } else if (stackSymbol1 instanceof List) {
+            List<?> tuple = (List<?>) stackSymbol1;
+            stack.push(tuple.get(tupleIndex(tuple, stackSymbol2)));
+        } else if ("Y*".equals(stackSymbol1)) {
+            Eta temp = new Eta(((Lambda) stackSymbol2).getNumber());
+            temp.setLabel(((Lambda) stackSymbol2).getLabel());
+            temp.setBoundedVariables(((Lambda) stackSymbol2).getBoundedVariables());
+            temp.setEnvironment(((Lambda) stackSymbol2).getEnvironment());
+            stack.push(temp);
+        } else if (stackSymbol1 instanceof Eta) {
+            Lambda temp = new Lambda(((Eta) stackSymbol1).getNumber());
+            temp.setLabel(((Eta) stackSymbol1).getLabel());
+            temp.setBoundedVariables(((Eta) stackSymbol1).getBoundedVariables());
+            temp.setEnvironment(((Eta) stackSymbol1).getEnvironment());
+
+            stack.push(stackSymbol2);
+            stack.push(stackSymbol1);
+            stack.push(temp);
+            call(ETA, currentEnvironment);
+        } else if (stackSymbol1 instanceof String && builtInFunctions.contains(stackSymbol1)) {
+            builtIn((String) stackSymbol1, stackSymbol2);
+        }
+    }
 
-                case "ID":
-                    // Check if the value is a built-in function
-                    if (builtInFunctions.contains(value)) {
-                        return value;
-                    } else {
-                        // Look up the value in the current environment
-                        try {
-                            Object variableValue = environments.get(currentEnvironment).getVariable(value);
-                            return variableValue;
-                        } catch (Exception e) {
-                            System.exit(1);
-                        }
-                    }
-                    break;
+    // In a call the caller returns from right away, the callee goes straight back to where the caller would.
+    // Loops written as tail recursion then run in constant space.
+    private boolean tailCall() {
+        int next = pc;
+        if (code[next] == Opcode.JUMP) {
+            // The then branch of a conditional ends by jumping over the else branch
+            next += 2 + code[next + 1];
+        }
+        return code[next] == Opcode.EXIT;
+    }
 
-                default:
-                    System.exit(1);
-            }
+    // Binary operators
+    private void operate(int opcode) {
+        if (opcode >= Opcode.ADD && opcode <= Opcode.LE) {
+            integerOperator(opcode);
+            return;
+        }
+        if ((opcode == Opcode.EQ || opcode == Opcode.NE) && stack.integers()) {
+            boolean equal = stack.popLong() == stack.popLong();
+            stack.pushBoolean(opcode == Opcode.EQ ? equal : !equal);
+            return;
         }
 
-        // Handle special cases for specific values
-        switch (value) {
-            case "Y*":
-                return "Y*";
+        Object rand1 = stack.pop();
+        Object rand2 = stack.pop();
+
+        switch (opcode) {
+            case Opcode.EQ:
+                stack.push(rand1.equals(rand2));
+                break;
+            case Opcode.NE:
+                stack.push(!rand1.equals(rand2));
+                break;
+            case Opcode.OR:
+                stack.push((boolean) rand1 || (boolean) rand2);
+                break;
+            case Opcode.AND:
+                stack.push((boolean) rand1 && (boolean) rand2);
+                break;
+            case Opcode.AUG:
+
+                List<Object> newTuple = new ArrayList<>();
+
+                if (rand1 instanceof List) {
+                    // rand1 is already a tuple → copy it
+                    newTuple.addAll((List<?>) rand1);
+                } else {
+                }
+
+                // always add rand2 at the end
+                newTuple.add(rand2);
+
+                stack.push(newTuple);
+                break;
+
 
-            case "nil":
-                return "[]"; // Representing an empty tuple
+            default:
+                throw new IllegalStateException("Unexpected opcode: " + opcode);
+        }
+    }
 
-            case "true":
-                return true;
+    // Integer operators work on longs, and on BigIntegers once a value outgrows them
+    private void integerOperator(int opcode) {
+        if (!stack.integers()) {
+            BigInteger rand1 = Integers.big(stack.pop());
+            BigInteger rand2 = Integers.big(stack.pop());
+            if (opcode <= Opcode.POWER) {
+                stack.push(Integers.arithmetic(opcode, rand1, rand2));
+            } else {
+                stack.pushBoolean(holds(opcode, rand1.compareTo(rand2)));
+            }
+            return;
+        }
 
-            case "false":
-                return false;
+        long rand1 = stack.popLong();
+        long rand2 = stack.popLong();
+        switch (opcode) {
+            case Opcode.POWER:
+                stack.push(Integers.power(rand1, rand2));
+                return;
+            case Opcode.GR:
+            case Opcode.GE:
+            case Opcode.LS:
+            case Opcode.LE:
+                stack.pushBoolean(holds(opcode, Long.compare(rand1, rand2)));
+                return;
+            default:
+        }
+        try {
+            stack.pushLong(opcode == Opcode.ADD ? Math.addExact(rand1, rand2)
+                    : opcode == Opcode.SUBTRACT ? Math.subtractExact(rand1, rand2)
+                    : opcode == Opcode.MULTIPLY ? Math.multiplyExact(rand1, rand2)
+                    : Integers.divide(rand1, rand2));
+        } catch (ArithmeticException overflow) {
+            // Division by zero fails again there
+            stack.push(Integers.arithmetic(opcode, BigInteger.valueOf(rand1), BigInteger.valueOf(rand2)));
+        }
+    }
 
+    // Whether a comparison operator holds for operands that compare as 'comparison'
+    private static boolean holds(int opcode, int comparison) {
+        switch (opcode) {
+            case Opcode.GR:
+                return comparison > 0;
+            case Opcode.GE:
+                return comparison >= 0;
+            case Opcode.LS:
+                return comparison < 0;
             default:
-                return value;
+                return comparison <= 0;
         }
     }
 
+    // Built-in names always denote the built-in function, even where a program binds them
+    public static boolean isBuiltInFunction(String name) {
+        return builtInFunctions.contains(name);
+    }
+
     // Built-in functions
-    private void builtIn(String function, Object argument, List<Object> control) {
+    private void builtIn(String function, Object argument) {
         switch (function) {
             case "Order":
 
                 if (argument instanceof List<?>) {
                     int size = ((List<?>) argument).size();
-                    stack.push(size);
+                    stack.pushLong(size);
                 } else if (argument instanceof String) {
                     int length = ((String) argument).length();
                     int reSizedLength = length - 2;
-                    stack.push(reSizedLength);
+                    stack.pushLong(reSizedLength);
                 } else {
                     throw new IllegalArgumentException("Order function expects a List or String argument, got: " + argument.getClass());
                 }
@@ -409,7 +415,15 @@ public class CSEMachine {
             case "Conc":
                 String str1 = (String) stack.pop();
                 stack.push(argument+str1);
-                Object elsePart = control.remove(control.size() - 1);
+                // Conc takes both strings at once, so the next instruction, the application of the second, is skipped
+                if (code[pc] == Opcode.EXIT) {
+                    // Skipping an EXIT goes back to the caller but stays in this body's environment
+                    Environment environment = currentEnvironment;
+                    leave();
+                    currentEnvironment = environment;
+                } else {
+                    pc += 1 + Opcode.operands(code[pc]);
+                }
                 break;
             case "Stern":
                 stack.push(((String) argument).substring(1));
@@ -418,7 +432,7 @@ public class CSEMachine {
                 stack.push(((String) argument).substring(0, 1));
                 break;
             case "Isinteger":
-                stack.push(argument instanceof Integer);
+                stack.push(Integers.isInteger(argument));
                 break;
             case "Istruthvalue":
                 stack.push(argument instanceof Boolean);
@@ -448,7 +462,7 @@ public class CSEMachine {
                 stack.push(builtInFunctions.contains(argument));
                 break;
             case "ItoS":
-                if (argument instanceof Integer) {
+                if (Integers.isInteger(argument)) {
                     stack.push(argument.toString());
                 } else {
                     throw new RuntimeException("ItoS function can only accept integers.");
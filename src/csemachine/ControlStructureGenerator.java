@@ -0,0 +1,134 @@
+package csemachine;
+
+import parser.NodeKind;
+import parser.TreeNode;
+import structures.*;
+
+import java.util.*;
+
+// Generates the control structures of a standardized tree and compiles them into a Program with the Assembler.
+// Leaves become Identifier and Constant elements, so running a Program needs none of the parser classes.
+// Each identifier is resolved here to the lambda that binds it, so the machine finds a variable by its address
+// instead of by name.
+public class ControlStructureGenerator {
+    private final List<List<Object>> controlStructures = new ArrayList<>();
+    private final Map<List<Object>, Identifier> identifiers = new HashMap<>();
+    // Lambdas around the structure being generated, and for each variable name the lambdas and slots that bind
+    // it there, innermost on top
+    private int lambdas;
+    private final Map<String, Deque<int[]>> scope = new HashMap<>();
+    private int count = 0;
+
+    public static Program generate(TreeNode root) {
+        return generate(root, new ControlStructureSharing());
+    }
+
+    // Generate the control structures and give repeated bodies one number, counting them in 'sharing'
+    public static Program generate(TreeNode root, ControlStructureSharing sharing) {
+        ControlStructureGenerator generator = new ControlStructureGenerator();
+        generator.generateControlStructure(root, 0);
+        return Assembler.assemble(sharing.share(generator.controlStructures));
+    }
+
+    // Generate control structures recursively
+    private void generateControlStructure(TreeNode root, int i) {
+
+        while (controlStructures.size() <= i) {
+            controlStructures.add(new ArrayList<>());
+        }
+
+        NodeKind kind = root.getKind();
+        List<? extends TreeNode> children = root.getChildren();
+        if (kind == NodeKind.LAMBDA) {
+            count++;
+            TreeNode leftChild = children.get(0);
+            Lambda lambda = new Lambda(count);
+
+            if (leftChild.getKind() == NodeKind.COMMA) {
+                List<? extends TreeNode> variables = leftChild.getChildren();
+                String[] boundedVariables = new String[variables.size()];
+                for (int j = 0; j < boundedVariables.length; j++) {
+                    boundedVariables[j] = variables.get(j).getText();
+                }
+                lambda.setBoundedVariables(boundedVariables);
+            } else {
+                lambda.setBoundedVariables(new String[] { leftChild.getText() });
+            }
+
+            controlStructures.get(i).add(lambda);
+
+            String[] variables = lambda.getBoundedVariables();
+            lambdas++;
+            for (int j = 0; j < variables.length; j++) {
+                scope.computeIfAbsent(variables[j], name -> new ArrayDeque<>()).push(new int[] { lambdas, j });
+            }
+            for (int j = 1; j < children.size(); j++) {
+                generateControlStructure(children.get(j), count);
+            }
+            for (String variable : variables) {
+                scope.get(variable).pop();
+            }
+            lambdas--;
+        } else if (kind == NodeKind.CONDITIONAL) {
+            count++;
+            Delta delta1 = new Delta(count);
+            controlStructures.get(i).add(delta1);
+            generateControlStructure(children.get(1), count);
+
+            count++;
+            Delta delta2 = new Delta(count);
+            controlStructures.get(i).add(delta2);
+            generateControlStructure(children.get(2), count);
+
+            controlStructures.get(i).add("beta");
+            generateControlStructure(children.get(0), i);
+        } else if (kind == NodeKind.TAU) {
+            Tau tau = new Tau(children.size());
+            controlStructures.get(i).add(tau);
+            for (TreeNode child : children) {
+                generateControlStructure(child, i);
+            }
+        } else if (kind.isLeaf() && kind != NodeKind.EMPTY_PARAMETER) {
+            controlStructures.get(i).add(leaf(root));
+        } else {
+            controlStructures.get(i).add(root.getValue());
+            for (TreeNode child : children) {
+                generateControlStructure(child, i);
+            }
+        }
+    }
+
+    // Control element of a leaf; its value is decoded here so nothing is parsed at run time
+    private Object leaf(TreeNode leaf) {
+        switch (leaf.getKind()) {
+            case IDENTIFIER:
+                return identifier(leaf.getText());
+            case INTEGER:
+                return Constant.integer(leaf.getText());
+            case STRING:
+                return new Constant(leaf.getStringValue());
+            case Y_STAR:
+                return new Constant("Y*");
+            case NIL:
+                return new Constant("[]"); // Representing an empty tuple
+            case TRUE:
+                return new Constant(true);
+            case FALSE:
+                return new Constant(false);
+            case DUMMY:
+                return new Constant("dummy");
+            default:
+                throw new IllegalArgumentException("Not a leaf: " + leaf.getValue());
+        }
+    }
+
+    // Identifier with the address of the innermost variable of that name; of repeated names in one lambda,
+    // the last one is bound
+    private Identifier identifier(String name) {
+        Deque<int[]> bindings = scope.get(name);
+        int[] binding = bindings != null ? bindings.peek() : null;
+        int depth = binding != null ? lambdas - binding[0] : -1;
+        int slot = binding != null ? binding[1] : -1;
+        return identifiers.computeIfAbsent(Arrays.asList(name, depth, slot), key -> new Identifier(name, depth, slot));
+    }
+}
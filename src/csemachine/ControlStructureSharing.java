@@ -0,0 +1,124 @@
+package csemachine;
+
+import structures.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Gives identical control structures one number, so a lambda or conditional body repeated in the source is stored once.
+// A structure only refers to structures numbered after it (nested bodies get their numbers later), so structures are
+// compared from the last to the first, each with its references already pointing at the shared copies.
+// The copy that comes first is kept and the remaining structures are numbered in their old order. Lambdas keep their
+// old number as the label that is printed for their closures, so sharing never changes what a program prints; a
+// structure that creates closures therefore only matches itself.
+public class ControlStructureSharing {
+    private int structures;
+    private int sharedStructures;
+    private int elements;
+    private int sharedElements;
+
+    public List<List<Object>> share(List<List<Object>> controlStructures) {
+        int count = controlStructures.size();
+
+        // Structures with equal contents get one class, numbered by the first structure seen in it
+        int[] classes = new int[count];
+        int[] firsts = new int[count];
+        Map<List<Object>, Integer> seen = new HashMap<>();
+        for (int i = count - 1; i >= 0; i--) {
+            List<Object> controlStructure = controlStructures.get(i);
+            List<Object> key = new ArrayList<>(controlStructure.size());
+            for (Object element : controlStructure) {
+                key.add(key(element, i, classes));
+            }
+            Integer existing = seen.putIfAbsent(key, i);
+            classes[i] = existing != null ? existing : i;
+            firsts[classes[i]] = i;
+        }
+
+        int[] numbers = new int[count];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (firsts[classes[i]] == i) {
+                numbers[i] = kept++;
+            }
+        }
+        structures += count;
+        sharedStructures += kept;
+        for (int i = 0; i < count; i++) {
+            int size = controlStructures.get(i).size();
+            elements += size;
+            sharedElements += firsts[classes[i]] == i ? size : 0;
+        }
+        if (kept == count) {
+            return controlStructures;
+        }
+
+        List<List<Object>> shared = new ArrayList<>(kept);
+        for (int i = 0; i < count; i++) {
+            if (firsts[classes[i]] != i) {
+                continue;
+            }
+            List<Object> controlStructure = new ArrayList<>(controlStructures.get(i));
+            for (int j = 0; j < controlStructure.size(); j++) {
+                Object element = controlStructure.get(j);
+                if (element instanceof Lambda) {
+                    Lambda lambda = (Lambda) element;
+                    Lambda renumbered = new Lambda(numbers[firsts[classes[lambda.getNumber()]]]);
+                    renumbered.setLabel(lambda.getLabel());
+                    renumbered.setBoundedVariables(lambda.getBoundedVariables());
+                    controlStructure.set(j, renumbered);
+                } else if (element instanceof Delta) {
+                    controlStructure.set(j, new Delta(numbers[firsts[classes[((Delta) element).getNumber()]]]));
+                }
+            }
+            shared.add(controlStructure);
+        }
+        return shared;
+    }
+
+    // Value that equal elements of equal structures have in common; references use the class of their target.
+    // Identifiers also need the same address, so a shared body finds its variables wherever it is used.
+    private static Object key(Object element, int structure, int[] classes) {
+        if (element instanceof Lambda) {
+            Lambda lambda = (Lambda) element;
+            return Arrays.asList("lambda", target(lambda.getNumber(), structure, classes),
+                    Arrays.asList(lambda.getBoundedVariables()), lambda.getLabel());
+        } else if (element instanceof Delta) {
+            return Arrays.asList("delta", target(((Delta) element).getNumber(), structure, classes));
+        } else if (element instanceof Tau) {
+            return Arrays.asList("tau", ((Tau) element).getNumber());
+        } else if (element instanceof Identifier) {
+            Identifier identifier = (Identifier) element;
+            return Arrays.asList("identifier", identifier.getName(), identifier.getDepth(), identifier.getSlot());
+        } else if (element instanceof Constant) {
+            Constant constant = (Constant) element;
+            return Arrays.asList("constant", constant.getValue());
+        }
+        return element;
+    }
+
+    // A reference to a structure that is not numbered after this one is left as it is, so it only matches itself
+    private static int target(int number, int structure, int[] classes) {
+        return number > structure && number < classes.length ? classes[number] : -1 - number;
+    }
+
+    // Control structures and their elements before and after sharing
+    public int getStructures() {
+        return structures;
+    }
+
+    public int getSharedStructures() {
+        return sharedStructures;
+    }
+
+    public int getElements() {
+        return elements;
+    }
+
+    public int getSharedElements() {
+        return sharedElements;
+    }
+}
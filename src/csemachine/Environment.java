@@ -1,55 +1,42 @@
 package csemachine;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.Arrays;
 
+// Frame of the variables bound by one application of a lambda, in the order of the lambda's variables.
+// Code addresses a variable by the number of parents to go up and its slot there, so nothing is looked up by name.
+// Only closures and the frames inside it refer to a frame, so once none of them is reachable it is collected.
 public class Environment {
-    private String name; // Name of the environment (e.g., "e_0")
-    private Map<String, Object> variables; // Variables in the current environment
-    private List<Environment> children; // List of child environments
+    private int number; // Number of the environment, 0 for the root, as printed
+    private Object[] values; // Values of the variables
     private Environment parent; // Reference to the parent environment
 
     // Constructor
-    public Environment(int number, Environment parent) {
-        this.name = "e_" + number;
-        this.variables = new HashMap<>();
-        this.children = new ArrayList<>();
+    public Environment(int number, Environment parent, int size) {
+        this.number = number;
+        this.values = new Object[size];
         this.parent = parent;
     }
 
-    // Add a child environment to the current environment
-    public void addChild(Environment child) {
-        this.children.add(child);
-        // Inherit variables from the parent environment
-        child.variables.putAll(this.variables);
+    public void setVariable(int slot, Object value) {
+        this.values[slot] = value;
     }
 
-    // Add a variable to the current environment
-    public void addVariable(String key, Object value) {
-        this.variables.put(key, value);
+    // Value of the variable in slot 'slot' of the environment 'depth' parents up
+    public Object getVariable(int depth, int slot) {
+        Environment environment = this;
+        for (int i = 0; i < depth; i++) {
+            environment = environment.parent;
+        }
+        return environment.values[slot];
     }
 
-    // Get the value of a variable, searching recursively in parent environments
-    public Object getVariable(String key) {
-        if (this.variables.containsKey(key)) {
-            return this.variables.get(key);
-        } else if (this.parent != null) {
-            return this.parent.getVariable(key);
-        } else {
-            throw new RuntimeException("Undeclared Identifier: " + key);
-        }
+    public int getNumber() {
+        return this.number;
     }
 
     // Get the name of the environment
     public String getName() {
-        return this.name;
-    }
-
-    // Get the variables in the current environment
-    public Map<String, Object> getVariables() {
-        return this.variables;
+        return "e_" + number;
     }
 
     // Get the parent environment
@@ -57,13 +44,8 @@ public class Environment {
         return this.parent;
     }
 
-    // Get the list of child environments
-    public List<Environment> getChildren() {
-        return this.children;
-    }
-
     @Override
     public String toString() {
-        return "Environment{name='" + name + "', variables=" + variables + "}";
+        return "Environment{name='" + getName() + "', values=" + Arrays.toString(values) + "}";
     }
-}
\ No newline at end of file
+}
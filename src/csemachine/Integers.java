@@ -0,0 +1,98 @@
+package csemachine;
+
+import java.math.BigInteger;
+
+// Integers of a program are exact. The machine computes on longs and comes here when an operand is a BigInteger or
+// a result would overflow; a result that fits in a long is made a Long again, so each integer has one
+// representation and equal integers are equal objects.
+final class Integers {
+
+    private Integers() {
+    }
+
+    static boolean isInteger(Object value) {
+        return value instanceof Long || value instanceof BigInteger;
+    }
+
+    // An integer operand as a BigInteger; anything else fails as a cast from Object does
+    static BigInteger big(Object value) {
+        return value instanceof BigInteger ? (BigInteger) value : BigInteger.valueOf((Long) value);
+    }
+
+    // The integer as the machine keeps it
+    static Object valueOf(BigInteger value) {
+        return value.bitLength() < 64 ? (Object) value.longValue() : value;
+    }
+
+    // Long division, which only overflows for the smallest long divided by -1
+    static long divide(long rand1, long rand2) {
+        if (rand1 == Long.MIN_VALUE && rand2 == -1) {
+            throw new ArithmeticException("long overflow");
+        }
+        return rand1 / rand2;
+    }
+
+    // rand1 op rand2 for the arithmetic opcodes, ADD to POWER
+    static Object arithmetic(int opcode, BigInteger rand1, BigInteger rand2) {
+        switch (opcode) {
+            case Opcode.ADD:
+                return valueOf(rand1.add(rand2));
+            case Opcode.SUBTRACT:
+                return valueOf(rand1.subtract(rand2));
+            case Opcode.MULTIPLY:
+                return valueOf(rand1.multiply(rand2));
+            case Opcode.DIVIDE:
+                if (rand2.signum() == 0) {
+                    throw new ArithmeticException("/ by zero");
+                }
+                return valueOf(rand1.divide(rand2));
+            default:
+                return power(rand1, rand2);
+        }
+    }
+
+    static Object negate(Object value) {
+        return valueOf(big(value).negate());
+    }
+
+    // base ** exponent by squaring, on longs until a product overflows
+    static Object power(long base, long exponent) {
+        if (exponent < 0) {
+            return power(BigInteger.valueOf(base), BigInteger.valueOf(exponent));
+        }
+        long result = 1;
+        long square = base;
+        try {
+            for (long e = exponent; e > 0; e >>= 1) {
+                if ((e & 1) != 0) {
+                    result = Math.multiplyExact(result, square);
+                }
+                if (e > 1) {
+                    square = Math.multiplyExact(square, square);
+                }
+            }
+        } catch (ArithmeticException overflow) {
+            return power(BigInteger.valueOf(base), BigInteger.valueOf(exponent));
+        }
+        return result;
+    }
+
+    // A negative exponent gives 1 divided by the power, in integers
+    static Object power(BigInteger base, BigInteger exponent) {
+        if (base.abs().compareTo(BigInteger.ONE) <= 0) {
+            // 0, 1 and -1 have powers for any exponent
+            if (base.signum() == 0) {
+                if (exponent.signum() < 0) {
+                    throw new ArithmeticException("/ by zero");
+                }
+                return exponent.signum() == 0 ? 1L : 0L;
+            }
+            return base.signum() < 0 && exponent.testBit(0) ? -1L : 1L;
+        }
+        if (exponent.signum() < 0) {
+            return 0L;
+        }
+        // BigInteger.pow squares as well; an exponent beyond the int range has no result that could be held
+        return valueOf(base.pow(exponent.intValueExact()));
+    }
+}
@@ -0,0 +1,93 @@
+package csemachine;
+
+// Instructions of a compiled program. Each is an opcode followed by its operands, if any; operands index the
+// constant, symbol and lambda tables of the Program, address a variable, or count ints of code to skip.
+final class Opcode {
+    static final int PUSH = 0;             // constant: push it
+    static final int LOAD = 1;             // depth, slot: push the variable at that address
+    static final int LAMBDA = 2;           // lambda: push a closure of it over the current environment
+    static final int APPLY = 3;            // apply the function on top of the stack to the value below it
+    static final int TUPLE = 4;            // count: replace that many values by a tuple of them
+    static final int JUMP = 5;             // offset: skip that many ints of code
+    static final int JUMP_IF_FALSE = 6;    // offset: pop a truth value and skip that many ints if it is false
+    static final int EXIT = 7;             // end of a body: go back to its caller and the caller's environment
+    static final int ADD = 8;
+    static final int SUBTRACT = 9;
+    static final int MULTIPLY = 10;
+    static final int DIVIDE = 11;
+    static final int POWER = 12;
+    static final int GR = 13;
+    static final int GE = 14;
+    static final int LS = 15;
+    static final int LE = 16;
+    static final int EQ = 17;
+    static final int NE = 18;
+    static final int OR = 19;
+    static final int AND = 20;
+    static final int AUG = 21;
+    static final int NOT = 22;
+    static final int NEG = 23;
+    static final int UNDEFINED = 24;       // symbol: exit, as looking up a variable bound nowhere does
+
+    static final int COUNT = 25;
+
+    private Opcode() {
+    }
+
+    // Operands that follow the opcode
+    static int operands(int opcode) {
+        switch (opcode) {
+            case LOAD:
+                return 2;
+            case PUSH:
+            case LAMBDA:
+            case TUPLE:
+            case JUMP:
+            case JUMP_IF_FALSE:
+            case UNDEFINED:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    // Opcode of a binary or unary operator of the standardized tree, or -1
+    static int operator(String operator) {
+        switch (operator) {
+            case "+":
+                return ADD;
+            case "-":
+                return SUBTRACT;
+            case "*":
+                return MULTIPLY;
+            case "/":
+                return DIVIDE;
+            case "**":
+                return POWER;
+            case "gr":
+                return GR;
+            case "ge":
+                return GE;
+            case "ls":
+                return LS;
+            case "le":
+                return LE;
+            case "eq":
+                return EQ;
+            case "ne":
+                return NE;
+            case "or":
+                return OR;
+            case "&":
+                return AND;
+            case "aug":
+                return AUG;
+            case "not":
+                return NOT;
+            case "neg":
+                return NEG;
+            default:
+                return -1;
+        }
+    }
+}
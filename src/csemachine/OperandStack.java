@@ -0,0 +1,89 @@
+package csemachine;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+// Value stack of the CSE machine. Integers that fit in a long are kept unboxed in a long[] beside the values, so
+// arithmetic and comparisons allocate nothing; such an integer is boxed only when it is popped as an Object, to be
+// bound to a variable, put in a tuple or printed. BigIntegers are kept as values. Values popped as the wrong type
+// fail as the cast from Object did. Not synchronized, since a machine runs on one thread.
+final class OperandStack {
+    // Value of a slot whose integer is in numbers
+    private static final Object INTEGER = new Object();
+
+    private Object[] values = new Object[64];
+    private long[] numbers = new long[64];
+    private int size;
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void push(Object value) {
+        if (value instanceof Long) {
+            pushLong((Long) value);
+            return;
+        }
+        grow();
+        values[size++] = value;
+    }
+
+    void pushLong(long value) {
+        grow();
+        values[size] = INTEGER;
+        numbers[size++] = value;
+    }
+
+    void pushBoolean(boolean value) {
+        grow();
+        values[size++] = Boolean.valueOf(value);
+    }
+
+    Object peek() {
+        if (size == 0) {
+            throw new EmptyStackException();
+        }
+        Object value = values[size - 1];
+        return value == INTEGER ? Long.valueOf(numbers[size - 1]) : value;
+    }
+
+    Object pop() {
+        Object value = peek();
+        values[--size] = null;
+        return value;
+    }
+
+    long popLong() {
+        if (size == 0) {
+            throw new EmptyStackException();
+        }
+        Object value = values[--size];
+        if (value == INTEGER) {
+            return numbers[size];
+        }
+        values[size] = null;
+        return (Long) value;
+    }
+
+    boolean popBoolean() {
+        Object value = pop();
+        return (Boolean) value;
+    }
+
+    // Whether the value on top is an integer in the long[]
+    boolean integer() {
+        return size >= 1 && values[size - 1] == INTEGER;
+    }
+
+    // Whether the two values on top are both integers in the long[]
+    boolean integers() {
+        return size >= 2 && values[size - 1] == INTEGER && values[size - 2] == INTEGER;
+    }
+
+    private void grow() {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            numbers = Arrays.copyOf(numbers, size * 2);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package csemachine;
+
+// Compiled program, ready to run on a CSEMachine: int code for the main program and every lambda body, and the
+// tables its operands index. code[i] is the body of structure number i, 0 being the main program; numbers of
+// conditional branches have no code of their own, since branches are compiled into the code around them.
+// A program is never modified by running it, so one instance can be executed any number of times.
+public class Program {
+    final int[][] code;
+    final Object[] constants;
+    final String[] symbols;
+    // Structure number, printed number and bound variables of each lambda
+    final int[] lambdaNumbers;
+    final int[] lambdaLabels;
+    final String[][] lambdaVariables;
+
+    Program(int[][] code, Object[] constants, String[] symbols, int[] lambdaNumbers, int[] lambdaLabels,
+            String[][] lambdaVariables) {
+        this.code = code;
+        this.constants = constants;
+        this.symbols = symbols;
+        this.lambdaNumbers = lambdaNumbers;
+        this.lambdaLabels = lambdaLabels;
+        this.lambdaVariables = lambdaVariables;
+    }
+}
@@ -0,0 +1,267 @@
+package csemachine;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compiled program file (.rpc), written by 'myrpal -compile' and run without the scanner, parser or standardizer.
+// Layout: magic, version, the symbol table (every name and string once), the constant pool, the lambda table,
+// then the code of each body, whose operands refer to the tables by index. Numbers are variable-length ints.
+public class ProgramFile {
+    private static final int MAGIC = 0x52504321;
+    // Change whenever the layout or the meaning of an instruction changes
+    public static final int VERSION = 6;
+
+    // Tags of constants
+    private static final int INTEGER = 0;
+    private static final int STRING = 1;
+    private static final int TRUE = 2;
+    private static final int FALSE = 3;
+    private static final int BIG_INTEGER = 4;  // beyond the range of long, as its digits in the symbol table
+
+    private final Map<String, Integer> symbolIndex = new HashMap<>();
+    private final List<String> symbols = new ArrayList<>();
+
+    public static void write(Program program, Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            write(program, out);
+        }
+    }
+
+    public static void write(Program program, DataOutputStream out) throws IOException {
+        ProgramFile file = new ProgramFile();
+        // The symbols of the program keep their indexes, so the code is written as it is
+        for (String symbol : program.symbols) {
+            file.symbol(symbol);
+        }
+
+        // The tables that refer to symbols go first into a buffer, which adds their strings to the symbol table
+        ByteArrayOutputStream tables = new ByteArrayOutputStream();
+        DataOutputStream tablesOut = new DataOutputStream(tables);
+        writeNumber(tablesOut, program.constants.length);
+        for (Object constant : program.constants) {
+            file.writeConstant(tablesOut, constant);
+        }
+        writeNumber(tablesOut, program.lambdaNumbers.length);
+        for (int i = 0; i < program.lambdaNumbers.length; i++) {
+            writeNumber(tablesOut, program.lambdaNumbers[i]);
+            writeNumber(tablesOut, program.lambdaLabels[i]);
+            writeNumber(tablesOut, program.lambdaVariables[i].length);
+            for (String variable : program.lambdaVariables[i]) {
+                writeNumber(tablesOut, file.symbol(variable));
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeNumber(out, file.symbols.size());
+        for (String symbol : file.symbols) {
+            byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+            writeNumber(out, bytes.length);
+            out.write(bytes);
+        }
+        tables.writeTo(out);
+
+        // Bodies, each as its length plus one, or 0 for a number that has no code
+        writeNumber(out, program.code.length);
+        for (int[] body : program.code) {
+            writeNumber(out, body != null ? body.length + 1 : 0);
+            if (body != null) {
+                for (int value : body) {
+                    writeNumber(out, value);
+                }
+            }
+        }
+    }
+
+    // Map a compiled program file into memory and decode it
+    public static Program read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static Program read(ByteBuffer in) throws IOException {
+        try {
+            if (in.remaining() < 8 || in.getInt() != MAGIC) {
+                throw new IOException("Not a compiled RPAL program");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Compiled program has version " + version + ", expected " + VERSION + "; compile it again");
+            }
+
+            String[] symbols = new String[readNumber(in)];
+            for (int i = 0; i < symbols.length; i++) {
+                byte[] bytes = new byte[readNumber(in)];
+                in.get(bytes);
+                symbols[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            Object[] constants = new Object[readNumber(in)];
+            for (int i = 0; i < constants.length; i++) {
+                constants[i] = readConstant(in, symbols);
+            }
+            int[] lambdaNumbers = new int[readNumber(in)];
+            int[] lambdaLabels = new int[lambdaNumbers.length];
+            String[][] lambdaVariables = new String[lambdaNumbers.length][];
+            for (int i = 0; i < lambdaNumbers.length; i++) {
+                lambdaNumbers[i] = readNumber(in);
+                lambdaLabels[i] = readNumber(in);
+                lambdaVariables[i] = new String[readNumber(in)];
+                for (int j = 0; j < lambdaVariables[i].length; j++) {
+                    lambdaVariables[i][j] = symbols[readNumber(in)];
+                }
+            }
+
+            int[][] code = new int[readNumber(in)][];
+            for (int i = 0; i < code.length; i++) {
+                int length = readNumber(in);
+                if (length > 0) {
+                    code[i] = new int[length - 1];
+                    for (int j = 0; j < code[i].length; j++) {
+                        code[i][j] = readNumber(in);
+                    }
+                }
+            }
+            Program program = new Program(code, constants, symbols, lambdaNumbers, lambdaLabels, lambdaVariables);
+            verify(program);
+            return program;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Compiled program is damaged", e);
+        }
+    }
+
+    // Check that every operand is within its table or body, so running a damaged file cannot go astray
+    private static void verify(Program program) throws IOException {
+        if (program.code.length == 0 || program.code[0] == null) {
+            throw new IOException("Compiled program has no main program");
+        }
+        for (int number : program.lambdaNumbers) {
+            if (number >= program.code.length || program.code[number] == null) {
+                throw new IOException("Compiled program is damaged");
+            }
+        }
+        for (int[] body : program.code) {
+            int last = -1;
+            for (int i = 0; body != null && i < body.length; i += 1 + Opcode.operands(body[i])) {
+                last = i;
+                int opcode = body[i];
+                if (opcode < 0 || opcode >= Opcode.COUNT || i + Opcode.operands(opcode) >= body.length) {
+                    throw new IOException("Compiled program is damaged");
+                }
+                int operand = Opcode.operands(opcode) > 0 ? body[i + 1] : 0;
+                boolean valid;
+                switch (opcode) {
+                    case Opcode.PUSH:
+                        valid = operand < program.constants.length;
+                        break;
+                    case Opcode.UNDEFINED:
+                        valid = operand < program.symbols.length;
+                        break;
+                    case Opcode.LAMBDA:
+                        valid = operand < program.lambdaNumbers.length;
+                        break;
+                    case Opcode.JUMP:
+                    case Opcode.JUMP_IF_FALSE:
+                        valid = operand < body.length - i - 2;
+                        break;
+                    case Opcode.LOAD:
+                        // The depth and slot are checked by the frames when the variable is loaded
+                        valid = body[i + 2] >= 0;
+                        break;
+                    default:
+                        valid = true;
+                }
+                if (!valid || operand < 0) {
+                    throw new IOException("Compiled program is damaged");
+                }
+            }
+            // Bodies are run in place, so each must end in an EXIT rather than run off its end
+            if (body != null && (last < 0 || body[last] != Opcode.EXIT)) {
+                throw new IOException("Compiled program is damaged");
+            }
+        }
+    }
+
+    private void writeConstant(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Long) {
+            out.writeByte(INTEGER);
+            out.writeLong((Long) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeNumber(out, symbol(value.toString()));
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeNumber(out, symbol((String) value));
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else {
+            throw new IOException("Cannot store constant " + value);
+        }
+    }
+
+    private static Object readConstant(ByteBuffer in, String[] symbols) throws IOException {
+        int tag = in.get();
+        switch (tag) {
+            case INTEGER:
+                return in.getLong();
+            case BIG_INTEGER:
+                try {
+                    return new BigInteger(symbols[readNumber(in)]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Compiled program is damaged");
+                }
+            case STRING:
+                return symbols[readNumber(in)];
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            default:
+                throw new IOException("Unknown constant " + tag);
+        }
+    }
+
+    private int symbol(String name) {
+        Integer index = symbolIndex.get(name);
+        if (index == null) {
+            index = symbols.size();
+            symbolIndex.put(name, index);
+            symbols.add(name);
+        }
+        return index;
+    }
+
+    private static void writeNumber(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readNumber(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number");
+    }
+}
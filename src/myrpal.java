@@ -1,14 +1,20 @@
-import parser.Parser;
-import parser.Node;
-import standardizer.Standardizer;
+import cache.CompilationCache;
 import csemachine.CSEMachine;
+import csemachine.Program;
+import csemachine.ProgramFile;
+import optimizer.Optimizer;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 public class myrpal {
+    // -Drpal.ast=arena keeps the trees in an AstArena, which needs far less memory for very large programs
+    static final boolean ARENA = "arena".equals(System.getProperty("rpal.ast"));
+
     public static void main(String[] args) {
         if (args.length < 1) {
             System.out.println("Wrong command. Make sure the command is in the following format: \njava MyRpal [-l] [-ast] [-st] [-exec] filename");
@@ -16,19 +22,47 @@ public class myrpal {
         }
 
         String fileName = args[args.length - 1];
-        List<String> switches = List.of(args).subList(0, args.length - 1);
+        List<String> switches = new ArrayList<>(List.of(args).subList(0, args.length - 1));
+        // -O0, -O1 or -O2 chooses how far the program is optimized before it runs
+        int optimizationLevel = Optimizer.DEFAULT_LEVEL;
+        for (String argument : args) {
+            if (optimizationLevel(argument) >= 0) {
+                optimizationLevel = optimizationLevel(argument);
+            }
+        }
+        switches.removeIf(argument -> optimizationLevel(argument) >= 0);
 
         try {
-            if (args.length == 1) {
-                Node standardizedTree = Standardizer.standardize(fileName);
-                CSEMachine cseMachine = new CSEMachine();
+            // 'myrpal -compile prog -o prog.rpc' writes the compiled program for later runs
+            int compile = List.of(args).indexOf("-compile");
+            if (compile >= 0 && compile + 1 < args.length) {
+                String source = args[compile + 1];
+                int output = List.of(args).indexOf("-o");
+                Path target = Paths.get(output >= 0 && output + 1 < args.length ? args[output + 1] : source + ".rpc");
+                ProgramFile.write(CompilationCache.open(ARENA, optimizationLevel).program(source), target);
+                System.exit(0);
+            }
+
+            if (switches.isEmpty()) {
+                // A compiled program runs without loading the scanner, parser or standardizer
+                Program program = fileName.endsWith(".rpc")
+                        ? ProgramFile.read(Paths.get(fileName))
+                        : CompilationCache.open(ARENA, optimizationLevel).program(fileName);
                 System.out.println("Executing Program...");
-                cseMachine.execute(standardizedTree);
+                new CSEMachine().execute(program);
                 System.out.println("Execution Complete.");
                 System.exit(0);
             }
             else {
                 // Handle switches
+                if (switches.contains("-sharing")) {
+                    Inspector.printSharing(fileName);
+                    System.exit(0);
+                }
+                if (switches.contains("-opt-stats")) {
+                    Inspector.printOptimization(fileName, optimizationLevel);
+                    System.exit(0);
+                }
                 if (switches.contains("-l") || switches.contains("-ast") || switches.contains("-st")) {
                     // If '-l' is in the switches, print the file as it is
                     if (switches.contains("-l")) {
@@ -38,19 +72,13 @@ public class myrpal {
 
                     // If '-ast' is in the switches, print the abstract syntax tree
                     if (switches.contains("-ast")) {
-                        Node ast = Parser.parse(fileName);
-                        System.out.println("Abstract Syntax Tree:");
-                        Node.preorderTraversal(ast);
-                        System.out.println();
+                        Inspector.printAbstractSyntaxTree(fileName);
                         System.exit(0);
                     }
 
                     // If '-st' is in the switches but not '-ast', print the standardized tree
                     if (switches.contains("-st") && !switches.contains("-ast")) {
-                        Node standardizedTree = Standardizer.standardize(fileName);
-                        System.out.println("Standardized Tree:");
-                        Node.preorderTraversal(standardizedTree);
-                        System.out.println();
+                        Inspector.printStandardizedTree(fileName);
                         System.exit(0);
                     }
                 } else {
@@ -68,6 +96,16 @@ public class myrpal {
         }
     }
 
+    // Level of a -O0, -O1 or -O2 switch, or -1 for any other argument. Optimizer.level reads these too, but calling it
+    // would load the optimizer on every run; its constants are inlined by the compiler and load nothing.
+    private static int optimizationLevel(String argument) {
+        if (argument.length() == 3 && argument.startsWith("-O")) {
+            int level = argument.charAt(2) - '0';
+            return level >= 0 && level <= Optimizer.MAX_LEVEL ? level : -1;
+        }
+        return -1;
+    }
+
     private static void printFileContent(String fileName) throws IOException {
         List<String> lines = Files.readAllLines(Paths.get(fileName));
         for (String line : lines) {
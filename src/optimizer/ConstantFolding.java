@@ -0,0 +1,117 @@
+package optimizer;
+
+import parser.Node;
+import parser.NodeKind;
+
+import java.util.List;
+
+// Evaluates operators whose operands are literals, and conditionals with a literal condition, the way the
+// CSE machine would. Operators that would fail at run time (division by zero, operands of the wrong type) are
+// left for the machine to report, and integers beyond the int range for the machine to compute exactly.
+class ConstantFolding extends TreeRewriter {
+
+    @Override
+    public String getName() {
+        return "constant folding";
+    }
+
+    @Override
+    protected Node exit(Node node, Node rebuilt) {
+        Node folded = fold(rebuilt);
+        if (folded != rebuilt) {
+            rewritten();
+        }
+        return folded;
+    }
+
+    private static Node fold(Node node) {
+        List<Node> children = node.getChildren();
+        NodeKind kind = node.getKind();
+        if (kind == NodeKind.CONDITIONAL && children.size() == 3) {
+            Node condition = children.get(0);
+            return condition.getKind() == NodeKind.TRUE ? children.get(1)
+                    : condition.getKind() == NodeKind.FALSE ? children.get(2) : node;
+        }
+        if (children.size() == 1) {
+            Node operand = children.get(0);
+            if (kind == NodeKind.NOT && isBoolean(operand)) {
+                return truthValue(operand.getKind() == NodeKind.FALSE);
+            }
+            if (kind == NodeKind.NEG && isInteger(operand) && operand.getIntValue() != Integer.MIN_VALUE) {
+                return Node.integer(Integer.toString(-operand.getIntValue()));
+            }
+            return node;
+        }
+        if (children.size() != 2) {
+            return node;
+        }
+
+        Node left = children.get(0);
+        Node right = children.get(1);
+        if (isInteger(left) && isInteger(right)) {
+            int a = left.getIntValue();
+            int b = right.getIntValue();
+            switch (kind) {
+                case PLUS:
+                    return integer(node, (long) a + b);
+                case MINUS:
+                    return integer(node, (long) a - b);
+                case TIMES:
+                    return integer(node, (long) a * b);
+                case DIVIDE:
+                    return b == 0 ? node : integer(node, (long) a / b);
+                case GR:
+                    return truthValue(a > b);
+                case GE:
+                    return truthValue(a >= b);
+                case LS:
+                    return truthValue(a < b);
+                case LE:
+                    return truthValue(a <= b);
+                case EQ:
+                    return truthValue(a == b);
+                case NE:
+                    return truthValue(a != b);
+                default:
+                    return node;
+            }
+        }
+        if (isBoolean(left) && isBoolean(right)) {
+            boolean a = left.getKind() == NodeKind.TRUE;
+            boolean b = right.getKind() == NodeKind.TRUE;
+            switch (kind) {
+                case OR:
+                    return truthValue(a || b);
+                case AMPERSAND:
+                    return truthValue(a && b);
+                case EQ:
+                    return truthValue(a == b);
+                case NE:
+                    return truthValue(a != b);
+                default:
+                    return node;
+            }
+        }
+        if (left.getKind() == NodeKind.STRING && right.getKind() == NodeKind.STRING) {
+            boolean equal = left.getStringValue().equals(right.getStringValue());
+            switch (kind) {
+                case EQ:
+                    return truthValue(equal);
+                case NE:
+                    return truthValue(!equal);
+                default:
+                    return node;
+            }
+        }
+        return node;
+    }
+
+    // Literal of a result, if it is within the int range
+    private static Node integer(Node node, long value) {
+        return value == (int) value ? Node.integer(Long.toString(value)) : node;
+    }
+
+    private static Node truthValue(boolean value) {
+        return new Node(value ? NodeKind.TRUE : NodeKind.FALSE);
+    }
+}
@@ -0,0 +1,47 @@
+package optimizer;
+
+import parser.Node;
+import parser.NodeKind;
+
+// Removes bindings nothing refers to: gamma (lambda x . E) V becomes E when E does not use x and V is a value,
+// whose evaluation could neither fail nor print. A tuple of values bound to unused variables (x, y) goes as well.
+class DeadBindingElimination extends TreeRewriter {
+
+    @Override
+    public String getName() {
+        return "dead bindings";
+    }
+
+    @Override
+    protected Node exit(Node node, Node rebuilt) {
+        if (node.getKind() == NodeKind.IDENTIFIER) {
+            Binding binding = resolve(node.getText());
+            if (binding != null) {
+                binding.references++;
+            }
+            return rebuilt;
+        }
+
+        Binding[] bindings = appliedBindings();
+        if (bindings == null) {
+            return rebuilt;
+        }
+        Node lambda = rebuilt.getChildren().get(0);
+        Node argument = rebuilt.getChildren().get(1);
+        if (lambda.getKind() != NodeKind.LAMBDA || lambda.getChildren().size() != 2 || !isValue(argument)) {
+            return rebuilt;
+        }
+        for (Binding binding : bindings) {
+            if (binding.references > 0) {
+                return rebuilt;
+            }
+        }
+        // Several variables take the elements of a tuple, which must have as many
+        if (lambda.getChildren().get(0).getKind() == NodeKind.COMMA
+                && (argument.getKind() != NodeKind.TAU || argument.getChildren().size() != bindings.length)) {
+            return rebuilt;
+        }
+        rewritten();
+        return lambda.getChildren().get(1);
+    }
+}
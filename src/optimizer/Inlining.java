@@ -0,0 +1,117 @@
+package optimizer;
+
+import parser.Node;
+import parser.NodeKind;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Replaces variables bound by gamma (lambda x . E) V with V, when V is a literal or a small lambda.
+// With literal arguments this is beta-reduction of the application; a small lambda bound by 'let' or 'where' is
+// inlined where it is called, which turns those calls into applications of literals or further lambdas.
+// Functions defined with 'rec' are bound to Y* applications, not lambdas, and are never inlined.
+// A lambda is only substituted where each of its free variables still refers to the same binding;
+// the binding itself is left to DeadBindingElimination once nothing refers to it.
+class Inlining extends TreeRewriter {
+    // Largest lambda, in nodes, that is copied to every place that uses it
+    static final int SMALL_LAMBDA = 24;
+
+    @Override
+    public String getName() {
+        return "inlining";
+    }
+
+    @Override
+    protected void bound(Binding binding) {
+        Node argument = binding.argument;
+        if (argument != null && argument.getKind() == NodeKind.LAMBDA && isSmall(argument)) {
+            binding.captures = new HashMap<>();
+            for (String name : freeVariables(argument)) {
+                binding.captures.put(name, resolve(name));
+            }
+        }
+    }
+
+    @Override
+    protected Node exit(Node node, Node rebuilt) {
+        if (node.getKind() != NodeKind.IDENTIFIER) {
+            return rebuilt;
+        }
+        Binding binding = resolve(node.getText());
+        if (binding == null || binding.argument == null) {
+            return rebuilt;
+        }
+        if (isLiteral(binding.argument) || binding.captures != null && capturesUnchanged(binding)) {
+            rewritten();
+            return binding.argument;
+        }
+        return rebuilt;
+    }
+
+    private boolean capturesUnchanged(Binding binding) {
+        for (String name : binding.captures.keySet()) {
+            if (resolve(name) != binding.captures.get(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSmall(Node lambda) {
+        int size = 0;
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(lambda);
+        while (!pending.isEmpty()) {
+            if (++size > SMALL_LAMBDA) {
+                return false;
+            }
+            for (Node child : pending.pop().getChildren()) {
+                pending.push(child);
+            }
+        }
+        return true;
+    }
+
+    // Names used in a small lambda that it does not bind itself
+    private static Set<String> freeVariables(Node lambda) {
+        Set<String> free = new HashSet<>();
+        Deque<Node> pending = new ArrayDeque<>();
+        Deque<Set<String>> bound = new ArrayDeque<>();
+        pending.push(lambda);
+        bound.push(new HashSet<>());
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            Set<String> names = bound.pop();
+            List<Node> children = node.getChildren();
+            if (node.getKind() == NodeKind.IDENTIFIER) {
+                if (!names.contains(node.getText())) {
+                    free.add(node.getText());
+                }
+            } else if (node.getKind() == NodeKind.LAMBDA && !children.isEmpty()) {
+                Set<String> inner = new HashSet<>(names);
+                Node variables = children.get(0);
+                if (variables.getKind() == NodeKind.IDENTIFIER) {
+                    inner.add(variables.getText());
+                } else {
+                    for (Node variable : variables.getChildren()) {
+                        inner.add(variable.getText());
+                    }
+                }
+                for (int i = 1; i < children.size(); i++) {
+                    pending.push(children.get(i));
+                    bound.push(inner);
+                }
+            } else {
+                for (Node child : children) {
+                    pending.push(child);
+                    bound.push(names);
+                }
+            }
+        }
+        return free;
+    }
+}
@@ -0,0 +1,473 @@
+package optimizer;
+
+import parser.Node;
+import parser.NodeKind;
+import scanner.Symbols;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Moves loop-invariant expressions out of recursive functions. A function defined with 'rec' standardizes to
+// gamma Y* (lambda f . lambda x1 . .. lambda xk . B); expressions in B that use neither f nor the parameters are
+// evaluated on every call. They are computed once per outside call instead:
+//
+//   lambda p1 . .. lambda pk . (gamma (lambda h . gamma Y* (lambda f . lambda x1 . .. B[S := h])) S) p1 .. pk
+//
+// so the wrapper, like the original, evaluates nothing until the function is called with all its arguments.
+// An expression is hoisted only if it has no effect (no Print, no calls of unknown functions). Where the body
+// always evaluates it, it may fail as it would have on the first call; inside a conditional branch, which may
+// never be taken, it must be certain not to fail, which is decided from the literals and tuples it uses.
+class InvariantHoisting extends TreeRewriter {
+    // What is known about the value of an expression
+    private static final int UNKNOWN = 0;
+    private static final int INTEGER = 1;
+    private static final int STRING = 2;
+    private static final int TRUTH_VALUE = 3;
+    private static final int TUPLE = 4;
+
+    private int names;
+
+    // Facts about the nodes of the body being analysed, by preorder position
+    private boolean[] invariant = new boolean[64];
+    private boolean[] total = new boolean[64];
+    private boolean[] partial = new boolean[64];
+    private boolean[] conditional = new boolean[64];
+    private int[] types = new int[64];
+    private int[] lengths = new int[64];
+    private int[] sizes = new int[64];
+
+    @Override
+    public String getName() {
+        return "invariant hoisting";
+    }
+
+    @Override
+    protected Node exit(Node node, Node rebuilt) {
+        if (node.getKind() != NodeKind.GAMMA || rebuilt.getChildren().size() != 2
+                || rebuilt.getChildren().get(0).getKind() != NodeKind.Y_STAR) {
+            return rebuilt;
+        }
+        Node function = rebuilt.getChildren().get(1);
+        if (function.getKind() != NodeKind.LAMBDA || function.getChildren().size() != 2
+                || function.getChildren().get(0).getKind() != NodeKind.IDENTIFIER) {
+            return rebuilt;
+        }
+
+        // The recursive name and the parameters of the curried lambdas under it
+        Set<String> varying = new HashSet<>();
+        varying.add(function.getChildren().get(0).getText());
+        List<Node> lambdas = new ArrayList<>();
+        Node body = function.getChildren().get(1);
+        while (body.getKind() == NodeKind.LAMBDA && body.getChildren().size() == 2) {
+            lambdas.add(body);
+            Node variables = body.getChildren().get(0);
+            if (variables.getKind() == NodeKind.IDENTIFIER) {
+                varying.add(variables.getText());
+            } else {
+                for (Node variable : variables.getChildren()) {
+                    varying.add(variable.getText());
+                }
+            }
+            body = body.getChildren().get(1);
+        }
+        if (lambdas.isEmpty()) {
+            return rebuilt;
+        }
+
+        analyse(body, varying);
+        List<Node> hoisted = new ArrayList<>();
+        List<String> hoistedNames = new ArrayList<>();
+        Node newBody = replace(body, hoisted, hoistedNames);
+        if (hoisted.isEmpty()) {
+            return rebuilt;
+        }
+        for (int i = 0; i < hoisted.size(); i++) {
+            rewritten();
+        }
+
+        // gamma Y* (lambda f . lambda x1 . .. lambda xk . B'), with the lambdas rebuilt around the new body
+        Node core = newBody;
+        for (int i = lambdas.size() - 1; i >= 0; i--) {
+            core = node(NodeKind.LAMBDA, lambdas.get(i).getChildren().get(0), core);
+        }
+        core = node(NodeKind.GAMMA, rebuilt.getChildren().get(0), node(NodeKind.LAMBDA, function.getChildren().get(0), core));
+
+        // Bind the hoisted values around it, the first one outermost
+        for (int i = hoisted.size() - 1; i >= 0; i--) {
+            core = node(NodeKind.GAMMA, node(NodeKind.LAMBDA, identifier(hoistedNames.get(i)), core), hoisted.get(i));
+        }
+
+        // Apply it to the parameters of a wrapper with as many lambdas
+        String[] parameters = new String[lambdas.size()];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = freshName();
+            core = node(NodeKind.GAMMA, core, identifier(parameters[i]));
+        }
+        for (int i = parameters.length - 1; i >= 0; i--) {
+            core = node(NodeKind.LAMBDA, identifier(parameters[i]), core);
+        }
+        return core;
+    }
+
+    // Names no source identifier can have, since the lexer ends an identifier at a blank
+    private String freshName() {
+        return "hoisted " + ++names;
+    }
+
+    private static Node identifier(String name) {
+        return Node.identifier(name, Symbols.GLOBAL.intern(name));
+    }
+
+    private static Node node(NodeKind kind, Node first, Node second) {
+        Node node = new Node(kind);
+        node.addChild(first);
+        node.addChild(second);
+        return node;
+    }
+
+    // Work out, bottom-up, which nodes of the body are invariant and what is known about their values.
+    // Lambdas in the body are not entered: their bodies run on other calls.
+    private void analyse(Node body, Set<String> varying) {
+        Node[] path = new Node[64];
+        int[] positions = new int[64];
+        int[] numbers = new int[64];
+        int top = 0;
+        int count = 0;
+        path[top] = body;
+        numbers[top++] = count;
+        enterFact(count++, false);
+
+        while (top > 0) {
+            Node node = path[top - 1];
+            int number = numbers[top - 1];
+            int position = positions[top - 1];
+            if (node.getKind() != NodeKind.LAMBDA && position < node.getChildren().size()) {
+                positions[top - 1] = position + 1;
+                if (top == path.length) {
+                    path = Arrays.copyOf(path, top * 2);
+                    positions = Arrays.copyOf(positions, top * 2);
+                    numbers = Arrays.copyOf(numbers, top * 2);
+                }
+                path[top] = node.getChildren().get(position);
+                positions[top] = 0;
+                numbers[top++] = count;
+                // The branches of a conditional may not be evaluated at all
+                enterFact(count++, conditional[number] || node.getKind() == NodeKind.CONDITIONAL && position > 0);
+            } else {
+                top--;
+                sizes[number] = count - number;
+                exitFact(node, number, varying);
+            }
+        }
+    }
+
+    private void enterFact(int number, boolean inBranch) {
+        if (number == invariant.length) {
+            int length = number * 2;
+            invariant = Arrays.copyOf(invariant, length);
+            total = Arrays.copyOf(total, length);
+            partial = Arrays.copyOf(partial, length);
+            conditional = Arrays.copyOf(conditional, length);
+            types = Arrays.copyOf(types, length);
+            lengths = Arrays.copyOf(lengths, length);
+            sizes = Arrays.copyOf(sizes, length);
+        }
+        invariant[number] = false;
+        total[number] = false;
+        partial[number] = false;
+        conditional[number] = inBranch;
+        types[number] = UNKNOWN;
+        lengths[number] = -1;
+    }
+
+    // Facts about a node from those of its children, which are numbered right after it
+    private void exitFact(Node node, int number, Set<String> varying) {
+        List<Node> children = node.getChildren();
+        int[] childNumbers = new int[children.size()];
+        int next = number + 1;
+        for (int i = 0; i < childNumbers.length; i++) {
+            childNumbers[i] = next;
+            next += node.getKind() == NodeKind.LAMBDA ? 0 : sizes[next];
+        }
+
+        switch (node.getKind()) {
+            case IDENTIFIER: {
+                String name = node.getText();
+                if (varying.contains(name) || "Print".equals(name) || "print".equals(name)) {
+                    return;
+                }
+                Binding binding = resolve(name);
+                if (binding == null && !csemachine.CSEMachine.isBuiltInFunction(name)) {
+                    return;
+                }
+                invariant[number] = true;
+                total[number] = true;
+                if (binding != null && binding.argument != null) {
+                    describe(number, binding.argument);
+                }
+                return;
+            }
+            case INTEGER:
+            case STRING:
+            case TRUE:
+            case FALSE:
+            case NIL:
+            case DUMMY:
+                if (isLiteral(node)) {
+                    invariant[number] = true;
+                    total[number] = true;
+                    describe(number, node);
+                }
+                return;
+            case LAMBDA:
+            case Y_STAR:
+            case CONDITIONAL:
+                return;
+            default:
+                break;
+        }
+
+        // Operators, tuples and applications are invariant when all their operands are
+        for (int i = 0; i < childNumbers.length; i++) {
+            int child = childNumbers[i];
+            if (!invariant[child] || partial[child] && !(node.getKind() == NodeKind.GAMMA && i == 0)) {
+                return;
+            }
+        }
+        boolean operandsTotal = true;
+        for (int child : childNumbers) {
+            operandsTotal &= total[child];
+        }
+
+        switch (node.getKind()) {
+            case TAU:
+                invariant[number] = true;
+                total[number] = operandsTotal;
+                types[number] = TUPLE;
+                lengths[number] = children.size();
+                return;
+            case GAMMA:
+                application(node, number, childNumbers, operandsTotal);
+                return;
+            default:
+                operator(node, number, childNumbers, operandsTotal);
+        }
+    }
+
+    private void operator(Node node, int number, int[] operands, boolean operandsTotal) {
+        invariant[number] = true;
+        boolean integers = true;
+        boolean truthValues = true;
+        for (int operand : operands) {
+            integers &= types[operand] == INTEGER;
+            truthValues &= types[operand] == TRUTH_VALUE;
+        }
+        switch (node.getKind()) {
+            case PLUS:
+            case MINUS:
+            case TIMES:
+            case NEG:
+                total[number] = operandsTotal && integers;
+                types[number] = INTEGER;
+                return;
+            case DIVIDE:
+                // Only by a literal other than zero
+                Node divisor = node.getChildren().get(1);
+                total[number] = operandsTotal && integers && isInteger(divisor) && divisor.getIntValue() != 0;
+                types[number] = INTEGER;
+                return;
+            case GR:
+            case GE:
+            case LS:
+            case LE:
+                total[number] = operandsTotal && integers;
+                types[number] = TRUTH_VALUE;
+                return;
+            case EQ:
+            case NE:
+                total[number] = operandsTotal;
+                types[number] = TRUTH_VALUE;
+                return;
+            case OR:
+            case AMPERSAND:
+            case NOT:
+                total[number] = operandsTotal && truthValues;
+                types[number] = TRUTH_VALUE;
+                return;
+            case AUG:
+                total[number] = operandsTotal;
+                types[number] = TUPLE;
+                lengths[number] = lengths[operands[0]] >= 0 ? lengths[operands[0]] + 1 : -1;
+                return;
+            default:
+                // Anything the standardizer should have removed
+                invariant[number] = false;
+        }
+    }
+
+    // Applications of built-in functions other than Print, and of tuples bound outside the function
+    private void application(Node node, int number, int[] operands, boolean operandsTotal) {
+        Node head = node.getChildren().get(0);
+        int argument = operands[1];
+        if (head.getKind() == NodeKind.GAMMA && partial[operands[0]]) {
+            // Conc A B, whose result is a string if B is one
+            invariant[number] = true;
+            total[number] = operandsTotal && types[argument] == STRING;
+            types[number] = STRING;
+            return;
+        }
+        if (head.getKind() != NodeKind.IDENTIFIER) {
+            return;
+        }
+        String name = head.getText();
+        int function = operands[0];
+        if (types[function] == TUPLE) {
+            // Selecting a literal position of a tuple of known length cannot fail
+            invariant[number] = true;
+            Node index = node.getChildren().get(1);
+            total[number] = operandsTotal && isInteger(index) && index.getIntValue() >= 1
+                    && index.getIntValue() <= lengths[function];
+            Binding binding = resolve(name);
+            if (total[number] && binding != null && binding.argument.getKind() == NodeKind.TAU) {
+                describe(number, binding.argument.getChildren().get(index.getIntValue() - 1));
+            }
+            return;
+        }
+        if (resolve(name) != null || !csemachine.CSEMachine.isBuiltInFunction(name)) {
+            return;
+        }
+        invariant[number] = true;
+        switch (name) {
+            case "Conc":
+                // Only valid as the function of another application
+                partial[number] = true;
+                return;
+            case "Order":
+                total[number] = operandsTotal && (types[argument] == TUPLE || types[argument] == STRING);
+                types[number] = INTEGER;
+                return;
+            case "Isinteger":
+            case "Istruthvalue":
+            case "Isstring":
+            case "Istuple":
+            case "Isfunction":
+                total[number] = operandsTotal;
+                types[number] = TRUTH_VALUE;
+                return;
+            case "ItoS":
+                total[number] = operandsTotal && types[argument] == INTEGER;
+                types[number] = STRING;
+                return;
+            case "Stem":
+            case "Stern":
+                types[number] = STRING;
+                return;
+            default:
+                invariant[number] = false;
+        }
+    }
+
+    // Type of a literal or tuple the value comes from
+    private void describe(int number, Node value) {
+        switch (value.getKind()) {
+            case INTEGER:
+                types[number] = isInteger(value) ? INTEGER : UNKNOWN;
+                break;
+            case STRING:
+                types[number] = STRING;
+                break;
+            case TRUE:
+            case FALSE:
+                types[number] = TRUTH_VALUE;
+                break;
+            case NIL:
+                types[number] = TUPLE;
+                lengths[number] = 0;
+                break;
+            case TAU:
+                types[number] = TUPLE;
+                lengths[number] = value.getChildren().size();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private boolean hoistable(Node node, int number) {
+        return invariant[number] && !partial[number] && !node.getKind().isLeaf()
+                && (total[number] || !conditional[number]);
+    }
+
+    // Rebuild the body with the outermost hoistable expressions replaced by fresh names, in the order analyse
+    // numbered the nodes
+    private Node replace(Node body, List<Node> hoisted, List<String> hoistedNames) {
+        if (hoistable(body, 0)) {
+            hoisted.add(body);
+            hoistedNames.add(freshName());
+            return identifier(hoistedNames.get(0));
+        }
+        Node[] path = new Node[64];
+        int[] positions = new int[64];
+        int[] numbers = new int[64];
+        int[] nexts = new int[64];
+        Object[] rebuilt = new Object[64];
+        int top = 0;
+        path[top] = body;
+        numbers[top++] = 0;
+
+        while (true) {
+            Node node = path[top - 1];
+            int position = positions[top - 1];
+            List<Node> children = node.getChildren();
+            if (node.getKind() != NodeKind.LAMBDA && position < children.size()) {
+                positions[top - 1] = position + 1;
+                // The children follow each other, each after the nodes of the one before
+                int number = position == 0 ? numbers[top - 1] + 1 : nexts[top - 1];
+                nexts[top - 1] = number + sizes[number];
+                Node child = children.get(position);
+                if (hoistable(child, number)) {
+                    hoisted.add(child);
+                    hoistedNames.add(freshName());
+                    setChild(rebuilt, top - 1, node, position, identifier(hoistedNames.get(hoistedNames.size() - 1)));
+                    continue;
+                }
+                if (top == path.length) {
+                    path = Arrays.copyOf(path, top * 2);
+                    positions = Arrays.copyOf(positions, top * 2);
+                    numbers = Arrays.copyOf(numbers, top * 2);
+                    nexts = Arrays.copyOf(nexts, top * 2);
+                    rebuilt = Arrays.copyOf(rebuilt, top * 2);
+                }
+                path[top] = child;
+                positions[top] = 0;
+                numbers[top] = number;
+                rebuilt[top++] = null;
+            } else {
+                top--;
+                @SuppressWarnings("unchecked")
+                List<Node> newChildren = (List<Node>) rebuilt[top];
+                Node result = newChildren == null ? node : node.withChildren(newChildren);
+                rebuilt[top] = null;
+                if (top == 0) {
+                    return result;
+                }
+                if (result != node) {
+                    setChild(rebuilt, top - 1, path[top - 1], positions[top - 1] - 1, result);
+                }
+            }
+        }
+    }
+
+    private static void setChild(Object[] rebuilt, int frame, Node parent, int index, Node child) {
+        @SuppressWarnings("unchecked")
+        List<Node> children = (List<Node>) rebuilt[frame];
+        if (children == null) {
+            children = new ArrayList<>(parent.getChildren());
+            rebuilt[frame] = children;
+        }
+        children.set(index, child);
+    }
+}
@@ -0,0 +1,14 @@
+package optimizer;
+
+import parser.Node;
+
+// One rewrite of standardized trees run by the Optimizer. A pass returns a new tree and leaves its input intact.
+public interface OptimizationPass {
+    // Name shown in the -opt-stats report
+    String getName();
+
+    Node run(Node root);
+
+    // Rewrites done by all runs so far
+    int getRewrites();
+}
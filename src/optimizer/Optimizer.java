@@ -0,0 +1,82 @@
+package optimizer;
+
+import parser.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Runs optimization passes over a standardized tree before its control structures are generated.
+// -O0 runs nothing, -O1 constant folding and dead-binding elimination, -O2 adds inlining and the hoisting of
+// loop invariants out of recursive functions.
+// The passes run in rounds, since one pass uncovers work for the others (an inlined literal folds, a folded
+// call leaves a binding unused), until a round changes nothing. The tree given is never modified.
+public class Optimizer {
+    // Optimized programs create fewer closures and environments, so their printed numbers differ; that is opt-in
+    public static final int DEFAULT_LEVEL = 0;
+    public static final int MAX_LEVEL = 2;
+    private static final int MAX_ROUNDS = 8;
+
+    private final int level;
+    private final List<OptimizationPass> passes = new ArrayList<>();
+    private int rounds;
+
+    public Optimizer(int level) {
+        this.level = level;
+        if (level >= 2) {
+            passes.add(new Inlining());
+        }
+        if (level >= 1) {
+            passes.add(new ConstantFolding());
+            passes.add(new DeadBindingElimination());
+        }
+        if (level >= 2) {
+            passes.add(new InvariantHoisting());
+        }
+    }
+
+    // Optimization level of a -O0, -O1 or -O2 switch, or -1 for any other argument
+    public static int level(String argument) {
+        if (argument.length() == 3 && argument.startsWith("-O")) {
+            int level = argument.charAt(2) - '0';
+            return level >= 0 && level <= MAX_LEVEL ? level : -1;
+        }
+        return -1;
+    }
+
+    public Node optimize(Node root) {
+        Node tree = root;
+        for (int round = 0; round < MAX_ROUNDS && !passes.isEmpty(); round++) {
+            rounds++;
+            int before = totalRewrites();
+            for (OptimizationPass pass : passes) {
+                tree = pass.run(tree);
+            }
+            if (totalRewrites() == before) {
+                break;
+            }
+        }
+        return tree;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    // Rounds run so far, including the last one, which found nothing more to do
+    public int getRounds() {
+        return rounds;
+    }
+
+    public List<OptimizationPass> getPasses() {
+        return Collections.unmodifiableList(passes);
+    }
+
+    private int totalRewrites() {
+        int rewrites = 0;
+        for (OptimizationPass pass : passes) {
+            rewrites += pass.getRewrites();
+        }
+        return rewrites;
+    }
+}
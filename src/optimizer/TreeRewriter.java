@@ -0,0 +1,238 @@
+package optimizer;
+
+import csemachine.CSEMachine;
+import parser.Node;
+import parser.NodeKind;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Base of the passes: rewrites a standardized tree bottom-up without recursion and without modifying it.
+// A node whose children did not change is kept; otherwise it is copied with the new children, so trees shared
+// with the compilation cache or by TreeSharing stay intact.
+// The walk keeps the scope of lambda variables, so passes can tell which binding an identifier refers to.
+abstract class TreeRewriter implements OptimizationPass {
+    private int rewrites;
+
+    // Variables in scope by name, innermost binding first
+    private final Map<String, Deque<Binding>> scope = new HashMap<>();
+
+    // Argument of the gamma being entered, for the binding of its lambda
+    private Node appliedLambda;
+    private Node appliedArgument;
+
+    // Bindings of the lambda in the first child of the gamma being exited, or null
+    private Binding[] appliedBindings;
+
+    // Variable bound by a lambda; 'argument' is the value it is applied to in gamma (lambda x . E) V, or null
+    static class Binding {
+        final String name;
+        final Node argument;
+        int references;
+        // Bindings the free variables of the argument refer to where it is written
+        Map<String, Binding> captures;
+
+        Binding(String name, Node argument) {
+            this.name = name;
+            this.argument = argument;
+        }
+    }
+
+    @Override
+    public int getRewrites() {
+        return rewrites;
+    }
+
+    @Override
+    public Node run(Node root) {
+        Node[] nodes = new Node[64];
+        int[] positions = new int[64];
+        Object[] children = new Object[64];
+        Binding[][] bindings = new Binding[64][];
+        int top = 0;
+        nodes[top] = root;
+        enterNode(root, bindings, top);
+        top++;
+
+        while (true) {
+            Node node = nodes[top - 1];
+            List<Node> original = node.getChildren();
+            int position = positions[top - 1];
+            // The variables of a lambda are not references
+            if (position == 0 && node.getKind() == NodeKind.LAMBDA && !original.isEmpty()) {
+                position = 1;
+                positions[top - 1] = 1;
+            }
+            if (position < original.size()) {
+                positions[top - 1] = position + 1;
+                if (top == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, top * 2);
+                    positions = Arrays.copyOf(positions, top * 2);
+                    children = Arrays.copyOf(children, top * 2);
+                    bindings = Arrays.copyOf(bindings, top * 2);
+                }
+                Node child = original.get(position);
+                nodes[top] = child;
+                positions[top] = 0;
+                children[top] = null;
+                enterNode(child, bindings, top);
+                top++;
+                continue;
+            }
+
+            // All children are done: rebuild the node if one of them changed, then let the pass rewrite it
+            top--;
+            @SuppressWarnings("unchecked")
+            List<Node> rewritten = (List<Node>) children[top];
+            Node rebuilt = rewritten == null ? node : node.withChildren(rewritten);
+            Binding[] own = bindings[top];
+            if (node.getKind() == NodeKind.LAMBDA && own != null) {
+                for (Binding binding : own) {
+                    scope.get(binding.name).pop();
+                }
+            }
+            appliedBindings = node.getKind() == NodeKind.GAMMA ? own : null;
+            Node result = exit(node, rebuilt);
+            nodes[top] = null;
+            children[top] = null;
+            bindings[top] = null;
+            if (top == 0) {
+                return result;
+            }
+
+            int index = positions[top - 1] - 1;
+            Node parent = nodes[top - 1];
+            if (index == 0 && parent.getKind() == NodeKind.GAMMA && node.getKind() == NodeKind.LAMBDA) {
+                bindings[top - 1] = own;
+            }
+            if (result != parent.getChildren().get(index)) {
+                @SuppressWarnings("unchecked")
+                List<Node> siblings = (List<Node>) children[top - 1];
+                if (siblings == null) {
+                    siblings = new ArrayList<>(parent.getChildren());
+                    children[top - 1] = siblings;
+                }
+                siblings.set(index, result);
+            }
+        }
+    }
+
+    private void enterNode(Node node, Binding[][] bindings, int top) {
+        bindings[top] = null;
+        Node argument = node == appliedLambda ? appliedArgument : null;
+        appliedLambda = null;
+        appliedArgument = null;
+        if (node.getKind() == NodeKind.GAMMA && node.getChildren().size() == 2
+                && node.getChildren().get(0).getKind() == NodeKind.LAMBDA) {
+            // The lambda is entered next
+            appliedLambda = node.getChildren().get(0);
+            appliedArgument = node.getChildren().get(1);
+        } else if (node.getKind() == NodeKind.LAMBDA && !node.getChildren().isEmpty()) {
+            bindings[top] = bind(node.getChildren().get(0), argument);
+        }
+        enter(node);
+    }
+
+    // Bring the variables of a lambda into scope; only a single variable gets the argument
+    private Binding[] bind(Node variables, Node argument) {
+        Binding[] bindings;
+        if (variables.getKind() == NodeKind.IDENTIFIER) {
+            bindings = new Binding[] { new Binding(variables.getText(), argument) };
+        } else if (variables.getKind() == NodeKind.COMMA) {
+            List<Node> names = variables.getChildren();
+            bindings = new Binding[names.size()];
+            for (int i = 0; i < bindings.length; i++) {
+                bindings[i] = new Binding(names.get(i).getText(), null);
+            }
+        } else {
+            return new Binding[0];
+        }
+        for (Binding binding : bindings) {
+            // Still in the scope the argument is written in
+            bound(binding);
+        }
+        for (Binding binding : bindings) {
+            scope.computeIfAbsent(binding.name, name -> new ArrayDeque<>()).push(binding);
+        }
+        return bindings;
+    }
+
+    // Binding an identifier refers to, or null for built-in functions and names bound nowhere in the tree
+    protected Binding resolve(String name) {
+        if (name == null || CSEMachine.isBuiltInFunction(name)) {
+            return null;
+        }
+        Deque<Binding> bindings = scope.get(name);
+        return bindings == null ? null : bindings.peek();
+    }
+
+    // Bindings of the lambda applied by the gamma being exited, or null if its first child is not a lambda
+    protected Binding[] appliedBindings() {
+        return appliedBindings;
+    }
+
+    protected void rewritten() {
+        rewrites++;
+    }
+
+    // Called before the children of a node are walked
+    protected void enter(Node node) {
+    }
+
+    // Called for each variable of a lambda before it comes into scope
+    protected void bound(Binding binding) {
+    }
+
+    // Node that replaces 'node'; 'rebuilt' is the node with its rewritten children
+    protected abstract Node exit(Node node, Node rebuilt);
+
+    // Values whose evaluation cannot fail and has no effect: literals, nil, dummy, lambdas and tuples of them
+    static boolean isValue(Node node) {
+        if (node.getKind() == NodeKind.TAU) {
+            for (Node child : node.getChildren()) {
+                if (child.getKind() == NodeKind.TAU || !isValue(child)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return isLiteral(node) || node.getKind() == NodeKind.LAMBDA;
+    }
+
+    static boolean isLiteral(Node node) {
+        switch (node.getKind()) {
+            case INTEGER:
+                return isInteger(node);
+            case STRING:
+            case TRUE:
+            case FALSE:
+            case NIL:
+            case DUMMY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // An integer literal within the int range; larger ones are left to the machine
+    static boolean isInteger(Node node) {
+        if (node.getKind() != NodeKind.INTEGER) {
+            return false;
+        }
+        try {
+            node.getIntValue();
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    static boolean isBoolean(Node node) {
+        return node.getKind() == NodeKind.TRUE || node.getKind() == NodeKind.FALSE;
+    }
+}
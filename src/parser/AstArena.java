@@ -0,0 +1,292 @@
+package parser;
+
+import scanner.Symbols;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Tree stored in parallel int arrays instead of one Node object per node.
+// A node is an index; its children are reached through firstChild and then nextSibling, with -1 ending the chain.
+// The payload of an identifier is its symbol id, of an integer its value, and of a string an index into the literal table.
+// Nodes are only ever appended, so a node dropped while standardizing simply stays unused.
+public class AstArena {
+    private static final int NONE = -1;
+    private static final NodeKind[] KINDS = NodeKind.values();
+
+    private int[] kinds;
+    private int[] payloads;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int size;
+    private int root = NONE;
+
+    // Source text of string literals and their contents without quotes
+    private String[] literalTexts;
+    private String[] literalValues;
+    private int literals;
+
+    // Integers not written the way Integer.toString prints them (leading zeros, out of range), by node
+    private final Map<Integer, String> integerTexts = new HashMap<>();
+
+    public AstArena() {
+        this(1024);
+    }
+
+    public AstArena(int capacity) {
+        capacity = Math.max(capacity, 16);
+        this.kinds = new int[capacity];
+        this.payloads = new int[capacity];
+        this.firstChildren = new int[capacity];
+        this.nextSiblings = new int[capacity];
+        this.literalTexts = new String[64];
+        this.literalValues = new String[64];
+    }
+
+    // Append a node without children
+    public int add(NodeKind kind) {
+        return add(kind, NONE);
+    }
+
+    // Identifier leaf; the name itself is kept by Symbols.GLOBAL
+    public int identifier(int symbol) {
+        return add(NodeKind.IDENTIFIER, symbol);
+    }
+
+    public int integer(String digits) {
+        int value = 0;
+        try {
+            value = Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            // Beyond the int range: kept as its digits
+        }
+        int node = add(NodeKind.INTEGER, value);
+        if (!Integer.toString(value).equals(digits)) {
+            integerTexts.put(node, digits);
+        }
+        return node;
+    }
+
+    public int string(String literal) {
+        return add(NodeKind.STRING, addLiteral(literal, literal.strip().replace("'", "")));
+    }
+
+    // Append a copy of the subtree rooted at 'node'
+    public int copy(int node) {
+        int copy = add(kind(node), payloads[node]);
+        if (integerTexts.containsKey(node)) {
+            integerTexts.put(copy, integerTexts.get(node));
+        }
+        int last = NONE;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            int childCopy = copy(child);
+            if (last == NONE) {
+                firstChildren[copy] = childCopy;
+            } else {
+                nextSiblings[last] = childCopy;
+            }
+            last = childCopy;
+        }
+        return copy;
+    }
+
+    // Make 'children' the children of 'node', in order, replacing any it had
+    public void setChildren(int node, int... children) {
+        setChildren(node, children, 0, children.length);
+    }
+
+    public void setChildren(int node, int[] children, int from, int count) {
+        firstChildren[node] = count > 0 ? children[from] : NONE;
+        for (int i = from; i < from + count; i++) {
+            nextSiblings[children[i]] = i + 1 < from + count ? children[i + 1] : NONE;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int root() {
+        return root;
+    }
+
+    public void setRoot(int root) {
+        this.root = root;
+    }
+
+    public NodeKind kind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    public void setKind(int node, NodeKind kind) {
+        kinds[node] = kind.ordinal();
+    }
+
+    public int firstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public int childCount(int node) {
+        int count = 0;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            count++;
+        }
+        return count;
+    }
+
+    // The i-th child of a node; walks the sibling chain
+    public int child(int node, int i) {
+        int child = firstChildren[node];
+        for (int j = 0; j < i; j++) {
+            child = nextSiblings[child];
+        }
+        return child;
+    }
+
+    public int symbol(int node) {
+        return kind(node) == NodeKind.IDENTIFIER ? payloads[node] : NONE;
+    }
+
+    public String text(int node) {
+        switch (kind(node)) {
+            case IDENTIFIER:
+                return Symbols.GLOBAL.name(payloads[node]);
+            case INTEGER:
+                String digits = integerTexts.get(node);
+                return digits != null ? digits : Integer.toString(payloads[node]);
+            case STRING:
+                return literalTexts[payloads[node]];
+            default:
+                return null;
+        }
+    }
+
+    public int intValue(int node) {
+        String digits = integerTexts.get(node);
+        if (digits != null) {
+            // A literal beyond the int range has no int value; the machine reads it from its digits
+            return Integer.parseInt(digits);
+        }
+        return payloads[node];
+    }
+
+    public String stringValue(int node) {
+        return literalValues[payloads[node]];
+    }
+
+    // Remove all nodes, keeping the capacity for the next tree
+    public void clear() {
+        size = 0;
+        root = NONE;
+        literals = 0;
+        integerTexts.clear();
+    }
+
+    // Release the unused capacity once the tree is complete
+    public void trim() {
+        kinds = Arrays.copyOf(kinds, size);
+        payloads = Arrays.copyOf(payloads, size);
+        firstChildren = Arrays.copyOf(firstChildren, size);
+        nextSiblings = Arrays.copyOf(nextSiblings, size);
+        literalTexts = Arrays.copyOf(literalTexts, literals);
+        literalValues = Arrays.copyOf(literalValues, literals);
+    }
+
+    // Printed label of a node, as Node.getValue() gives it
+    public String value(int node) {
+        NodeKind kind = kind(node);
+        return kind.hasPayload() ? "<" + kind.getLabel() + ":" + text(node) + ">" : kind.getLabel();
+    }
+
+    // Read-only view of a node
+    public TreeNode node(int node) {
+        return new View(node);
+    }
+
+    // Print the tree in the same format as Node.preorderTraversal
+    public void preorderTraversal() {
+        TreePrinter printer = new TreePrinter(System.out);
+        printer.print(this);
+        printer.flush();
+    }
+
+    private int add(NodeKind kind, int payload) {
+        if (size == kinds.length) {
+            int capacity = Math.max(16, size * 2);
+            kinds = Arrays.copyOf(kinds, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        }
+        int node = size++;
+        kinds[node] = kind.ordinal();
+        payloads[node] = payload;
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        return node;
+    }
+
+    private int addLiteral(String text, String value) {
+        if (literals == literalTexts.length) {
+            literalTexts = Arrays.copyOf(literalTexts, Math.max(16, literals * 2));
+            literalValues = Arrays.copyOf(literalValues, Math.max(16, literals * 2));
+        }
+        literalTexts[literals] = text;
+        literalValues[literals] = value;
+        return literals++;
+    }
+
+    // View of one arena node; children are materialized as views on request
+    private class View implements TreeNode {
+        private final int node;
+
+        View(int node) {
+            this.node = node;
+        }
+
+        public NodeKind getKind() {
+            return kind(node);
+        }
+
+        public String getValue() {
+            return value(node);
+        }
+
+        public String getText() {
+            return text(node);
+        }
+
+        public int getSymbol() {
+            return symbol(node);
+        }
+
+        public int getIntValue() {
+            return intValue(node);
+        }
+
+        public String getStringValue() {
+            return stringValue(node);
+        }
+
+        public List<TreeNode> getChildren() {
+            int count = childCount(node);
+            TreeNode[] children = new TreeNode[count];
+            int child = firstChildren[node];
+            for (int i = 0; i < count; i++) {
+                children[i] = new View(child);
+                child = nextSiblings[child];
+            }
+            return Arrays.asList(children);
+        }
+
+        @Override
+        public String toString() {
+            return "Node(value=" + getValue() + ")";
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package parser;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+// Prints parse events in the format of Node.preorderTraversal; only the current depth is kept
+public class AstPrinter implements ParseListener {
+    private final PrintWriter out;
+    private int depth;
+
+    public AstPrinter(OutputStream out) {
+        this.out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out), 1 << 16));
+    }
+
+    public void enterNode(NodeKind kind) {
+        print(kind.getLabel());
+        depth++;
+    }
+
+    public void leaf(NodeKind kind, String text) {
+        print(kind.hasPayload() ? "<" + kind.getLabel() + ":" + text + ">" : kind.getLabel());
+    }
+
+    public void exitNode(NodeKind kind) {
+        depth--;
+    }
+
+    // Write out what has been printed so far
+    public void flush() {
+        out.flush();
+    }
+
+    private void print(String label) {
+        for (int i = 0; i < depth; i++) {
+            out.print('.');
+        }
+        out.println(label);
+    }
+}
@@ -0,0 +1,292 @@
+package parser;
+
+import scanner.LexicalAnalyzer;
+import scanner.SourceText;
+import scanner.Symbols;
+import scanner.TokenEdit;
+import scanner.TokenGapBuffer;
+import scanner.TokenGapCursor;
+import scanner.TokenMark;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+import java.util.function.Function;
+
+// Keeps the tokens and AST of a source that is edited repeatedly, e.g. from an editor.
+// The text and its tokens are gap buffers, so an edit only scans the damaged tokens again and only moves what lies
+// between it and the previous edit. Every definition (Dr) and expression (E) of the tree is remembered by marks on
+// its first token and on the token that ended it, which follow those tokens through later edits. After an edit the
+// innermost Dr or E that contains all changed tokens is parsed again, taking over the ones inside it whose tokens,
+// including the token that ended them, are unchanged, and its node is replaced in place. If it no longer ends at
+// the same token, the one around it is parsed instead. An edit costs about as much as the Dr or E around it,
+// however long the rest of the file is.
+//
+// The tree is updated in place by every edit, so standardize a copy (Node.copy) rather than the tree returned here.
+// Identifiers are interned into a symbol table of the parser's own, not Symbols.GLOBAL.
+public class IncrementalParser {
+    static final byte DEFINITION = 1;
+    static final byte EXPRESSION = 2;
+
+    // A Dr or E of the tree, from its first token up to the token after it
+    private static final class Subtree {
+        final byte production;
+        final TokenMark start;
+        TokenMark end;
+        Node node;
+        Subtree parent;
+
+        Subtree(byte production, TokenMark start, Subtree parent) {
+            this.production = production;
+            this.start = start;
+            this.parent = parent;
+        }
+    }
+
+    private final SourceText text;
+    private TokenGapBuffer tokens;
+
+    // Last tree that parsed; kept while the text has errors, so the next edit can start from it
+    private Node tree;
+
+    // Tokens [damagedFrom, damagedTo) changed since 'tree' was parsed; the end of input counts as one more token.
+    // damagedFrom is Integer.MAX_VALUE when nothing changed.
+    private int damagedFrom = Integer.MAX_VALUE;
+    private int damagedTo;
+
+    // State of the parse in progress. Subtrees it records or takes over are only kept once it succeeds.
+    private TokenGapCursor cursor;
+    private Subtree outer;
+    private final ArrayDeque<Subtree> open = new ArrayDeque<>();
+    private final List<Subtree> recorded = new ArrayList<>();
+    private final List<Subtree> reused = new ArrayList<>();
+    private final List<Subtree> reusedParents = new ArrayList<>();
+    private int reusedSubtrees;
+
+    public IncrementalParser(String text) {
+        this.text = new SourceText(text);
+        rescan();
+    }
+
+    // Tree of the current text, or null if it does not parse
+    public Node getTree() {
+        return damagedFrom == Integer.MAX_VALUE ? tree : null;
+    }
+
+    public TokenGapBuffer getTokens() {
+        return tokens;
+    }
+
+    public String getText() {
+        return text.toString();
+    }
+
+    // Number of subtrees taken over from the previous tree by the last parse
+    public int getReusedSubtrees() {
+        return reusedSubtrees;
+    }
+
+    // Replace removedLength characters at offset with insertedText and return the new AST
+    public Node edit(int offset, int removedLength, String insertedText) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > text.length()) {
+            throw new IllegalArgumentException("Edit out of range: offset " + offset + ", length " + removedLength);
+        }
+        text.replace(offset, removedLength, insertedText);
+
+        if (tokens == null) {
+            // The previous text did not tokenize, so there is nothing to reuse
+            return rescan();
+        }
+
+        TokenEdit tokenEdit;
+        try {
+            tokenEdit = LexicalAnalyzer.relex(tokens, text, offset, removedLength, insertedText.length());
+        } catch (RuntimeException e) {
+            tokens = null;
+            tree = null;
+            throw e;
+        }
+
+        // Widen the damaged range to cover the replaced tokens
+        if (damagedFrom == Integer.MAX_VALUE) {
+            damagedFrom = tokenEdit.getFirstChanged();
+            damagedTo = tokenEdit.getNewResume();
+        } else {
+            int from = tokenEdit.map(damagedFrom);
+            damagedFrom = from < 0 ? tokenEdit.getFirstChanged() : Math.min(from, tokenEdit.getFirstChanged());
+            damagedTo = Math.max(tokenEdit.map(damagedTo), tokenEdit.getNewResume());
+        }
+
+        // Parse the innermost subtree around the damage again, or the ones around it
+        reusedSubtrees = 0;
+        for (Subtree subtree = tree != null ? enclosing() : null; subtree != null; subtree = subtree.parent) {
+            if (reparse(subtree)) {
+                return tree;
+            }
+        }
+        return parseAll();
+    }
+
+    // Tokenize and parse the whole text from scratch, with a new symbol table
+    private Node rescan() {
+        tokens = new TokenGapBuffer(text, new Symbols());
+        tree = null;
+        damagedFrom = Integer.MAX_VALUE;
+        try {
+            // Into an empty buffer, relex tokenizes the whole text
+            LexicalAnalyzer.relex(tokens, text, 0, 0, text.length());
+        } catch (RuntimeException e) {
+            tokens = null;
+            throw e;
+        }
+        reusedSubtrees = 0;
+        return parseAll();
+    }
+
+    // Innermost subtree of the tree that contains every damaged token, or null
+    private Subtree enclosing() {
+        for (int i = Math.min(damagedFrom, tokens.size()) - 1; i >= 0; i--) {
+            TokenMark mark = tokens.findMark(i);
+            Subtree subtree = mark != null ? (Subtree) mark.getAttachment() : null;
+            if (subtree != null) {
+                while (subtree != null && tokens.index(subtree.end) < damagedTo) {
+                    subtree = subtree.parent;
+                }
+                return subtree;
+            }
+        }
+        return null;
+    }
+
+    // Parse the tokens of 'subtree' again as the same production, and replace its node in place if it still ends
+    // at the same token. A syntax error is the one parsing the whole text would report.
+    private boolean reparse(Subtree subtree) {
+        int start = tokens.index(subtree.start);
+        int end = tokens.index(subtree.end);
+        cursor = tokens.cursor();
+        cursor.seek(start);
+        outer = subtree.parent;
+
+        Node node = parse(parser -> parser.parseProduction(subtree.production));
+        if (cursor.position() != end || subtree.parent != null && takesOver(subtree.node, node)) {
+            discard();
+            return false;
+        }
+
+        if (subtree.parent == null) {
+            tree = node;
+        } else {
+            // An E or Dr in parentheses shares the node of the one inside, so the new subtrees that share the new
+            // node must now share the one that stays in the tree
+            subtree.node.replaceWith(node);
+            for (Subtree recordedSubtree : recorded) {
+                if (recordedSubtree.node == node) {
+                    recordedSubtree.node = subtree.node;
+                }
+            }
+        }
+        commit(start, end);
+        return true;
+    }
+
+    // Check whether the parse took over the old node itself or returned a node it took over, which cannot be
+    // replaced in place without leaving a subtree whose node is no longer in the tree
+    private boolean takesOver(Node old, Node node) {
+        for (Subtree subtree : reused) {
+            if (subtree.node == old || subtree.node == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Node parseAll() {
+        cursor = tokens.cursor();
+        outer = null;
+        Node node = parse(Parser::parseTokens);
+        commit(0, tokens.size());
+        tree = node;
+        return tree;
+    }
+
+    private Node parse(Function<Parser, Node> production) {
+        try {
+            return production.apply(new Parser(cursor, this));
+        } catch (RuntimeException e) {
+            discard();
+            throw e;
+        }
+    }
+
+    // Keep what the parse recorded and took over, and forget the subtrees of tokens [from, to) it parsed again
+    private void commit(int from, int to) {
+        int i = from;
+        for (Subtree subtree : reused) {
+            for (int start = tokens.index(subtree.start); i < start; i++) {
+                forget(i);
+            }
+            i = tokens.index(subtree.end);
+        }
+        for (; i < to; i++) {
+            forget(i);
+        }
+
+        for (int k = 0; k < reused.size(); k++) {
+            reused.get(k).parent = reusedParents.get(k);
+        }
+        for (Subtree subtree : recorded) {
+            subtree.start.setAttachment(subtree);
+        }
+        damagedFrom = Integer.MAX_VALUE;
+        discard();
+    }
+
+    private void forget(int index) {
+        TokenMark mark = tokens.findMark(index);
+        if (mark != null) {
+            mark.setAttachment(null);
+        }
+    }
+
+    private void discard() {
+        open.clear();
+        recorded.clear();
+        reused.clear();
+        reusedParents.clear();
+        cursor = null;
+    }
+
+    // Called by the parser at the start of a production: push the previous subtree and skip its tokens if possible
+    boolean reuse(byte production, Stack<Node> stack) {
+        int start = cursor.position();
+        TokenMark mark = tokens.findMark(start);
+        Subtree subtree = mark != null ? (Subtree) mark.getAttachment() : null;
+        Subtree parent = open.isEmpty() ? outer : open.peek();
+
+        if (subtree != null && subtree.production == production && intact(subtree)) {
+            stack.push(subtree.node);
+            cursor.seek(tokens.index(subtree.end));
+            reused.add(subtree);
+            reusedParents.add(parent);
+            reusedSubtrees++;
+            return true;
+        }
+        open.push(new Subtree(production, tokens.mark(start), parent));
+        return false;
+    }
+
+    // Called by the parser after a production it could not reuse was parsed from tokens
+    void record(Node node) {
+        Subtree subtree = open.pop();
+        subtree.node = node;
+        subtree.end = tokens.mark(cursor.position());
+        recorded.add(subtree);
+    }
+
+    // Check that none of the tokens of a subtree, nor the token after it, changed since it was parsed
+    private boolean intact(Subtree subtree) {
+        int end = tokens.index(subtree.end);
+        return end >= 0 && (end < damagedFrom || tokens.index(subtree.start) >= damagedTo);
+    }
+}
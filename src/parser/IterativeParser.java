@@ -0,0 +1,481 @@
+package parser;
+
+import scanner.TokenKind;
+
+import java.util.Arrays;
+
+// Same grammar as the recursive descent in Parser, driven by an explicit stack of continuations.
+// Every call of a parse method becomes a pushed state, and the code after the call a second state
+// pushed beneath it, so nesting depth is limited by the heap instead of the thread stack.
+// Tokens, tree building and error messages all go through the Parser, so the result is identical.
+class IterativeParser {
+    // Start of a production
+    private static final int E = 0;
+    private static final int EW = 1;
+    private static final int T = 2;
+    private static final int TA = 3;
+    private static final int TC = 4;
+    private static final int B = 5;
+    private static final int BT = 6;
+    private static final int BS = 7;
+    private static final int BP = 8;
+    private static final int A = 9;
+    private static final int AT = 10;
+    private static final int AF = 11;
+    private static final int AP = 12;
+    private static final int R = 13;
+    private static final int RN = 14;
+    private static final int D = 15;
+    private static final int DA = 16;
+    private static final int DR = 17;
+    private static final int DB = 18;
+
+    // Continuations after a nested production returns; the comment gives the rule being completed
+    private static final int LET_IN = 19;          // E -> 'let' D . 'in' E
+    private static final int LET_BUILD = 20;       // E -> 'let' D 'in' E .
+    private static final int FN_BUILD = 21;        // E -> 'fn' Vb+ '.' E .
+    private static final int WHERE = 22;           // Ew -> T . 'where' Dr
+    private static final int WHERE_BUILD = 23;     // Ew -> T 'where' Dr .
+    private static final int TAU_NEXT = 24;        // T -> Ta (',' Ta)* .
+    private static final int AUG_NEXT = 25;        // Ta -> Ta . 'aug' Tc
+    private static final int AUG_BUILD = 26;       // Ta -> Ta 'aug' Tc .
+    private static final int ARROW = 27;           // Tc -> B . '->' Tc '|' Tc
+    private static final int BAR = 28;             // Tc -> B '->' Tc . '|' Tc
+    private static final int ARROW_BUILD = 29;     // Tc -> B '->' Tc '|' Tc .
+    private static final int OR_NEXT = 30;         // B -> B . 'or' Bt
+    private static final int OR_BUILD = 31;        // B -> B 'or' Bt .
+    private static final int AMPERSAND_NEXT = 32;  // Bt -> Bt . '&' Bs
+    private static final int AMPERSAND_BUILD = 33; // Bt -> Bt '&' Bs .
+    private static final int NOT_BUILD = 34;       // Bs -> 'not' Bp .
+    private static final int COMPARISON = 35;      // Bp -> A . op A
+    private static final int BINARY_BUILD = 36;    // Bp -> A op A . ; the node kind is the frame's value
+    private static final int NEG_BUILD = 37;       // A -> '-' At .
+    private static final int ADD_NEXT = 38;        // A -> A . ('+' | '-') At
+    private static final int ADD_BUILD = 39;       // A -> A ('+' | '-') At .
+    private static final int MULTIPLY_NEXT = 40;   // At -> At . ('*' | '/') Af
+    private static final int MULTIPLY_BUILD = 41;  // At -> At ('*' | '/') Af .
+    private static final int POWER = 42;           // Af -> Ap . '**' Af
+    private static final int POWER_BUILD = 43;     // Af -> Ap '**' Af .
+    private static final int AT_NEXT = 44;         // Ap -> Ap . '@' <IDENTIFIER> R
+    private static final int AT_BUILD = 45;        // Ap -> Ap '@' <IDENTIFIER> R .
+    private static final int GAMMA_NEXT = 46;      // R -> R . Rn
+    private static final int GAMMA_BUILD = 47;     // R -> R Rn .
+    private static final int PAREN_CLOSE = 48;     // Rn -> '(' E . ')'
+    private static final int WITHIN = 49;          // D -> Da . 'within' D
+    private static final int WITHIN_BUILD = 50;    // D -> Da 'within' D .
+    private static final int AND_NEXT = 51;        // Da -> Dr ('and' Dr)* . ; the frame's value counts the Drs
+    private static final int REC_BUILD = 52;       // Dr -> 'rec' Db .
+    private static final int DEFINITION_CLOSE = 53; // Db -> '(' D . ')'
+    private static final int EQUALS_BUILD = 54;    // Db -> <IDENTIFIER> Vl '=' E .
+    private static final int FUNCTION_BUILD = 55;  // Db -> <IDENTIFIER> Vb+ '=' E . ; the frame's value counts the Vbs
+
+    private static final NodeKind[] NODE_KINDS = NodeKind.values();
+
+    private final Parser parser;
+    private int[] states;
+    private int[] values;
+    private int top;
+
+    IterativeParser(Parser parser) {
+        this.parser = parser;
+        this.states = new int[64];
+        this.values = new int[64];
+    }
+
+    // Parse an E, leaving its tree on the parser's stack
+    void parseE() {
+        run(E);
+    }
+
+    // Parse a D, leaving its tree on the parser's stack
+    void parseD() {
+        run(D);
+    }
+
+    // Parse an Ew, leaving its tree on the parser's stack
+    void parseEw() {
+        run(EW);
+    }
+
+    private void run(int production) {
+        push(production, 0);
+
+        while (top > 0) {
+            top--;
+            int state = states[top];
+            int value = values[top];
+
+            switch (state) {
+                case E:
+                    if (kind() == TokenKind.LET) {
+                        parser.consume(TokenKind.LET);
+                        call(D, LET_IN, 0);
+                    } else if (kind() == TokenKind.FN) {
+                        parser.consume(TokenKind.FN);
+                        int n = 0;
+                        while (kind() == TokenKind.IDENTIFIER || kind() == TokenKind.LEFT_PAREN) {
+                            parser.parseVb();
+                            n++;
+                        }
+                        if (n == 0) {
+                            throw error("Identifier or '(' expected");
+                        }
+                        if (kind() == TokenKind.DOT) {
+                            parser.consume(TokenKind.DOT);
+                            call(E, FN_BUILD, n);
+                        } else {
+                            throw error("'.' expected");
+                        }
+                    } else {
+                        push(EW, 0);
+                    }
+                    break;
+                case LET_IN:
+                    if (kind() == TokenKind.IN) {
+                        parser.consume(TokenKind.IN);
+                        call(E, LET_BUILD, 0);
+                    } else {
+                        throw error("'in' expected");
+                    }
+                    break;
+                case LET_BUILD:
+                    parser.buildTree(NodeKind.LET, 2);
+                    break;
+                case FN_BUILD:
+                    parser.buildTree(NodeKind.LAMBDA, value + 1);
+                    break;
+
+                case EW:
+                    call(T, WHERE, 0);
+                    break;
+                case WHERE:
+                    if (kind() == TokenKind.WHERE) {
+                        parser.consume(TokenKind.WHERE);
+                        call(DR, WHERE_BUILD, 0);
+                    }
+                    break;
+                case WHERE_BUILD:
+                    parser.buildTree(NodeKind.WHERE, 2);
+                    break;
+
+                case T:
+                    call(TA, TAU_NEXT, 0);
+                    break;
+                case TAU_NEXT:
+                    if (kind() == TokenKind.COMMA) {
+                        parser.consume(TokenKind.COMMA);
+                        call(TA, TAU_NEXT, value + 1);
+                    } else if (value > 0) {
+                        parser.buildTree(NodeKind.TAU, value + 1);
+                    }
+                    break;
+
+                case TA:
+                    call(TC, AUG_NEXT, 0);
+                    break;
+                case AUG_NEXT:
+                    if (kind() == TokenKind.AUG) {
+                        parser.consume(TokenKind.AUG);
+                        call(TC, AUG_BUILD, 0);
+                    }
+                    break;
+                case AUG_BUILD:
+                    parser.buildTree(NodeKind.AUG, 2);
+                    push(AUG_NEXT, 0);
+                    break;
+
+                case TC:
+                    call(B, ARROW, 0);
+                    break;
+                case ARROW:
+                    if (kind() == TokenKind.ARROW) {
+                        parser.consume(TokenKind.ARROW);
+                        call(TC, BAR, 0);
+                    }
+                    break;
+                case BAR:
+                    if (kind() == TokenKind.BAR) {
+                        parser.consume(TokenKind.BAR);
+                        call(TC, ARROW_BUILD, 0);
+                    } else {
+                        throw error("'|' expected");
+                    }
+                    break;
+                case ARROW_BUILD:
+                    parser.buildTree(NodeKind.CONDITIONAL, 3);
+                    break;
+
+                case B:
+                    call(BT, OR_NEXT, 0);
+                    break;
+                case OR_NEXT:
+                    if (kind() == TokenKind.OR) {
+                        parser.consume(TokenKind.OR);
+                        call(BT, OR_BUILD, 0);
+                    }
+                    break;
+                case OR_BUILD:
+                    parser.buildTree(NodeKind.OR, 2);
+                    push(OR_NEXT, 0);
+                    break;
+
+                case BT:
+                    call(BS, AMPERSAND_NEXT, 0);
+                    break;
+                case AMPERSAND_NEXT:
+                    if (kind() == TokenKind.AMPERSAND) {
+                        parser.consume(TokenKind.AMPERSAND);
+                        call(BS, AMPERSAND_BUILD, 0);
+                    }
+                    break;
+                case AMPERSAND_BUILD:
+                    parser.buildTree(NodeKind.AMPERSAND, 2);
+                    push(AMPERSAND_NEXT, 0);
+                    break;
+
+                case BS:
+                    if (kind() == TokenKind.NOT) {
+                        parser.consume(TokenKind.NOT);
+                        call(BP, NOT_BUILD, 0);
+                    } else {
+                        push(BP, 0);
+                    }
+                    break;
+                case NOT_BUILD:
+                    parser.buildTree(NodeKind.NOT, 1);
+                    break;
+
+                case BP:
+                    call(A, COMPARISON, 0);
+                    break;
+                case COMPARISON: {
+                    NodeKind operator = Parser.comparison(kind());
+                    if (operator != null) {
+                        parser.consume(kind());
+                        call(A, BINARY_BUILD, operator.ordinal());
+                    }
+                    break;
+                }
+                case BINARY_BUILD:
+                    parser.buildTree(NODE_KINDS[value], 2);
+                    break;
+
+                case A:
+                    if (kind() == TokenKind.PLUS) {
+                        parser.consume(TokenKind.PLUS);
+                        call(AT, ADD_NEXT, 0);
+                    } else if (kind() == TokenKind.MINUS) {
+                        parser.consume(TokenKind.MINUS);
+                        call(AT, NEG_BUILD, 0);
+                    } else {
+                        call(AT, ADD_NEXT, 0);
+                    }
+                    break;
+                case NEG_BUILD:
+                    parser.buildTree(NodeKind.NEG, 1);
+                    push(ADD_NEXT, 0);
+                    break;
+                case ADD_NEXT:
+                    if (kind() == TokenKind.PLUS || kind() == TokenKind.MINUS) {
+                        TokenKind operator = kind();
+                        parser.consume(operator);
+                        call(AT, ADD_BUILD, (operator == TokenKind.PLUS ? NodeKind.PLUS : NodeKind.MINUS).ordinal());
+                    }
+                    break;
+                case ADD_BUILD:
+                    parser.buildTree(NODE_KINDS[value], 2);
+                    push(ADD_NEXT, 0);
+                    break;
+
+                case AT:
+                    call(AF, MULTIPLY_NEXT, 0);
+                    break;
+                case MULTIPLY_NEXT:
+                    if (kind() == TokenKind.STAR || kind() == TokenKind.SLASH) {
+                        TokenKind operator = kind();
+                        parser.consume(operator);
+                        call(AF, MULTIPLY_BUILD, (operator == TokenKind.STAR ? NodeKind.TIMES : NodeKind.DIVIDE).ordinal());
+                    }
+                    break;
+                case MULTIPLY_BUILD:
+                    parser.buildTree(NODE_KINDS[value], 2);
+                    push(MULTIPLY_NEXT, 0);
+                    break;
+
+                case AF:
+                    call(AP, POWER, 0);
+                    break;
+                case POWER:
+                    if (kind() == TokenKind.POWER) {
+                        parser.consume(TokenKind.POWER);
+                        call(AF, POWER_BUILD, 0);
+                    }
+                    break;
+                case POWER_BUILD:
+                    parser.buildTree(NodeKind.POWER, 2);
+                    break;
+
+                case AP:
+                    call(R, AT_NEXT, 0);
+                    break;
+                case AT_NEXT:
+                    if (kind() == TokenKind.AT) {
+                        parser.consume(TokenKind.AT);
+                        if (kind() == TokenKind.IDENTIFIER) {
+                            parser.buildIdentifier();
+                            call(R, AT_BUILD, 0);
+                        } else {
+                            throw error("Identifier expected");
+                        }
+                    }
+                    break;
+                case AT_BUILD:
+                    parser.buildTree(NodeKind.AT, 3);
+                    push(AT_NEXT, 0);
+                    break;
+
+                case R:
+                    call(RN, GAMMA_NEXT, 0);
+                    break;
+                case GAMMA_NEXT:
+                    if (Parser.startsRn(kind())) {
+                        call(RN, GAMMA_BUILD, 0);
+                    }
+                    break;
+                case GAMMA_BUILD:
+                    parser.buildTree(NodeKind.GAMMA, 2);
+                    push(GAMMA_NEXT, 0);
+                    break;
+
+                case RN:
+                    if (kind() == TokenKind.LEFT_PAREN) {
+                        parser.consume(TokenKind.LEFT_PAREN);
+                        call(E, PAREN_CLOSE, 0);
+                    } else {
+                        parser.parseRnLeaf();
+                    }
+                    break;
+                case PAREN_CLOSE:
+                case DEFINITION_CLOSE:
+                    if (kind() == TokenKind.RIGHT_PAREN) {
+                        parser.consume(TokenKind.RIGHT_PAREN);
+                    } else {
+                        throw error("')' expected");
+                    }
+                    break;
+
+                case D:
+                    call(DA, WITHIN, 0);
+                    break;
+                case WITHIN:
+                    if (kind() == TokenKind.WITHIN) {
+                        parser.consume(TokenKind.WITHIN);
+                        call(D, WITHIN_BUILD, 0);
+                    }
+                    break;
+                case WITHIN_BUILD:
+                    parser.buildTree(NodeKind.WITHIN, 2);
+                    break;
+
+                case DA:
+                    call(DR, AND_NEXT, 0);
+                    break;
+                case AND_NEXT:
+                    if (kind() == TokenKind.AND) {
+                        parser.consume(TokenKind.AND);
+                        call(DR, AND_NEXT, value + 1);
+                    } else if (value > 0) {
+                        parser.buildTree(NodeKind.AND, value + 1);
+                    }
+                    break;
+
+                case DR:
+                    if (kind() == TokenKind.REC) {
+                        parser.consume(TokenKind.REC);
+                        call(DB, REC_BUILD, 0);
+                    } else {
+                        push(DB, 0);
+                    }
+                    break;
+                case REC_BUILD:
+                    parser.buildTree(NodeKind.REC, 1);
+                    break;
+
+                case DB:
+                    parseDb();
+                    break;
+                case EQUALS_BUILD:
+                    parser.buildTree(NodeKind.EQUALS, 2);
+                    break;
+                case FUNCTION_BUILD:
+                    parser.buildTree(NodeKind.FUNCTION_FORM, value + 2);
+                    break;
+
+                default:
+                    throw new IllegalStateException("Unknown parser state " + state);
+            }
+        }
+    }
+
+    private void parseDb() {
+        // Db -> '(' D ')'
+        if (kind() == TokenKind.LEFT_PAREN) {
+            parser.consume(TokenKind.LEFT_PAREN);
+            call(D, DEFINITION_CLOSE, 0);
+        }
+        // Db -> <IDENTIFIER> ...
+        else if (kind() == TokenKind.IDENTIFIER) {
+            parser.buildIdentifier();
+
+            // Db -> <IDENTIFIER> Vl '=' E
+            if (kind() == TokenKind.COMMA || kind() == TokenKind.EQUALS) {
+                parser.parseVl();
+                parser.consume(TokenKind.EQUALS);
+                call(E, EQUALS_BUILD, 0);
+            }
+            // Db -> <IDENTIFIER> Vb+ '=' E
+            else {
+                int n = 0;
+                while (kind() == TokenKind.IDENTIFIER || kind() == TokenKind.LEFT_PAREN) {
+                    parser.parseVb();
+                    n++;
+                }
+                if (n == 0) {
+                    throw error("Identifier or '(' expected");
+                }
+                if (kind() == TokenKind.EQUALS) {
+                    parser.consume(TokenKind.EQUALS);
+                    call(E, FUNCTION_BUILD, n);
+                } else {
+                    throw error("'=' expected");
+                }
+            }
+        } else {
+            throw error("Identifier or '(' expected");
+        }
+    }
+
+    // Parse 'production' next, then continue with 'continuation'
+    private void call(int production, int continuation, int value) {
+        push(continuation, value);
+        push(production, 0);
+    }
+
+    private void push(int state, int value) {
+        if (top == states.length) {
+            states = Arrays.copyOf(states, top * 2);
+            values = Arrays.copyOf(values, top * 2);
+        }
+        states[top] = state;
+        values[top] = value;
+        top++;
+    }
+
+    private TokenKind kind() {
+        return parser.kind();
+    }
+
+    private RuntimeException error(String message) {
+        return new RuntimeException("Syntax error in line " + parser.line() + ": " + message);
+    }
+}
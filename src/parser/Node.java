@@ -1,27 +1,141 @@
 package parser;
 
+import scanner.Symbols;
+
 import java.util.ArrayList;
 import java.util.List;
 
-public class Node {
+public class Node implements TreeNode {
+    private NodeKind kind;
     private String value;
     private List<Node> children;
     private int level;
 
-    // Constructor
+    // Payload of IDENTIFIER, INTEGER and STRING leaves, decoded once when the leaf is created
+    private String text;
+    private int symbol;
+    private int intValue;
+    private boolean intInRange;
+    private String stringValue;
+
+    // Constructor for a node given by its printed label, e.g. "gamma" or "<ID:x>"
     public Node(String value) {
-        this.value = value;
         this.children = new ArrayList<>();
         this.level = 0;
+        setValue(value);
+    }
+
+    public Node(NodeKind kind) {
+        this.kind = kind;
+        this.children = new ArrayList<>();
+        this.level = 0;
+        this.symbol = -1;
+    }
+
+    // Identifier leaf; 'symbol' is the name's id in Symbols.GLOBAL, or in the session's table for an IncrementalParser
+    public static Node identifier(String name, int symbol) {
+        Node node = new Node(NodeKind.IDENTIFIER);
+        node.text = name;
+        node.symbol = symbol;
+        return node;
+    }
+
+    // Integer leaf from the digits as written in the source
+    public static Node integer(String digits) {
+        Node node = new Node(NodeKind.INTEGER);
+        node.text = digits;
+        try {
+            node.intValue = Integer.parseInt(digits);
+            node.intInRange = true;
+        } catch (NumberFormatException e) {
+            // Beyond the int range: kept as its digits
+        }
+        return node;
+    }
+
+    // String leaf from the literal as written in the source, quotes included
+    public static Node string(String literal) {
+        Node node = new Node(NodeKind.STRING);
+        node.text = literal;
+        node.stringValue = literal.strip().replace("'", "");
+        return node;
     }
 
     // Getters and Setters
+    public NodeKind getKind() {
+        return kind;
+    }
+
+    // Change an interior node into another kind, e.g. "let" into "gamma" while standardizing
+    public void setKind(NodeKind kind) {
+        this.kind = kind;
+        this.value = null;
+    }
+
     public String getValue() {
+        if (value == null) {
+            value = kind.hasPayload() ? "<" + kind.getLabel() + ":" + text + ">" : kind.getLabel();
+        }
         return value;
     }
 
     public void setValue(String value) {
+        this.symbol = -1;
+        this.text = null;
+        this.stringValue = null;
+        this.intInRange = false;
+
+        NodeKind labelled = NodeKind.fromLabel(value);
+        if (labelled != null) {
+            setKind(labelled);
+            return;
+        }
+
+        int colon = value.indexOf(':');
+        if (!value.startsWith("<") || !value.endsWith(">") || colon < 0) {
+            throw new IllegalArgumentException("Unknown node: " + value);
+        }
+        String payload = value.substring(colon + 1, value.length() - 1);
+        Node leaf;
+        switch (value.substring(1, colon)) {
+            case "ID":
+                leaf = identifier(payload, Symbols.GLOBAL.intern(payload));
+                break;
+            case "INT":
+                leaf = integer(payload);
+                break;
+            case "STR":
+                leaf = string(payload);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown node: " + value);
+        }
+        this.kind = leaf.kind;
         this.value = value;
+        copyPayload(leaf, this);
+    }
+
+    // Name of an identifier, or the source text of an integer or string literal
+    public String getText() {
+        return text;
+    }
+
+    // Symbol id of an identifier in Symbols.GLOBAL, or in the session's table for an IncrementalParser
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public int getIntValue() {
+        if (!intInRange) {
+            // A literal beyond the int range has no int value; the machine reads it from its digits
+            return Integer.parseInt(text);
+        }
+        return intValue;
+    }
+
+    // Contents of a string literal without its quotes; escape sequences are left to Print
+    public String getStringValue() {
+        return stringValue;
     }
 
     public List<Node> getChildren() {
@@ -45,24 +159,55 @@ public class Node {
         this.children.add(child);
     }
 
-    // Preorder traversal of the tree
-    public static void preorderTraversal(Node root) {
-        if (root == null) {
-            return;
+    // Deep copy of the subtree rooted at this node
+    public Node copy() {
+        Node node = new Node(kind);
+        node.value = value;
+        copyPayload(this, node);
+        for (Node child : children) {
+            node.addChild(child.copy());
         }
+        return node;
+    }
 
-        // Print the current node with indentation based on its level
-        System.out.println(".".repeat(root.getLevel()) + root.getValue());
+    // Copy of this node with other children, which are not copied themselves
+    public Node withChildren(List<Node> children) {
+        Node node = new Node(kind);
+        node.value = value;
+        copyPayload(this, node);
+        node.children = children;
+        return node;
+    }
+
+    // Turn this node into 'other', taking over its children; replaces a subtree in place
+    void replaceWith(Node other) {
+        kind = other.kind;
+        value = other.value;
+        children = other.children;
+        level = other.level;
+        copyPayload(other, this);
+    }
 
-        // Traverse each child node
-        for (Node child : root.getChildren()) {
-            child.setLevel(root.getLevel() + 1);
-            preorderTraversal(child);
+    private static void copyPayload(Node from, Node to) {
+        to.text = from.text;
+        to.symbol = from.symbol;
+        to.intValue = from.intValue;
+        to.intInRange = from.intInRange;
+        to.stringValue = from.stringValue;
+    }
+
+    // Preorder traversal of the tree, printed to System.out
+    public static void preorderTraversal(Node root) {
+        if (root == null) {
+            return;
         }
+        TreePrinter printer = new TreePrinter(System.out);
+        printer.print(root);
+        printer.flush();
     }
 
     @Override
     public String toString() {
-        return "Node(value=" + value + ")";
+        return "Node(value=" + getValue() + ")";
     }
-}
\ No newline at end of file
+}
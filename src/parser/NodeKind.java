@@ -0,0 +1,87 @@
+package parser;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Kinds of AST and standardized tree nodes.
+// Each kind has the label that is printed for it; leaf kinds with a payload print as "<ID:x>", "<INT:5>", "<STR:'s'>".
+public enum NodeKind {
+    // Leaves
+    IDENTIFIER("ID"),
+    INTEGER("INT"),
+    STRING("STR"),
+    TRUE("<true>"),
+    FALSE("<false>"),
+    NIL("<nil>"),
+    DUMMY("<dummy>"),
+    Y_STAR("<Y*>"),
+    EMPTY_PARAMETER("()"),
+
+    // Expressions
+    LET("let"),
+    LAMBDA("lambda"),
+    WHERE("where"),
+    TAU("tau"),
+    AUG("aug"),
+    CONDITIONAL("->"),
+    OR("or"),
+    AMPERSAND("&"),
+    NOT("not"),
+    GR("gr"),
+    GE("ge"),
+    LS("ls"),
+    LE("le"),
+    EQ("eq"),
+    NE("ne"),
+    PLUS("+"),
+    MINUS("-"),
+    NEG("neg"),
+    TIMES("*"),
+    DIVIDE("/"),
+    POWER("**"),
+    AT("@"),
+    GAMMA("gamma"),
+
+    // Definitions
+    WITHIN("within"),
+    AND("and"),
+    REC("rec"),
+    EQUALS("="),
+    FUNCTION_FORM("function_form"),
+    COMMA(",");
+
+    private static final Map<String, NodeKind> BY_LABEL = new HashMap<>();
+
+    static {
+        for (NodeKind kind : values()) {
+            if (!kind.hasPayload()) {
+                BY_LABEL.put(kind.label, kind);
+            }
+        }
+    }
+
+    private final String label;
+
+    NodeKind(String label) {
+        this.label = label;
+    }
+
+    // Printed label; for IDENTIFIER, INTEGER and STRING this is the type tag inside "<TAG:value>"
+    public String getLabel() {
+        return label;
+    }
+
+    // Whether nodes of this kind carry a name, number or string
+    public boolean hasPayload() {
+        return this == IDENTIFIER || this == INTEGER || this == STRING;
+    }
+
+    public boolean isLeaf() {
+        return ordinal() <= EMPTY_PARAMETER.ordinal();
+    }
+
+    // Kind of an interior node or payload-free leaf by its label, or null if there is none
+    public static NodeKind fromLabel(String label) {
+        return BY_LABEL.get(label);
+    }
+}
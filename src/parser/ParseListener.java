@@ -0,0 +1,13 @@
+package parser;
+
+// Receives the tree of a program from Parser.parse(ParseListener) in preorder, one node at a time,
+// without the tree ever being built as a whole
+public interface ParseListener {
+    // Start of an interior node; its children follow, then exitNode
+    void enterNode(NodeKind kind);
+
+    // Leaf; 'text' is the name of an identifier or the source text of an integer or string literal, null otherwise
+    void leaf(NodeKind kind, String text);
+
+    void exitNode(NodeKind kind);
+}
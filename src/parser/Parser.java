@@ -2,41 +2,128 @@ package parser;
 
 import scanner.Token;
 import scanner.LexicalAnalyzer;
+import scanner.TokenCursor;
+import scanner.TokenKind;
+import scanner.TokenListCursor;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Stack;
 
 public class Parser {
-    private List<Token> tokens;
-    private int currentIndex;
+    private TokenCursor tokens;
     private Stack<Node> stack;
+    private IncrementalParser incremental;
+
+    // -Drpal.parser=iterative parses with an explicit stack (IterativeParser) instead of recursive descent
+    private static final boolean ITERATIVE = "iterative".equals(System.getProperty("rpal.parser"));
+    private boolean iterative = ITERATIVE;
+
+    // Binding levels of the operators between B and Ap, loosest first
+    private static final int OR_LEVEL = 1;
+    private static final int AND_LEVEL = 2;
+    private static final int NOT_LEVEL = 3;
+    private static final int COMPARISON_LEVEL = 4;
+    private static final int ADD_LEVEL = 5;
+    private static final int MULTIPLY_LEVEL = 6;
+    private static final int POWER_LEVEL = 7;
+    private static final int AT_LEVEL = 8;
+    private static final int PRIMARY_LEVEL = 9;
+
+    // Level and node kind of every infix operator token; level 0 for other tokens
+    private static final int[] OPERATOR_LEVELS = new int[TokenKind.values().length];
+    private static final NodeKind[] OPERATOR_NODES = new NodeKind[TokenKind.values().length];
+
+    static {
+        operator(TokenKind.OR, OR_LEVEL, NodeKind.OR);
+        operator(TokenKind.AMPERSAND, AND_LEVEL, NodeKind.AMPERSAND);
+        for (TokenKind kind : TokenKind.values()) {
+            if (comparison(kind) != null) {
+                operator(kind, COMPARISON_LEVEL, comparison(kind));
+            }
+        }
+        operator(TokenKind.PLUS, ADD_LEVEL, NodeKind.PLUS);
+        operator(TokenKind.MINUS, ADD_LEVEL, NodeKind.MINUS);
+        operator(TokenKind.STAR, MULTIPLY_LEVEL, NodeKind.TIMES);
+        operator(TokenKind.SLASH, MULTIPLY_LEVEL, NodeKind.DIVIDE);
+        operator(TokenKind.POWER, POWER_LEVEL, NodeKind.POWER);
+        operator(TokenKind.AT, AT_LEVEL, NodeKind.AT);
+    }
+
+    private static void operator(TokenKind kind, int level, NodeKind node) {
+        OPERATOR_LEVELS[kind.ordinal()] = level;
+        OPERATOR_NODES[kind.ordinal()] = node;
+    }
+
+    // Set while building into an arena; the stack then holds arena node indices instead of Nodes
+    private AstArena arena;
+    private int[] arenaStack;
+    private int arenaTop;
 
     // Constructor for the Parser class
     public Parser(List<Token> tokens) {
+        this(new TokenListCursor(tokens));
+    }
+
+    // Constructor for a parser that pulls tokens on demand
+    public Parser(TokenCursor tokens) {
         this.tokens = tokens;
-        this.currentIndex = 0;
         this.stack = new Stack<>();
     }
 
+    // Constructor for a parser that can reuse definitions from a previous parse
+    Parser(TokenCursor tokens, IncrementalParser incremental) {
+        this(tokens);
+        this.incremental = incremental;
+        this.iterative = false;
+    }
+
+    // Parse with an explicit heap-allocated stack, so deeply nested input cannot overflow the thread stack.
+    // Not available together with incremental reparsing.
+    public void setIterative(boolean iterative) {
+        this.iterative = iterative && incremental == null;
+    }
+
     // Static method to parse a file and return the AST
     public static Node parse(String fileName) throws IOException {
-        // Read the file content
-        String fileContent = new String(Files.readAllBytes(Paths.get(fileName)));
-        // Tokenize the file content
-        List<Token> tokens = LexicalAnalyzer.tokenize(fileContent);
+        // Map the file and lex it lazily while parsing, see LexicalAnalyzer.open
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            TokenCursor tokens = LexicalAnalyzer.open(channel);
 
-        // Create a Parser instance and parse the tokens
-        Parser parser = new Parser(tokens);
-        return parser.parseTokens();
+            // Create a Parser instance and parse the tokens
+            Parser parser = new Parser(tokens);
+            return parser.parseTokens();
+        }
+    }
+
+    // Parse a file and report its tree to 'listener' in preorder, see parse(ParseListener)
+    public static void parse(String fileName, ParseListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            TokenCursor tokens = LexicalAnalyzer.open(channel);
+            new Parser(tokens).parse(listener);
+        }
+    }
+
+    // Parse a file into an arena instead of Node objects
+    public static AstArena parseArena(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            TokenCursor tokens = LexicalAnalyzer.open(channel);
+            return new Parser(tokens).parseArena();
+        }
     }
 
 
     // Internal method to parse tokens and build the AST
-    private Node parseTokens() {
-        parseE(); // Start with the top-level grammar rule
+    public Node parseTokens() {
+        if (tokens.kind() == TokenKind.END_OF_INPUT) {
+            throw new RuntimeException("No tokens to parse.");
+        }
+        parseProgram(); // Start with the top-level grammar rule
         if (!stack.isEmpty()) {
             return stack.pop();
         } else {
@@ -44,9 +131,177 @@ public class Parser {
         }
     }
 
-    // Helper method to get the current token
-    private Token currentToken() {
-        return tokens.get(currentIndex);
+    // Parse the tokens into a new arena
+    public AstArena parseArena() {
+        if (tokens.kind() == TokenKind.END_OF_INPUT) {
+            throw new RuntimeException("No tokens to parse.");
+        }
+        arena = new AstArena();
+        arenaStack = new int[64];
+        arenaTop = 0;
+        try {
+            parseProgram();
+            if (arenaTop == 0) {
+                throw new RuntimeException("Stack is empty after parsing.");
+            }
+            arena.setRoot(arenaStack[--arenaTop]);
+            arena.trim();
+            return arena;
+        } finally {
+            arena = null;
+            arenaStack = null;
+        }
+    }
+
+    // Parse the tokens and report the tree to 'listener' in preorder, without keeping the whole tree.
+    // A node can only be reported after its parent, and most RPAL nodes (operators, gamma, ',', 'where',
+    // 'within', 'and') are only known after their first child has been parsed. So only the chain of 'let' and
+    // 'fn' expressions that a program is made of is reported while it is parsed. Each definition, bound variable
+    // and the final expression is parsed into an arena first and reported once complete, then the arena is reused.
+    // Memory is proportional to the length of that chain plus the largest such piece, not to the program.
+    // Events before a syntax error have already been delivered when the error is thrown.
+    public void parse(ParseListener listener) {
+        if (tokens.kind() == TokenKind.END_OF_INPUT) {
+            throw new RuntimeException("No tokens to parse.");
+        }
+        arena = new AstArena();
+        arenaStack = new int[64];
+        arenaTop = 0;
+        NodeKind[] chain = new NodeKind[64];
+        int length = 0;
+        try {
+            while (true) {
+                // E -> 'let' D 'in' E
+                if (kind() == TokenKind.LET) {
+                    consume(TokenKind.LET);
+                    listener.enterNode(NodeKind.LET);
+                    chain = push(chain, length++, NodeKind.LET);
+                    if (iterative) {
+                        new IterativeParser(this).parseD();
+                    } else {
+                        parseD();
+                    }
+                    report(listener);
+
+                    if (kind() != TokenKind.IN) {
+                        throw new RuntimeException("Syntax error in line " + line() + ": 'in' expected");
+                    }
+                    consume(TokenKind.IN);
+                }
+                // E -> 'fn' Vb+ '.' E
+                else if (kind() == TokenKind.FN) {
+                    consume(TokenKind.FN);
+                    listener.enterNode(NodeKind.LAMBDA);
+                    chain = push(chain, length++, NodeKind.LAMBDA);
+                    int n = 0;
+
+                    while (kind() == TokenKind.IDENTIFIER || kind() == TokenKind.LEFT_PAREN) {
+                        parseVb();
+                        report(listener);
+                        n++;
+                    }
+
+                    if (n == 0) {
+                        throw new RuntimeException("Syntax error in line " + line() + ": Identifier or '(' expected");
+                    }
+                    if (kind() != TokenKind.DOT) {
+                        throw new RuntimeException("Syntax error in line " + line() + ": '.' expected");
+                    }
+                    consume(TokenKind.DOT);
+                }
+                // E -> Ew
+                else {
+                    if (iterative) {
+                        new IterativeParser(this).parseEw();
+                    } else {
+                        parseEw();
+                    }
+                    report(listener);
+                    break;
+                }
+            }
+
+            while (length > 0) {
+                listener.exitNode(chain[--length]);
+            }
+        } finally {
+            arena = null;
+            arenaStack = null;
+        }
+    }
+
+    private static NodeKind[] push(NodeKind[] chain, int length, NodeKind kind) {
+        if (length == chain.length) {
+            chain = Arrays.copyOf(chain, length * 2);
+        }
+        chain[length] = kind;
+        return chain;
+    }
+
+    // Report the tree on top of the arena stack, which is the only one there, and empty the arena
+    private void report(ParseListener listener) {
+        checkStack(arenaTop, 1);
+        int[] pending = new int[16];
+        int count = 0;
+        pending[count++] = arenaStack[--arenaTop];
+
+        // A node is pushed as itself to be entered and as ~node to be exited after its children
+        while (count > 0) {
+            int node = pending[--count];
+            if (node < 0) {
+                listener.exitNode(arena.kind(~node));
+                continue;
+            }
+            NodeKind kind = arena.kind(node);
+            if (kind.isLeaf()) {
+                listener.leaf(kind, arena.text(node));
+                continue;
+            }
+            listener.enterNode(kind);
+            int children = arena.childCount(node);
+            if (count + children + 1 > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, count + children + 1));
+            }
+            pending[count++] = ~node;
+            // Children go on in reverse, so the first is taken first
+            count += children;
+            int slot = count - 1;
+            for (int child = arena.firstChild(node); child != -1; child = arena.nextSibling(child)) {
+                pending[slot--] = child;
+            }
+        }
+        arena.clear();
+    }
+
+    // Parse the E or Dr that starts at the current token, for IncrementalParser
+    Node parseProduction(byte production) {
+        if (production == IncrementalParser.DEFINITION) {
+            parseDr();
+        } else {
+            parseE();
+        }
+        return stack.pop();
+    }
+
+    private void parseProgram() {
+        if (iterative) {
+            new IterativeParser(this).parseE();
+        } else {
+            parseE();
+        }
+    }
+
+    // Helper methods to inspect the current token
+    TokenKind kind() {
+        return tokens.kind();
+    }
+
+    String value() {
+        return tokens.value();
+    }
+
+    int line() {
+        return tokens.line();
     }
 
     public void printTree(Node root) {
@@ -54,82 +309,137 @@ public class Parser {
     }
 
     // Helper method to consume the current token
-    private void consume(String expectedValue) {
+    void consume(TokenKind expected) {
 
-        // Check if the current token matches the expected value
-        if (!currentToken().getValue().equals(expectedValue)) {
-            throw new RuntimeException("Syntax error in line " + currentToken().getLine() +
-                    ": Expected " + expectedValue + " but got " + currentToken().getValue());
+        // Check if the current token is of the expected kind
+        if (kind() != expected) {
+            String expectedValue = expected.getText() != null ? expected.getText() : expected.getType();
+            throw new RuntimeException("Syntax error in line " + line() +
+                    ": Expected " + expectedValue + " but got " + value());
         }
 
         // Move to the next token
-        if (!currentToken().isLastToken()) {
-            currentIndex++;
-        } else {
-            // Handle the case where the last token is reached
-            if (!currentToken().getType().equals(")")) {
-                currentToken().setType(")");
-            }
-        }
+        tokens.advance();
     }
 
     // Method to build the abstract syntax tree
     public void buildTree(String value, int numChildren) {
-
-        // Create a new node with the given value
         Node node = new Node(value);
+        if (arena == null) {
+            buildTree(node, numChildren);
+        } else if (node.getKind() == NodeKind.IDENTIFIER) {
+            buildTree(arena.identifier(node.getSymbol()), numChildren);
+        } else if (node.getKind() == NodeKind.INTEGER) {
+            buildTree(arena.integer(node.getText()), numChildren);
+        } else if (node.getKind() == NodeKind.STRING) {
+            buildTree(arena.string(node.getText()), numChildren);
+        } else {
+            buildTree(arena.add(node.getKind()), numChildren);
+        }
+    }
 
-        // Pop children from the stack and assign them to the node
-        for (int i = 0; i < numChildren; i++) {
-            if (stack.isEmpty()) {
-                System.out.println("Error: Stack is empty while building tree");
-                throw new RuntimeException("Stack is empty");
-            }
-            // Add children in reverse order
-            node.getChildren().add(0, stack.pop());
+    void buildTree(NodeKind kind, int numChildren) {
+        if (arena != null) {
+            buildTree(arena.add(kind), numChildren);
+        } else {
+            buildTree(new Node(kind), numChildren);
+        }
+    }
+
+    private void buildTree(Node node, int numChildren) {
+        checkStack(stack.size(), numChildren);
+
+        // Pop the children from the stack in one go, keeping their order
+        if (numChildren > 0) {
+            List<Node> children = stack.subList(stack.size() - numChildren, stack.size());
+            node.setChildren(new ArrayList<>(children));
+            children.clear();
         }
 
         // Push the newly created node back onto the stack
         stack.push(node);
     }
 
+    private void buildTree(int node, int numChildren) {
+        checkStack(arenaTop, numChildren);
+
+        arenaTop -= numChildren;
+        arena.setChildren(node, arenaStack, arenaTop, numChildren);
+
+        if (arenaTop == arenaStack.length) {
+            arenaStack = Arrays.copyOf(arenaStack, arenaTop * 2);
+        }
+        arenaStack[arenaTop++] = node;
+    }
+
+    private static void checkStack(int size, int numChildren) {
+        if (size < numChildren) {
+            System.out.println("Error: Stack is empty while building tree");
+            throw new RuntimeException("Stack is empty");
+        }
+    }
+
+
+    // Push an identifier leaf for the current token and move past it
+    void buildIdentifier() {
+        if (arena != null) {
+            buildTree(arena.identifier(tokens.symbol()), 0);
+        } else {
+            stack.push(Node.identifier(value(), tokens.symbol()));
+        }
+        consume(TokenKind.IDENTIFIER);
+    }
 
     // Parse E -> 'let' D 'in' E | 'fn' Vb+ '.' E | Ew
     private void parseE() {
 
+        // Reuse the expression parsed here last time if its tokens did not change
+        if (incremental != null && incremental.reuse(IncrementalParser.EXPRESSION, stack)) {
+            return;
+        }
+
+        parseExpression();
+
+        if (incremental != null) {
+            incremental.record(stack.peek());
+        }
+    }
+
+    private void parseExpression() {
+
         // E -> 'let' D 'in' E
-        if (currentToken().getValue().equals("let")) {
-            consume("let");
+        if (kind() == TokenKind.LET) {
+            consume(TokenKind.LET);
             parseD();
 
-            if (currentToken().getValue().equals("in")) {
-                consume("in");
+            if (kind() == TokenKind.IN) {
+                consume(TokenKind.IN);
                 parseE();
-                buildTree("let", 2);
+                buildTree(NodeKind.LET, 2);
             } else {
-                throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": 'in' expected");
+                throw new RuntimeException("Syntax error in line " + line() + ": 'in' expected");
             }
         }
         // E -> 'fn' Vb+ '.' E
-        else if (currentToken().getValue().equals("fn")) {
-            consume("fn");;
+        else if (kind() == TokenKind.FN) {
+            consume(TokenKind.FN);
             int n = 0;
 
-            while (currentToken().getType().equals("<IDENTIFIER>") || currentToken().getValue().equals("(")) {
+            while (kind() == TokenKind.IDENTIFIER || kind() == TokenKind.LEFT_PAREN) {
                 parseVb();
                 n++;
             }
 
             if (n == 0) {
-                throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": Identifier or '(' expected");
+                throw new RuntimeException("Syntax error in line " + line() + ": Identifier or '(' expected");
             }
 
-            if (currentToken().getValue().equals(".")) {
-                consume(".");
+            if (kind() == TokenKind.DOT) {
+                consume(TokenKind.DOT);
                 parseE();
-                buildTree("lambda", n + 1);
+                buildTree(NodeKind.LAMBDA, n + 1);
             } else {
-                throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": '.' expected");
+                throw new RuntimeException("Syntax error in line " + line() + ": '.' expected");
             }
         }
         // E -> Ew
@@ -140,10 +450,10 @@ public class Parser {
     // Parse Ew -> T | T 'where' Dr
     private void parseEw() {
         parseT();
-        if (currentToken().getValue().equals("where")) {
-            consume("where");
+        if (kind() == TokenKind.WHERE) {
+            consume(TokenKind.WHERE);
             parseDr();
-            buildTree("where", 2);
+            buildTree(NodeKind.WHERE, 2);
         }
     }
 
@@ -151,23 +461,23 @@ public class Parser {
     private void parseT() {
         parseTa();
         int n = 0;
-        while (currentToken().getValue().equals(",")) {
-            consume(",");
+        while (kind() == TokenKind.COMMA) {
+            consume(TokenKind.COMMA);
             parseTa();
             n++;
         }
         if (n > 0) {
-            buildTree("tau", n + 1);
+            buildTree(NodeKind.TAU, n + 1);
         }
     }
 
     // Parse Ta -> Tc | Ta 'aug' Tc
     private void parseTa() {
         parseTc();
-        while (currentToken().getValue().equals("aug")) {
-            consume("aug");
+        while (kind() == TokenKind.AUG) {
+            consume(TokenKind.AUG);
             parseTc();
-            buildTree("aug", 2);
+            buildTree(NodeKind.AUG, 2);
         }
     }
 
@@ -177,237 +487,210 @@ public class Parser {
         parseB();
 
         // Tc -> B '->' Tc '|' Tc
-        if (currentToken().getValue().equals("->")) {
-            consume("->");
+        if (kind() == TokenKind.ARROW) {
+            consume(TokenKind.ARROW);
             parseTc();
 
-            if (currentToken().getValue().equals("|")) {
-                consume("|");
+            if (kind() == TokenKind.BAR) {
+                consume(TokenKind.BAR);
                 parseTc();
-                buildTree("->", 3);
+                buildTree(NodeKind.CONDITIONAL, 3);
             } else {
-                throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": '|' expected");
+                throw new RuntimeException("Syntax error in line " + line() + ": '|' expected");
             }
         }
     }
 
-    // Parse B -> Bt | B 'or' Bt
+    // Parse B and everything below it down to Ap with precedence climbing:
+    //   B  -> B 'or' Bt            Bt -> Bt '&' Bs          Bs -> 'not' Bp | Bp
+    //   Bp -> A (comparison) A     A  -> ('+' | '-') At | A ('+' | '-') At
+    //   At -> At ('*' | '/') Af    Af -> Ap '**' Af         Ap -> Ap '@' <IDENTIFIER> R
     private void parseB() {
-
-        // B -> Bt
-        parseBt();
-
-        // B -> B 'or' Bt
-        while (currentToken().getValue().equals("or")) {
-            consume("or");
-            parseBt();
-            buildTree("or", 2);
-        }
-    }
-
-    // Parse Bt -> Bs | Bt '&' Bs
-    private void parseBt() {
-
-        // Bt -> Bs
-        parseBs();
-
-        // Bt -> Bt '&' Bs
-        while (currentToken().getValue().equals("&")) {
-            consume("&");
-            parseBs();
-            buildTree("&", 2);
-        }
+        parseOperators(OR_LEVEL);
     }
 
-    // Parse Bs -> 'not' Bp | Bp
-    private void parseBs() {
+    // Parse an expression whose operators all bind at least as tightly as minLevel.
+    // Returns the level of the operator at its root, PRIMARY_LEVEL for a plain R.
+    private int parseOperators(int minLevel) {
+        int level;
 
         // Bs -> 'not' Bp
-        if (currentToken().getValue().equals("not")) {
-            consume("not");
-            parseBp();
-            buildTree("not", 1);
-        }
-        // Bs -> Bp
-        else {
-            parseBp();
-        }
-    }
-
-    private void parseBp() {
-
-        // Bp -> A
-        parseA();
-
-        // Bp -> A ('gr' | '>') A
-        if (currentToken().getValue().equals("gr") || currentToken().getValue().equals(">")) {
-
-            consume(currentToken().getValue());
-            parseA();
-            buildTree("gr", 2);
-        }
-        // Bp -> A ('ge' | '>=') A
-        else if (currentToken().getValue().equals("ge") || currentToken().getValue().equals(">=")) {
-            consume(currentToken().getValue());
-            parseA();
-            buildTree("ge", 2);
-        }
-        // Bp -> A ('ls' | '<') A
-        else if (currentToken().getValue().equals("ls") || currentToken().getValue().equals("<")) {
-            consume(currentToken().getValue());
-            parseA();
-            buildTree("ls", 2);
-
-        }
-        // Bp -> A ('le' | '<=') A
-        else if (currentToken().getValue().equals("le") || currentToken().getValue().equals("<=")) {
-            consume(currentToken().getValue());
-            parseA();
-            buildTree("le", 2);
-        }
-        // Bp -> A 'eq' A
-        else if (currentToken().getValue().equals("eq")) {
-            consume("eq");
-            parseA();
-            buildTree("eq", 2);
-        }
-        // Bp -> A 'ne' A
-        else if (currentToken().getValue().equals("ne")) {
-            consume("ne");
-            parseA();
-            buildTree("ne", 2);
-        }
-    }
-
-    private void parseA() {
-
-        // A -> '+' At
-        if (currentToken().getValue().equals("+")) {
-            consume("+");
-            parseAt();
-
-        }
-        // A -> '-' At
-        else if (currentToken().getValue().equals("-")) {
-            consume("-");
-            parseAt();;
-            buildTree("neg", 1);
+        if (kind() == TokenKind.NOT && minLevel <= NOT_LEVEL) {
+            consume(TokenKind.NOT);
+            parseOperators(COMPARISON_LEVEL);
+            buildTree(NodeKind.NOT, 1);
+            level = NOT_LEVEL;
+        }
+        // A -> '+' At | '-' At
+        else if ((kind() == TokenKind.PLUS || kind() == TokenKind.MINUS) && minLevel <= ADD_LEVEL) {
+            TokenKind sign = kind();
+            consume(sign);
+            parseOperators(MULTIPLY_LEVEL);
+            if (sign == TokenKind.MINUS) {
+                buildTree(NodeKind.NEG, 1);
+            }
+            level = ADD_LEVEL;
         }
-        // A -> At
+        // Ap -> R
         else {
-            parseAt();
+            parseR();
+            level = PRIMARY_LEVEL;
         }
 
-        // A -> A '+' At | A '-' At
-        while (currentToken().getValue().equals("+") || currentToken().getValue().equals("-")) {
-            String operator = currentToken().getValue();
-            consume(operator);
-            parseAt();
-            buildTree(operator, 2);
-        }
-    }
-
-    private void parseAt() {
-
-        // At -> Af
-        parseAf();
-
-        // At -> At '*' Af | At '/' Af
-        while (currentToken().getValue().equals("*") || currentToken().getValue().equals("/")) {
-
-            String operator = currentToken().getValue();
+        while (true) {
+            TokenKind operator = kind();
+            int operatorLevel = OPERATOR_LEVELS[operator.ordinal()];
+            if (operatorLevel == 0 || operatorLevel < minLevel || level < leftOperandLevel(operatorLevel)) {
+                return level;
+            }
             consume(operator);
-            parseAf();
-            buildTree(operator, 2);
 
+            // Ap -> Ap '@' <IDENTIFIER> R
+            if (operatorLevel == AT_LEVEL) {
+                if (kind() != TokenKind.IDENTIFIER) {
+                    throw new RuntimeException("Syntax error in line " + line() + ": Identifier expected");
+                }
+                buildIdentifier();
+                parseR();
+                buildTree(NodeKind.AT, 3);
+            } else {
+                parseOperators(operatorLevel == POWER_LEVEL ? POWER_LEVEL : operatorLevel + 1);
+                buildTree(OPERATOR_NODES[operator.ordinal()], 2);
+            }
+            level = operatorLevel;
         }
     }
 
-    private void parseAf() {
-
-        // Af -> Ap
-        parseAp();
-
-        // Af -> Ap '**' Af
-        if (currentToken().getValue().equals("**")) {
-            consume("**");
-            parseAf();
-            buildTree("**", 2);
-        }
+    // Comparisons and '**' do not take an operand of their own level on the left
+    private static int leftOperandLevel(int operatorLevel) {
+        return operatorLevel == COMPARISON_LEVEL || operatorLevel == POWER_LEVEL ? operatorLevel + 1 : operatorLevel;
     }
 
-    private void parseAp() {
-
-        // Ap -> R
-        parseR();
-
-        // Ap -> Ap '@' <IDENTIFIER> R
-        while (currentToken().getValue().equals("@")) {
-            consume("@");
-
-            if (currentToken().getType().equals("<IDENTIFIER>")) {
-                buildTree("<ID:" + currentToken().getValue() + ">", 0);
-                consume(currentToken().getValue());
-                parseR();
-                buildTree("@", 3);
-            } else {
-                throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": Identifier expected");
-            }
+    // Node kind for a comparison operator token, or null if the token is not one
+    static NodeKind comparison(TokenKind kind) {
+        switch (kind) {
+            // Bp -> A ('gr' | '>') A
+            case GR:
+            case GREATER:
+                return NodeKind.GR;
+            // Bp -> A ('ge' | '>=') A
+            case GE:
+            case GREATER_EQUAL:
+                return NodeKind.GE;
+            // Bp -> A ('ls' | '<') A
+            case LS:
+            case LESS:
+                return NodeKind.LS;
+            // Bp -> A ('le' | '<=') A
+            case LE:
+            case LESS_EQUAL:
+                return NodeKind.LE;
+            // Bp -> A 'eq' A
+            case EQ:
+                return NodeKind.EQ;
+            // Bp -> A 'ne' A
+            case NE:
+                return NodeKind.NE;
+            default:
+                return null;
         }
     }
 
+    // R -> Rn | R Rn
     private void parseR() {
 
         // R -> Rn
         parseRn();
 
         // R -> R Rn
-        while (currentToken().getType().equals("<IDENTIFIER>") || currentToken().getType().equals("<INTEGER>") || currentToken().getType().equals("<STRING>") ||
-                currentToken().getValue().equals("true") || currentToken().getValue().equals("false") || currentToken().getValue().equals("nil") ||
-                currentToken().getValue().equals("(") || currentToken().getValue().equals("dummy")) {
+        while (startsRn(kind())) {
             parseRn();
-            buildTree("gamma", 2);
+            buildTree(NodeKind.GAMMA, 2);
         }
     }
 
-    private void parseRn() {
+    // Check if a token of this kind can start an Rn
+    static boolean startsRn(TokenKind kind) {
+        switch (kind) {
+            case IDENTIFIER:
+            case INTEGER:
+            case STRING:
+            case TRUE:
+            case FALSE:
+            case NIL:
+            case LEFT_PAREN:
+            case DUMMY:
+                return true;
+            default:
+                return false;
+        }
+    }
 
-        String value = currentToken().getValue();
+    private void parseRn() {
 
-        // Rn -> <IDENTIFIER>
-        if (currentToken().getType().equals("<IDENTIFIER>")) {
-            consume(value);
-            buildTree("<ID:" + value + ">", 0);
-        }
-        // Rn -> <INTEGER>
-        else if (currentToken().getType().equals("<INTEGER>")) {
-            consume(value);
-            buildTree("<INT:" + value + ">", 0);
-        }
-        // Rn -> <STRING>
-        else if (currentToken().getType().equals("<STRING>")) {
-            consume(value);
-            buildTree("<STR:" + value + ">", 0);
-        }
-        // Rn -> 'true', 'false', 'nil', 'dummy'
-        else if (value.equals("true") || value.equals("false") || value.equals("nil") || value.equals("dummy")) {
-            consume(value);
-            buildTree("<" + value + ">", 0);
-        }
         // Rn -> '(' E ')'
-        else if (value.equals("(")) {
-            consume("(");
+        if (kind() == TokenKind.LEFT_PAREN) {
+            consume(TokenKind.LEFT_PAREN);
             parseE();
 
-            if (currentToken().getValue().equals(")")) {
-                consume(")");
+            if (kind() == TokenKind.RIGHT_PAREN) {
+                consume(TokenKind.RIGHT_PAREN);
             } else {
-                throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": ')' expected");
+                throw new RuntimeException("Syntax error in line " + line() + ": ')' expected");
             }
+        } else {
+            parseRnLeaf();
         }
-        // Syntax error
-        else {
-            throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": Identifier, Integer, String, 'true', 'false', 'nil', 'dummy' or '(' expected");
+    }
+
+    // Parse an Rn other than '(' E ')'
+    void parseRnLeaf() {
+
+        TokenKind kind = kind();
+
+        switch (kind) {
+            // Rn -> <IDENTIFIER>
+            case IDENTIFIER:
+                buildIdentifier();
+                break;
+            // Rn -> <INTEGER>
+            case INTEGER:
+                if (arena != null) {
+                    buildTree(arena.integer(value()), 0);
+                } else {
+                    stack.push(Node.integer(value()));
+                }
+                consume(kind);
+                break;
+            // Rn -> <STRING>
+            case STRING:
+                if (arena != null) {
+                    buildTree(arena.string(value()), 0);
+                } else {
+                    stack.push(Node.string(value()));
+                }
+                consume(kind);
+                break;
+            // Rn -> 'true', 'false', 'nil', 'dummy'
+            case TRUE:
+                consume(kind);
+                buildTree(NodeKind.TRUE, 0);
+                break;
+            case FALSE:
+                consume(kind);
+                buildTree(NodeKind.FALSE, 0);
+                break;
+            case NIL:
+                consume(kind);
+                buildTree(NodeKind.NIL, 0);
+                break;
+            case DUMMY:
+                consume(kind);
+                buildTree(NodeKind.DUMMY, 0);
+                break;
+            // Syntax error
+            default:
+                throw new RuntimeException("Syntax error in line " + line() + ": Identifier, Integer, String, 'true', 'false', 'nil', 'dummy' or '(' expected");
         }
     }
 
@@ -416,10 +699,10 @@ public class Parser {
         // D -> Da
         parseDa();
         // D -> 'within' D
-        if (currentToken().getValue().equals("within")) {
-            consume("within");
+        if (kind() == TokenKind.WITHIN) {
+            consume(TokenKind.WITHIN);
             parseD();
-            buildTree("within", 2);
+            buildTree(NodeKind.WITHIN, 2);
         }
     }
 
@@ -430,24 +713,38 @@ public class Parser {
 
         // Da -> Dr ('and' Dr)+
         int n = 0;
-        while (currentToken().getValue().equals("and")) {
-            consume("and");
+        while (kind() == TokenKind.AND) {
+            consume(TokenKind.AND);
             parseDr();
             n++;
         }
 
         if (n > 0) {
-            buildTree("and", n + 1);
+            buildTree(NodeKind.AND, n + 1);
         }
     }
 
     private void parseDr() {
 
+        // Reuse the definition parsed here last time if its tokens did not change
+        if (incremental != null && incremental.reuse(IncrementalParser.DEFINITION, stack)) {
+            return;
+        }
+
+        parseDefinition();
+
+        if (incremental != null) {
+            incremental.record(stack.peek());
+        }
+    }
+
+    private void parseDefinition() {
+
         // Dr -> 'rec' Db
-        if (currentToken().getValue().equals("rec")) {
-            consume("rec");
+        if (kind() == TokenKind.REC) {
+            consume(TokenKind.REC);
             parseDb();
-            buildTree("rec", 1);
+            buildTree(NodeKind.REC, 1);
         }
         // Dr -> Db
         else {
@@ -457,120 +754,109 @@ public class Parser {
 
     private void parseDb() {
 
-        String value = currentToken().getValue();
-
         // Db -> '(' D ')'
-        if (value.equals("(")) {
-            consume("(");
+        if (kind() == TokenKind.LEFT_PAREN) {
+            consume(TokenKind.LEFT_PAREN);
             parseD();
 
-            if (currentToken().getValue().equals(")")) {
-                consume(")");
+            if (kind() == TokenKind.RIGHT_PAREN) {
+                consume(TokenKind.RIGHT_PAREN);
             } else {
-                throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": ')' expected");
+                throw new RuntimeException("Syntax error in line " + line() + ": ')' expected");
             }
         }
         // Db -> <IDENTIFIER>
-        else if (currentToken().getType().equals("<IDENTIFIER>")) {
-            consume(value);
-            buildTree("<ID:" + value + ">", 0);
+        else if (kind() == TokenKind.IDENTIFIER) {
+            buildIdentifier();
 
             // Db -> <IDENTIFIER> Vb+ '=' E
-            if (currentToken().getValue().equals(",") || currentToken().getValue().equals("=")) {
+            if (kind() == TokenKind.COMMA || kind() == TokenKind.EQUALS) {
                 parseVl();
-                consume("=");
+                consume(TokenKind.EQUALS);
                 parseE();
-                buildTree("=", 2);
+                buildTree(NodeKind.EQUALS, 2);
             }
             // Db -> Vl '=' E
             else {
                 int n = 0;
 
-                while (currentToken().getType().equals("<IDENTIFIER>") || currentToken().getValue().equals("(")) {
+                while (kind() == TokenKind.IDENTIFIER || kind() == TokenKind.LEFT_PAREN) {
                     parseVb();
                     n++;
                 }
 
                 if (n == 0) {
-                    throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": Identifier or '(' expected");
+                    throw new RuntimeException("Syntax error in line " + line() + ": Identifier or '(' expected");
                 }
 
-                if (currentToken().getValue().equals("=")) {
-                    consume("=");
+                if (kind() == TokenKind.EQUALS) {
+                    consume(TokenKind.EQUALS);
                     parseE();
-                    buildTree("function_form", n + 2);
+                    buildTree(NodeKind.FUNCTION_FORM, n + 2);
                 } else {
-                    throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": '=' expected");
+                    throw new RuntimeException("Syntax error in line " + line() + ": '=' expected");
                 }
             }
         } else {
-            throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": Identifier or '(' expected");
+            throw new RuntimeException("Syntax error in line " + line() + ": Identifier or '(' expected");
         }
     }
 
-    private void parseVb() {
-
-        String value1 = currentToken().getValue();
+    void parseVb() {
 
         // Vb -> <IDENTIFIER>
-        if (currentToken().getType().equals("<IDENTIFIER>")) {
-            consume(value1);
-            buildTree("<ID:" + value1 + ">", 0);
+        if (kind() == TokenKind.IDENTIFIER) {
+            buildIdentifier();
 
         }
         // Vb -> '(' Vl ')'
-        else if (value1.equals("(")) {
-            consume("(");
-
-            String value2 = currentToken().getValue();
+        else if (kind() == TokenKind.LEFT_PAREN) {
+            consume(TokenKind.LEFT_PAREN);
 
             // Vb -> '(' ')'
-            if (value2.equals(")")) {
-                consume(")");
-                buildTree("()", 0);
+            if (kind() == TokenKind.RIGHT_PAREN) {
+                consume(TokenKind.RIGHT_PAREN);
+                buildTree(NodeKind.EMPTY_PARAMETER, 0);
             }
             // Vb -> '(' Vl ')'
-            else if (currentToken().getType().equals("<IDENTIFIER>")) {
-                consume(value2);
-                buildTree("<ID:" + value2 + ">", 0);
+            else if (kind() == TokenKind.IDENTIFIER) {
+                buildIdentifier();
                 parseVl();
 
-                if (currentToken().getValue().equals(")")) {
-                    consume(")");
+                if (kind() == TokenKind.RIGHT_PAREN) {
+                    consume(TokenKind.RIGHT_PAREN);
                 } else {
-                    throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": ')' expected");
+                    throw new RuntimeException("Syntax error in line " + line() + ": ')' expected");
                 }
             } else {
-                throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": Identifier or ')' expected");
+                throw new RuntimeException("Syntax error in line " + line() + ": Identifier or ')' expected");
             }
         }
         // Syntax error
         else {
-            throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": Identifier or '(' expected");
+            throw new RuntimeException("Syntax error in line " + line() + ": Identifier or '(' expected");
         }
     }
 
-    private void parseVl() {
+    void parseVl() {
 
         int n = 0;
 
         // Vl -> <IDENTIFIER> (',' <IDENTIFIER>)*
-        while (currentToken().getValue().equals(",")) {
-            consume(",");
+        while (kind() == TokenKind.COMMA) {
+            consume(TokenKind.COMMA);
 
-            if (currentToken().getType().equals("<IDENTIFIER>")) {
-                String value = currentToken().getValue();
-                consume(value);
-                buildTree("<ID:" + value + ">", 0);
+            if (kind() == TokenKind.IDENTIFIER) {
+                buildIdentifier();
                 n++;
             } else {
-                throw new RuntimeException("Syntax error in line " + currentToken().getLine() + ": Identifier expected");
+                throw new RuntimeException("Syntax error in line " + line() + ": Identifier expected");
             }
         }
 
         if (n > 0) {
-            buildTree(",", n + 1);
+            buildTree(NodeKind.COMMA, n + 1);
         }
     }
 
-}
\ No newline at end of file
+}
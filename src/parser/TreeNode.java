@@ -0,0 +1,25 @@
+package parser;
+
+import java.util.List;
+
+// Read-only view of a tree node, implemented by Node and by the nodes of an AstArena
+public interface TreeNode {
+
+    NodeKind getKind();
+
+    // Printed label, e.g. "gamma" or "<ID:x>"
+    String getValue();
+
+    // Name of an identifier, or the source text of an integer or string literal
+    String getText();
+
+    // Symbol id of an identifier in Symbols.GLOBAL
+    int getSymbol();
+
+    int getIntValue();
+
+    // Contents of a string literal without its quotes
+    String getStringValue();
+
+    List<? extends TreeNode> getChildren();
+}
@@ -0,0 +1,183 @@
+package parser;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+// Prints trees without recursion through one large buffer, leaving the nodes untouched.
+// The text format is the one of Node.preorderTraversal: one node per line, indented by a dot per level.
+// The indentation is copied from one cached run of dots instead of being built for every line.
+public class TreePrinter {
+    private static final String NEW_LINE = System.lineSeparator();
+
+    private final Writer out;
+    private char[] dots = new char[0];
+
+    // Nodes still to be printed with their depths; a negative depth marks the end of a node's children in JSON
+    private Object[] pending = new Object[64];
+    private int[] depths = new int[64];
+    private int count;
+
+    public TreePrinter(OutputStream out) {
+        this(new OutputStreamWriter(out));
+    }
+
+    public TreePrinter(Writer out) {
+        this.out = new BufferedWriter(out, 1 << 16);
+    }
+
+    // Print a tree in the text format
+    public void print(TreeNode root) {
+        try {
+            push(root, 0);
+            while (count > 0) {
+                count--;
+                TreeNode node = (TreeNode) pending[count];
+                int depth = depths[count];
+                pending[count] = null;
+
+                indent(depth);
+                out.write(node.getValue());
+                out.write(NEW_LINE);
+
+                List<? extends TreeNode> children = node.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    push(children.get(i), depth + 1);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Print the tree of an arena in the text format, walking its arrays directly
+    public void print(AstArena arena) {
+        if (arena.root() < 0) {
+            return;
+        }
+        try {
+            int[] nodes = new int[64];
+            int[] nodeDepths = new int[64];
+            int size = 0;
+            nodes[size] = arena.root();
+            nodeDepths[size++] = 0;
+            while (size > 0) {
+                size--;
+                int node = nodes[size];
+                int depth = nodeDepths[size];
+
+                indent(depth);
+                out.write(arena.value(node));
+                out.write(NEW_LINE);
+
+                // Children go on in reverse, so the first is printed first
+                int children = arena.childCount(node);
+                if (size + children > nodes.length) {
+                    nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, size + children));
+                    nodeDepths = Arrays.copyOf(nodeDepths, nodes.length);
+                }
+                size += children;
+                int slot = size - 1;
+                for (int child = arena.firstChild(node); child >= 0; child = arena.nextSibling(child)) {
+                    nodes[slot] = child;
+                    nodeDepths[slot--] = depth + 1;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Print a tree as JSON on one line: {"kind":"LET","children":[...]}, with "text" for identifiers and literals
+    public void printJson(TreeNode root) {
+        try {
+            push(root, 0);
+            boolean first = true;
+            while (count > 0) {
+                count--;
+                Object entry = pending[count];
+                int depth = depths[count];
+                pending[count] = null;
+
+                if (depth < 0) {
+                    out.write("]}");
+                    first = false;
+                    continue;
+                }
+                TreeNode node = (TreeNode) entry;
+                if (!first) {
+                    out.write(',');
+                }
+                out.write("{\"kind\":\"");
+                out.write(node.getKind().name());
+                out.write('"');
+                if (node.getKind().hasPayload()) {
+                    out.write(",\"text\":");
+                    writeJsonString(node.getText());
+                }
+
+                List<? extends TreeNode> children = node.getChildren();
+                if (children.isEmpty()) {
+                    out.write('}');
+                    first = false;
+                } else {
+                    out.write(",\"children\":[");
+                    first = true;
+                    push(null, -1);
+                    for (int i = children.size() - 1; i >= 0; i--) {
+                        push(children.get(i), depth + 1);
+                    }
+                }
+            }
+            out.write(NEW_LINE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void push(Object node, int depth) {
+        if (count == pending.length) {
+            pending = Arrays.copyOf(pending, count * 2);
+            depths = Arrays.copyOf(depths, count * 2);
+        }
+        pending[count] = node;
+        depths[count++] = depth;
+    }
+
+    private void indent(int depth) throws IOException {
+        if (depth > dots.length) {
+            dots = new char[Math.max(depth, dots.length * 2)];
+            Arrays.fill(dots, '.');
+        }
+        out.write(dots, 0, depth);
+    }
+
+    private void writeJsonString(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,17 @@
+package scanner;
+
+// Finds where a run of characters that the lexer skips over in bulk ends.
+// Every method returns the index of the first character in [from, to) outside the run, or 'to'.
+public interface CharScanner {
+
+    // Spaces, tabs and carriage returns; newlines are left to the lexer so it can count lines
+    int skipBlanks(char[] buffer, int from, int to);
+
+    // Letters, digits and underscores
+    int skipIdentifierChars(char[] buffer, int from, int to);
+
+    int skipDigits(char[] buffer, int from, int to);
+
+    // Everything up to the next newline, e.g. the body of a comment
+    int skipToNewline(char[] buffer, int from, int to);
+}
@@ -1,8 +1,11 @@
 package scanner;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 
 public class LexicalAnalyzer {
     private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
@@ -10,117 +13,324 @@ public class LexicalAnalyzer {
     private static final String UNDERSCORE = "_";
     private static final String OPERATORS = "+-*<>&.@/:=~|$!#%^_[]{}\"?";
     private static final String PUNCTUATION = "();,";
-    private static final Set<String> KEYWORDS = Set.of(
-            "let", "in", "where", "rec", "fn", "aug", "or", "not", "gr", "ge", "ls", "le",
-            "eq", "ne", "true", "false", "nil", "dummy", "within", "and"
-    );
+    private static final TokenKind[] KEYWORDS = {
+            TokenKind.LET, TokenKind.IN, TokenKind.WHERE, TokenKind.REC, TokenKind.FN, TokenKind.AUG,
+            TokenKind.OR, TokenKind.NOT, TokenKind.GR, TokenKind.GE, TokenKind.LS, TokenKind.LE,
+            TokenKind.EQ, TokenKind.NE, TokenKind.TRUE, TokenKind.FALSE, TokenKind.NIL, TokenKind.DUMMY,
+            TokenKind.WITHIN, TokenKind.AND
+    };
 
+    // Character classes, looked up by character code instead of searching the strings above
+    private static final byte OTHER = 0;
+    private static final byte LETTER = 1;
+    private static final byte DIGIT = 2;
+    private static final byte OPERATOR = 3;
+    private static final byte PUNCTUATION_MARK = 4;
+    private static final byte SPACE = 5;
+    private static final byte[] CHAR_CLASSES = new byte[128];
+
+    // Perfect hash of the keywords: (first + 13 * second + length) & 63 is distinct for every keyword
+    private static final TokenKind[] KEYWORD_TABLE = new TokenKind[64];
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            if (LETTERS.indexOf(c) != -1) {
+                CHAR_CLASSES[c] = LETTER;
+            } else if (DIGITS.indexOf(c) != -1) {
+                CHAR_CLASSES[c] = DIGIT;
+            } else if (PUNCTUATION.indexOf(c) != -1) {
+                CHAR_CLASSES[c] = PUNCTUATION_MARK;
+            } else if (Character.isWhitespace(c)) {
+                CHAR_CLASSES[c] = SPACE;
+            } else if (OPERATORS.indexOf(c) != -1) {
+                CHAR_CLASSES[c] = OPERATOR;
+            }
+        }
+
+        for (TokenKind keyword : KEYWORDS) {
+            String text = keyword.getText();
+            int slot = keywordSlot(text.charAt(0), text.charAt(1), text.length());
+            if (KEYWORD_TABLE[slot] != null) {
+                throw new IllegalStateException("Keyword hash collision: " + text);
+            }
+            KEYWORD_TABLE[slot] = keyword;
+        }
+    }
+
+    // Bulk scanner for runs of blanks, identifier characters, digits and comment bodies
+    private static final CharScanner DEFAULT_RUNS = loadCharScanner();
+
+    // -Drpal.lexer=parallel lexes large files up front in chunks on the common ForkJoinPool
+    private static final boolean PARALLEL = "parallel".equals(System.getProperty("rpal.lexer"));
+    // Smaller files take longer to split than to lex; this gives ParallelLexer at least four chunks
+    private static final long PARALLEL_THRESHOLD = 1 << 20;
+
+    private final SourceReader reader;
+    private final Symbols symbols;
+    private CharScanner runs = DEFAULT_RUNS;
+    private int lineNumber;
+    private int symbol;
+    private int stopAt = Integer.MAX_VALUE;
+
+    // Constructor for a lexer that pulls characters from the given reader
+    public LexicalAnalyzer(SourceReader reader) {
+        this(reader, Symbols.GLOBAL);
+    }
+
+    public LexicalAnalyzer(SourceReader reader, Symbols symbols) {
+        this.reader = reader;
+        this.symbols = symbols;
+        this.lineNumber = 1;
+    }
+
+    // Tokens of a source file, lexed lazily while the parser pulls them. With -Drpal.lexer=parallel a file of at least
+    // PARALLEL_THRESHOLD bytes is lexed by ParallelLexer before parsing starts, so a lexical error anywhere in it is
+    // reported before any syntax error.
+    public static TokenCursor open(FileChannel channel) throws IOException {
+        if (PARALLEL && channel.size() >= PARALLEL_THRESHOLD) {
+            // Decoded like SourceReader.open, replacing malformed input
+            CharBuffer chars = Charset.defaultCharset().decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return ParallelLexer.scanParallel(Arrays.copyOf(chars.array(), chars.limit())).cursor();
+        }
+        return new TokenStream(new LexicalAnalyzer(SourceReader.open(channel)));
+    }
 
     public static List<Token> tokenize(String input) {
-        List<Token> tokens = new ArrayList<>();
-        int lineNumber = 1;
-        int i = 0;
+        return scan(input).toTokens();
+    }
 
-        while (i < input.length()) {
-            char currentChar = input.charAt(i);
+    // Tokenize the whole input into a compact token buffer
+    public static TokenBuffer scan(String input) {
+        return scan(input.toCharArray());
+    }
 
-            // Separating identifiers
-            if (isLetter(currentChar)) {
-                StringBuilder currentToken = new StringBuilder();
-                currentToken.append(currentChar);
-                i++;
-
-                while (i < input.length() && (isLetter(input.charAt(i)) || isDigit(input.charAt(i)) || input.charAt(i) == '_')) {
-                    currentToken.append(input.charAt(i));
-                    i++;
+    public static TokenBuffer scan(char[] source) {
+        return scan(source, DEFAULT_RUNS);
+    }
+
+    // Tokenize with a specific run scanner, e.g. to compare the scalar and vector scanners
+    public static TokenBuffer scan(char[] source, CharScanner runs) {
+        LexicalAnalyzer lexer = new LexicalAnalyzer(new SourceReader(source));
+        lexer.runs = runs;
+        TokenBuffer tokens = new TokenBuffer(source);
+        TokenKind kind;
+
+        while ((kind = lexer.scanToken()) != null) {
+            tokens.add(kind, lexer.reader.markIndex(), lexer.reader.markedLength(), lexer.lineNumber, lexer.symbol);
+            lexer.reader.clearMark();
+        }
+
+        return tokens;
+    }
+
+    // Tokenize the tokens that start in [from, to), numbering lines from firstLine.
+    // The last token may run past 'to' (a string spanning lines); scanning stops at the first token after it.
+    static TokenBuffer scanRange(char[] source, int from, int to, int firstLine, Symbols symbols) {
+        LexicalAnalyzer lexer = new LexicalAnalyzer(new SourceReader(source, from), symbols);
+        lexer.lineNumber = firstLine;
+        lexer.stopAt = to;
+        TokenBuffer tokens = new TokenBuffer(source, Math.max(16, (to - from) / 4));
+        TokenKind kind;
+
+        while ((kind = lexer.scanToken()) != null) {
+            tokens.add(kind, lexer.reader.markIndex(), lexer.reader.markedLength(), lexer.lineNumber, lexer.symbol);
+            lexer.reader.clearMark();
+        }
+
+        return tokens;
+    }
+
+    // Re-tokenize 'text' after [offset, offset + removedLength) of it was replaced by insertedLength characters,
+    // updating the tokens of the old text in place. Scanning starts at the end of the last token before the edit
+    // and stops as soon as a token starts where an old token after the edit started; the tokens from there on are
+    // only shifted. Into an empty buffer this tokenizes the whole text.
+    public static TokenEdit relex(TokenGapBuffer tokens, SourceText text, int offset, int removedLength,
+                                  int insertedLength) {
+        int shift = insertedLength - removedLength;
+        int size = tokens.size();
+
+        // Tokens that end before the edit are unaffected; their terminating character is unchanged
+        int firstChanged = 0;
+        int high = size;
+        while (firstChanged < high) {
+            int middle = (firstChanged + high) >>> 1;
+            if (tokens.start(middle) + tokens.length(middle) < offset) {
+                firstChanged = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int restart = firstChanged == 0 ? 0 : tokens.start(firstChanged - 1) + tokens.length(firstChanged - 1);
+        LexicalAnalyzer lexer = new LexicalAnalyzer(new SourceReader(text, restart), tokens.symbols());
+        lexer.lineNumber = firstChanged == 0 ? 1 : tokens.line(firstChanged - 1);
+
+        // The new tokens; their text stays in 'text'
+        TokenBuffer added = new TokenBuffer(null, 16);
+        int oldIndex = firstChanged;
+        TokenKind kind;
+        while ((kind = lexer.scanToken()) != null) {
+            int start = (int) lexer.reader.markOffset();
+
+            // Past the inserted text, look for an old token at the same position
+            if (start >= offset + insertedLength) {
+                int oldStart = start - shift;
+                while (oldIndex < size && tokens.start(oldIndex) < oldStart) {
+                    oldIndex++;
+                }
+                if (oldIndex < size && tokens.start(oldIndex) == oldStart) {
+                    tokens.replace(firstChanged, oldIndex, added, shift, lexer.lineNumber - tokens.line(oldIndex));
+                    return new TokenEdit(firstChanged, oldIndex, firstChanged + added.size());
                 }
+            }
 
-                String tokenValue = currentToken.toString();
-                if (isKeyword(tokenValue)) {
-                    tokens.add(new Token(tokenValue, "<KEYWORD>", lineNumber));
-                } else {
-                    tokens.add(new Token(tokenValue, "<IDENTIFIER>", lineNumber));
+            added.add(kind, start, lexer.reader.markedLength(), lexer.lineNumber, lexer.symbol);
+            lexer.reader.clearMark();
+        }
+
+        // Scanned to the end: even the end of input moved
+        tokens.replace(firstChanged, size, added, shift, 0);
+        return new TokenEdit(firstChanged, size + 1, firstChanged + added.size() + 1);
+    }
+
+    // Symbol id of the identifier last returned by nextToken, or -1
+    int symbol() {
+        return symbol;
+    }
+
+    // Scan the next token from the reader, or return null at the end of the input
+    public Token nextToken() {
+        TokenKind kind = scan();
+        return kind != null ? new Token(text(kind), kind, lineNumber) : null;
+    }
+
+    // Scan the next token without creating a Token or its text, or return null at the end of the input.
+    // The token's characters stay marked in the reader's window until the next call, for text.
+    TokenKind scan() {
+        reader.clearMark();
+        return scanToken();
+    }
+
+    // Text of the token last returned by scan; only integers and strings need a new String
+    String text(TokenKind kind) {
+        if (kind.getText() != null) {
+            return kind.getText();
+        } else if (kind == TokenKind.IDENTIFIER) {
+            return symbols.name(symbol);
+        }
+        return new String(reader.buffer(), reader.markIndex(), reader.markedLength());
+    }
+
+    // Line of the token last returned by scan
+    int line() {
+        return lineNumber;
+    }
+
+    // Scan one token and leave the reader's mark around it.
+    // For identifiers the interned symbol id is left in 'symbol'.
+    private TokenKind scanToken() {
+        int c;
+        symbol = -1;
+
+        while ((c = reader.peek(0)) != -1 && reader.position() < stopAt) {
+            char currentChar = (char) c;
+            byte charClass = classOf(currentChar);
+
+            // Separating identifiers
+            if (charClass == LETTER) {
+                reader.mark();
+                reader.advance();
+
+                do {
+                    reader.skipTo(runs.skipIdentifierChars(reader.buffer(), reader.position(), reader.limit()));
+                } while (reader.position() == reader.limit() && reader.peek(0) != -1);
+
+                TokenKind keyword = keyword(reader.buffer(), reader.markIndex(), reader.markedLength());
+                if (keyword != null) {
+                    return keyword;
                 }
+                symbol = symbols.intern(reader.buffer(), reader.markIndex(), reader.markedLength());
+                return TokenKind.IDENTIFIER;
             }
             // Separating integers
-            else if (isDigit(currentChar)) {
-                StringBuilder currentToken = new StringBuilder();
-                currentToken.append(currentChar);
-                i++;
-
-                while (i < input.length() && isDigit(input.charAt(i))) {
-                    currentToken.append(input.charAt(i));
-                    i++;
-                }
+            else if (charClass == DIGIT) {
+                reader.mark();
+                reader.advance();
+
+                do {
+                    reader.skipTo(runs.skipDigits(reader.buffer(), reader.position(), reader.limit()));
+                } while (reader.position() == reader.limit() && reader.peek(0) != -1);
 
-                tokens.add(new Token(currentToken.toString(), "<INTEGER>", lineNumber));
+                return TokenKind.INTEGER;
             }
             // Separating comments (//)
-            else if (currentChar == '/' && i + 1 < input.length() && input.charAt(i + 1) == '/') {
-                i += 2; // Skip the "//"
-                while (i < input.length() && input.charAt(i) != '\n') {
-                    i++;
-                }
+            else if (currentChar == '/' && reader.peek(1) == '/') {
+                reader.advance(); // Skip the "//"
+                reader.advance();
+                do {
+                    reader.skipTo(runs.skipToNewline(reader.buffer(), reader.position(), reader.limit()));
+                } while (reader.position() == reader.limit() && reader.peek(0) != -1);
             }
             // Separating strings (enclosed in single quotes)
             else if (currentChar == '\'') {
-                StringBuilder currentToken = new StringBuilder();
-                currentToken.append(currentChar);
-                i++;
+                reader.mark();
+                reader.advance();
+                boolean closed = false;
 
-                while (i < input.length()) {
-                    char nextChar = input.charAt(i);
-                    if (nextChar == '\n') {
+                while ((c = reader.peek(0)) != -1) {
+                    if (c == '\n') {
                         lineNumber++;
                     }
 
-                    if (nextChar == '\'') {
-                        currentToken.append(nextChar);
-                        i++;
+                    reader.advance();
+                    if (c == '\'') {
+                        closed = true;
                         break;
-                    } else {
-                        currentToken.append(nextChar);
-                        i++;
                     }
                 }
 
-                if (currentToken.length() == 1 || currentToken.charAt(currentToken.length() - 1) != '\'') {
+                if (!closed) {
                     throw new RuntimeException("String is not closed properly at line " + lineNumber);
                 }
 
-                tokens.add(new Token(currentToken.toString(), "<STRING>", lineNumber));
+                return TokenKind.STRING;
             }
             // Separating punctuation
-            else if (PUNCTUATION.indexOf(currentChar) != -1) {
-                tokens.add(new Token(String.valueOf(currentChar), "<PUNCTUATION>", lineNumber));
-                i++;
+            else if (charClass == PUNCTUATION_MARK) {
+                reader.mark();
+                reader.advance();
+                switch (currentChar) {
+                    case '(':
+                        return TokenKind.LEFT_PAREN;
+                    case ')':
+                        return TokenKind.RIGHT_PAREN;
+                    case ';':
+                        return TokenKind.SEMICOLON;
+                    default:
+                        return TokenKind.COMMA;
+                }
             }
             // Separating spaces
-            else if (Character.isWhitespace(currentChar)) {
+            else if (charClass == SPACE || (currentChar >= 128 && Character.isWhitespace(currentChar))) {
                 if (currentChar == '\n') {
                     lineNumber++;
                 }
-                i++;
-            }
-
-            // Separating newlines
-            else if (currentChar == '\n') {
-                lineNumber++;
-                i++;
+                reader.advance();
+                reader.skipTo(runs.skipBlanks(reader.buffer(), reader.position(), reader.limit()));
             }
             // Separating operators
-            else if (OPERATORS.indexOf(currentChar) != -1) {
+            else if (charClass == OPERATOR) {
+                reader.mark();
                 // Handle specific case for '->'
-                if (currentChar == '-' && i + 1 < input.length() && input.charAt(i + 1) == '>') {
-                    tokens.add(new Token("->", "<OPERATOR>", lineNumber));
-                    i += 2;
+                if (currentChar == '-' && reader.peek(1) == '>') {
+                    reader.advance();
+                    reader.advance();
+                    return TokenKind.ARROW;
                 } else {
-                    StringBuilder currentToken = new StringBuilder();
-                    while (i < input.length() && OPERATORS.indexOf(input.charAt(i)) != -1) {
-                        currentToken.append(input.charAt(i));
-                        i++;
+                    while ((c = reader.peek(0)) != -1 && isOperator((char) c)) {
+                        reader.advance();
                     }
-                    tokens.add(new Token(currentToken.toString(), "<OPERATOR>", lineNumber));
+                    return operator(reader.buffer(), reader.markIndex(), reader.markedLength());
                 }
             }
             // Invalid characters
@@ -129,27 +339,101 @@ public class LexicalAnalyzer {
             }
         }
 
-        // Mark the first and last tokens
-        if (!tokens.isEmpty()) {
-            tokens.get(0).makeFirstToken();
-            tokens.get(tokens.size() - 1).makeLastToken();
+        return null;
+    }
+
+    // Use the vector scanner if it was compiled and the jdk.incubator.vector module is present
+    private static CharScanner loadCharScanner() {
+        if (!"scalar".equals(System.getProperty("rpal.scanner"))) {
+            try {
+                return (CharScanner) Class.forName("scanner.VectorCharScanner").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Fall through to the scalar scanner
+            }
         }
+        return new ScalarCharScanner();
+    }
 
-        return tokens;
+    // Name of the run scanner in use, "vector" or "scalar"
+    public static String charScannerName() {
+        return DEFAULT_RUNS instanceof ScalarCharScanner ? "scalar" : "vector";
+    }
+
+    private static byte classOf(char c) {
+        return c < 128 ? CHAR_CLASSES[c] : OTHER;
     }
 
-    // Helper method to check if a character is a letter
-    private static boolean isLetter(char c) {
-        return LETTERS.indexOf(c) != -1;
+    private static int keywordSlot(char first, char second, int length) {
+        return (first + 13 * second + length) & 63;
     }
 
-    // Helper method to check if a character is a digit
-    private static boolean isDigit(char c) {
-        return DIGITS.indexOf(c) != -1;
+    // Keyword spelled by buffer[start, start + length), or null if it is an ordinary identifier
+    private static TokenKind keyword(char[] buffer, int start, int length) {
+        if (length < 2 || length > 6) {
+            return null;
+        }
+        TokenKind candidate = KEYWORD_TABLE[keywordSlot(buffer[start], buffer[start + 1], length)];
+        if (candidate == null) {
+            return null;
+        }
+        String text = candidate.getText();
+        if (text.length() != length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != buffer[start + i]) {
+                return null;
+            }
+        }
+        return candidate;
+    }
+
+    // Kind of the operator spelled by buffer[start, start + length)
+    private static TokenKind operator(char[] buffer, int start, int length) {
+        char first = buffer[start];
+        if (length == 1) {
+            switch (first) {
+                case '|':
+                    return TokenKind.BAR;
+                case '.':
+                    return TokenKind.DOT;
+                case '=':
+                    return TokenKind.EQUALS;
+                case '&':
+                    return TokenKind.AMPERSAND;
+                case '+':
+                    return TokenKind.PLUS;
+                case '-':
+                    return TokenKind.MINUS;
+                case '*':
+                    return TokenKind.STAR;
+                case '/':
+                    return TokenKind.SLASH;
+                case '@':
+                    return TokenKind.AT;
+                case '>':
+                    return TokenKind.GREATER;
+                case '<':
+                    return TokenKind.LESS;
+                default:
+                    return TokenKind.OPERATOR;
+            }
+        }
+        if (length == 2) {
+            char second = buffer[start + 1];
+            if (first == '*' && second == '*') {
+                return TokenKind.POWER;
+            } else if (first == '>' && second == '=') {
+                return TokenKind.GREATER_EQUAL;
+            } else if (first == '<' && second == '=') {
+                return TokenKind.LESS_EQUAL;
+            }
+        }
+        return TokenKind.OPERATOR;
     }
 
-    // Helper method to check if a string is a keyword
-    private static boolean isKeyword(String s) {
-        return KEYWORDS.contains(s);
+    // Helper method to check if a character can be part of an operator
+    private static boolean isOperator(char c) {
+        return classOf(c) == OPERATOR;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,164 @@
+package scanner;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Tokenizes large sources in chunks on a ForkJoinPool.
+//
+// Chunks start right after a newline. Outside a string literal that is always a token boundary
+// (comments end at the newline), so every chunk is lexed on the assumption that it does not start
+// inside a string. While stitching the chunks together in order, a chunk whose predecessor ended
+// with a string running into it is lexed again sequentially from the end of that string.
+// The result is identical to LexicalAnalyzer.scan, including line numbers and symbol ids.
+public class ParallelLexer {
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 18;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public ParallelLexer(ForkJoinPool pool, int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    public ParallelLexer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public static TokenBuffer scanParallel(char[] source) {
+        return new ParallelLexer().scan(source);
+    }
+
+    public TokenBuffer scan(char[] source) {
+        int[] chunkStarts = splitPoints(source);
+        int chunks = chunkStarts.length - 1;
+        if (chunks < 2) {
+            return LexicalAnalyzer.scan(source);
+        }
+
+        // First pass: count the newlines in each chunk to get the line each chunk starts on
+        int[] firstLines = new int[chunks];
+        pool.invoke(new ChunkTask(0, chunks, chunk -> firstLines[chunk] = countNewlines(source, chunkStarts[chunk], chunkStarts[chunk + 1])));
+        int line = 1;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int newlines = firstLines[chunk];
+            firstLines[chunk] = line;
+            line += newlines;
+        }
+
+        // Second pass: lex every chunk with its own symbol table
+        TokenBuffer[] results = new TokenBuffer[chunks];
+        RuntimeException[] errors = new RuntimeException[chunks];
+        Symbols[] symbols = new Symbols[chunks];
+        pool.invoke(new ChunkTask(0, chunks, chunk -> {
+            symbols[chunk] = new Symbols(source);
+            try {
+                results[chunk] = LexicalAnalyzer.scanRange(source, chunkStarts[chunk], chunkStarts[chunk + 1], firstLines[chunk], symbols[chunk]);
+            } catch (RuntimeException e) {
+                errors[chunk] = e;
+            }
+        }));
+
+        // Stitch the chunks in order, interning identifiers in the order the sequential lexer would
+        int total = 0;
+        for (TokenBuffer result : results) {
+            total += result != null ? result.size() : 0;
+        }
+        TokenBuffer tokens = new TokenBuffer(source, Math.max(16, total));
+        int resumeAt = 0;
+        int resumeLine = 1;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            TokenBuffer result = results[chunk];
+            RuntimeException error = errors[chunk];
+            Symbols chunkSymbols = symbols[chunk];
+
+            if (resumeAt > chunkStarts[chunk]) {
+                // The previous chunk ended inside this one: lex it again from where the previous one stopped
+                chunkSymbols = new Symbols(source);
+                error = null;
+                try {
+                    result = LexicalAnalyzer.scanRange(source, resumeAt, chunkStarts[chunk + 1], resumeLine, chunkSymbols);
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+
+            int[] symbolMap = new int[chunkSymbols.size()];
+            Arrays.fill(symbolMap, -1);
+            tokens.addRemapped(result, chunkSymbols, Symbols.GLOBAL, symbolMap);
+
+            if (result.size() > 0) {
+                int last = result.size() - 1;
+                resumeAt = result.start(last) + result.length(last);
+                resumeLine = result.line(last);
+            }
+        }
+
+        return tokens;
+    }
+
+    // Chunk boundaries: roughly every chunkSize characters, moved forward to just after a newline
+    private int[] splitPoints(char[] source) {
+        int[] points = new int[source.length / chunkSize + 2];
+        int count = 0;
+        points[count++] = 0;
+
+        int next = chunkSize;
+        while (next < source.length) {
+            while (next < source.length && source[next - 1] != '\n') {
+                next++;
+            }
+            if (next >= source.length) {
+                break;
+            }
+            points[count++] = next;
+            next += chunkSize;
+        }
+
+        points[count++] = source.length;
+        return Arrays.copyOf(points, count);
+    }
+
+    private static int countNewlines(char[] source, int from, int to) {
+        int newlines = 0;
+        for (int i = from; i < to; i++) {
+            if (source[i] == '\n') {
+                newlines++;
+            }
+        }
+        return newlines;
+    }
+
+    private interface ChunkAction {
+        void run(int chunk);
+    }
+
+    // Runs an action for chunks [from, to), splitting the range in halves until single chunks remain.
+    // Tasks only live inside one scan and are never serialized.
+    @SuppressWarnings("serial")
+    private static class ChunkTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final ChunkAction action;
+
+        ChunkTask(int from, int to, ChunkAction action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                action.run(from);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(from, middle, action), new ChunkTask(middle, to, action));
+            }
+        }
+    }
+}
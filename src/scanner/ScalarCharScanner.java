@@ -0,0 +1,45 @@
+package scanner;
+
+// Character-at-a-time scanner, used when the vector API is not available
+public class ScalarCharScanner implements CharScanner {
+
+    @Override
+    public int skipBlanks(char[] buffer, int from, int to) {
+        int i = from;
+        while (i < to && (buffer[i] == ' ' || buffer[i] == '\t' || buffer[i] == '\r')) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public int skipIdentifierChars(char[] buffer, int from, int to) {
+        int i = from;
+        while (i < to && isIdentifierChar(buffer[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public int skipDigits(char[] buffer, int from, int to) {
+        int i = from;
+        while (i < to && buffer[i] >= '0' && buffer[i] <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public int skipToNewline(char[] buffer, int from, int to) {
+        int i = from;
+        while (i < to && buffer[i] != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    static boolean isIdentifierChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
@@ -0,0 +1,242 @@
+package scanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+// Sliding character window over the source text.
+// Bytes are decoded on demand, so only one window of characters is held in memory at a time.
+public class SourceReader {
+    private static final int WINDOW_SIZE = 1 << 16;
+    private static final long MAP_REGION_SIZE = 1L << 26;
+    private static final int REFILL_THRESHOLD = 16;
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder;
+    private final SourceText text;
+    private int textPosition;
+    private ByteBuffer bytes;
+    private long mappedUpTo;
+    private boolean channelExhausted;
+    private boolean endOfInput;
+
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private int mark;
+    private long discarded;
+
+    // Reader over text that is already in memory
+    public SourceReader(CharSequence input) {
+        this(input.toString().toCharArray());
+    }
+
+    // Reader over a character array, which is used as the window without copying
+    public SourceReader(char[] input) {
+        this(input, 0);
+    }
+
+    // Reader over a character array that starts reading at the given offset
+    public SourceReader(char[] input, int start) {
+        this.channel = null;
+        this.decoder = null;
+        this.text = null;
+        this.buffer = input;
+        this.position = start;
+        this.limit = buffer.length;
+        this.mark = -1;
+        this.endOfInput = true;
+    }
+
+    // Reader over a text being edited, starting at the given offset; markOffset stays an offset into the text
+    public SourceReader(SourceText text, int start) {
+        this.channel = null;
+        this.decoder = null;
+        this.text = text;
+        this.textPosition = start;
+        this.buffer = new char[256];
+        this.mark = -1;
+        this.discarded = start;
+    }
+
+    // Reader over any byte channel, decoding with the given charset
+    public SourceReader(ReadableByteChannel channel, Charset charset) {
+        this.channel = channel;
+        this.text = null;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.buffer = new char[WINDOW_SIZE];
+        this.mark = -1;
+        if (channel instanceof FileChannel) {
+            this.bytes = ByteBuffer.allocate(0);
+        } else {
+            this.bytes = ByteBuffer.allocateDirect(WINDOW_SIZE);
+            this.bytes.flip();
+        }
+    }
+
+    // Reader over a file channel; the file is memory-mapped region by region instead of copied
+    public static SourceReader open(FileChannel channel) {
+        return new SourceReader(channel, Charset.defaultCharset());
+    }
+
+    // Returns the character 'ahead' positions from the current one, or -1 past the end of input
+    public int peek(int ahead) {
+        if (position + ahead >= limit && !fill(ahead)) {
+            return -1;
+        }
+        return buffer[position + ahead];
+    }
+
+    // Move past the current character
+    public void advance() {
+        position++;
+    }
+
+    // Index of the current character in the window
+    public int position() {
+        return position;
+    }
+
+    // Index just past the last character currently in the window
+    public int limit() {
+        return limit;
+    }
+
+    // Move forward to the given index in the window
+    public void skipTo(int index) {
+        position = index;
+    }
+
+    // Remember the current position as the start of a token
+    public void mark() {
+        mark = position;
+    }
+
+    // Text between the mark and the current position
+    public String marked() {
+        String text = new String(buffer, mark, position - mark);
+        mark = -1;
+        return text;
+    }
+
+    // Forget the mark without copying the marked text
+    public void clearMark() {
+        mark = -1;
+    }
+
+    // The character window; the marked text lies at [markIndex(), markIndex() + markedLength())
+    public char[] buffer() {
+        return buffer;
+    }
+
+    public int markIndex() {
+        return mark;
+    }
+
+    public int markedLength() {
+        return position - mark;
+    }
+
+    // Offset of the mark from the start of the whole input
+    public long markOffset() {
+        return discarded + mark;
+    }
+
+
+
+    // Decode more characters until at least 'ahead + 1' are available past the current position
+    private boolean fill(int ahead) {
+        while (position + ahead >= limit) {
+            if (endOfInput) {
+                return false;
+            }
+            compact();
+            if (text != null) {
+                copyMore();
+            } else {
+                decodeMore();
+            }
+        }
+        return true;
+    }
+
+    // Drop characters that are no longer needed, keeping the current token
+    private void compact() {
+        int keepFrom = mark >= 0 ? mark : position;
+        int kept = limit - keepFrom;
+        if (kept > buffer.length / 2) {
+            char[] larger = new char[buffer.length * 2];
+            System.arraycopy(buffer, keepFrom, larger, 0, kept);
+            buffer = larger;
+        } else {
+            System.arraycopy(buffer, keepFrom, buffer, 0, kept);
+        }
+        position -= keepFrom;
+        discarded += keepFrom;
+        if (mark >= 0) {
+            mark -= keepFrom;
+        }
+        limit = kept;
+    }
+
+    // Decode at least one more character into the free part of the window
+    private void decodeMore() {
+        CharBuffer out = CharBuffer.wrap(buffer, limit, buffer.length - limit);
+        try {
+            while (out.position() == limit) {
+                if (!channelExhausted && bytes.remaining() < REFILL_THRESHOLD) {
+                    readBytes();
+                }
+                decoder.decode(bytes, out, channelExhausted);
+                if (channelExhausted && !bytes.hasRemaining()) {
+                    decoder.flush(out);
+                    endOfInput = true;
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read source: " + e.getMessage(), e);
+        }
+        limit = out.position();
+    }
+
+    // Copy more of the edited text into the free part of the window
+    private void copyMore() {
+        int count = Math.min(buffer.length - limit, text.length() - textPosition);
+        text.getChars(textPosition, textPosition + count, buffer, limit);
+        textPosition += count;
+        limit += count;
+        endOfInput = textPosition == text.length();
+    }
+
+    // Fetch the next block of bytes, keeping any undecoded tail
+    private void readBytes() throws IOException {
+        if (channel instanceof FileChannel) {
+            FileChannel file = (FileChannel) channel;
+            long size = file.size();
+            // Map again from the first undecoded byte so a character split across regions stays whole
+            long start = mappedUpTo - bytes.remaining();
+            long length = Math.min(MAP_REGION_SIZE, size - start);
+            if (length > 0) {
+                bytes = file.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+            mappedUpTo = start + Math.max(length, 0);
+            channelExhausted = mappedUpTo >= size;
+            return;
+        }
+
+        bytes.compact();
+        int read = channel.read(bytes);
+        bytes.flip();
+        if (read < 0) {
+            channelExhausted = true;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package scanner;
+
+// Text that is edited repeatedly, kept as a gap buffer: the free space sits at the last edit,
+// so an edit only moves the characters between it and the previous edit.
+public class SourceText implements CharSequence {
+    private char[] chars;
+    private int gapStart;
+    private int gapEnd;
+
+    public SourceText(String text) {
+        this.chars = new char[text.length() + 64];
+        text.getChars(0, text.length(), chars, 0);
+        this.gapStart = text.length();
+        this.gapEnd = chars.length;
+    }
+
+    @Override
+    public int length() {
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars[index < gapStart ? index : index + gapEnd - gapStart];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return substring(start, end);
+    }
+
+    public String substring(int start, int end) {
+        if (end <= gapStart) {
+            return new String(chars, start, end - start);
+        } else if (start >= gapStart) {
+            return new String(chars, start + gapEnd - gapStart, end - start);
+        }
+        char[] copy = new char[end - start];
+        getChars(start, end, copy, 0);
+        return new String(copy);
+    }
+
+    // Copy the characters [start, end) into dst from dstBegin on
+    public void getChars(int start, int end, char[] dst, int dstBegin) {
+        if (start < gapStart) {
+            int before = Math.min(end, gapStart) - start;
+            System.arraycopy(chars, start, dst, dstBegin, before);
+            dstBegin += before;
+            start += before;
+        }
+        if (start < end) {
+            System.arraycopy(chars, start + gapEnd - gapStart, dst, dstBegin, end - start);
+        }
+    }
+
+    // Replace removedLength characters at offset with 'inserted'
+    public void replace(int offset, int removedLength, String inserted) {
+        moveGap(offset);
+        gapEnd += removedLength;
+        if (gapEnd - gapStart < inserted.length()) {
+            grow(inserted.length());
+        }
+        inserted.getChars(0, inserted.length(), chars, gapStart);
+        gapStart += inserted.length();
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, length());
+    }
+
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            System.arraycopy(chars, offset, chars, offset + gapEnd - gapStart, gapStart - offset);
+        } else if (offset > gapStart) {
+            System.arraycopy(chars, gapEnd, chars, gapStart, offset - gapStart);
+        }
+        gapEnd += offset - gapStart;
+        gapStart = offset;
+    }
+
+    private void grow(int needed) {
+        int after = chars.length - gapEnd;
+        char[] larger = new char[Math.max(chars.length * 2, gapStart + needed + after + 64)];
+        System.arraycopy(chars, 0, larger, 0, gapStart);
+        System.arraycopy(chars, gapEnd, larger, larger.length - after, after);
+        chars = larger;
+        gapEnd = larger.length - after;
+    }
+}
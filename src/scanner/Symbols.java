@@ -0,0 +1,137 @@
+package scanner;
+
+import java.util.Arrays;
+
+// Intern table for identifier names.
+// Names are looked up straight from the source characters, so a name that was seen before costs no allocation.
+public class Symbols {
+    // Table shared by every phase of the compiler
+    public static final Symbols GLOBAL = new Symbols();
+
+    // Set for a table that only refers to ranges of one source array instead of holding Strings
+    private final char[] source;
+
+    private String[] names;
+    private int[] starts;
+    private int[] lengths;
+    private int[] hashes;
+    private int[] slots;
+    private int size;
+
+    public Symbols() {
+        this(null);
+    }
+
+    // Table for a single source array; names are kept as ranges of it and only turned into Strings on request
+    public Symbols(char[] source) {
+        this.source = source;
+        this.names = new String[64];
+        this.starts = new int[64];
+        this.lengths = new int[64];
+        this.hashes = new int[64];
+        this.slots = new int[128];
+        Arrays.fill(slots, -1);
+    }
+
+    // Intern the characters buffer[start, start + length) and return the symbol id
+    public synchronized int intern(char[] buffer, int start, int length) {
+        int hash = hash(buffer, start, length);
+        int mask = slots.length - 1;
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot];
+            if (id == -1) {
+                return insert(slot, hash, buffer, start, length);
+            }
+            if (hashes[id] == hash && matches(id, buffer, start, length)) {
+                return id;
+            }
+        }
+    }
+
+    // Intern a name that is already a String
+    public int intern(String name) {
+        return intern(name.toCharArray(), 0, name.length());
+    }
+
+    // Intern symbol 'id' of another table into this one
+    public int intern(Symbols other, int id) {
+        if (other.source != null) {
+            return intern(other.source, other.starts[id], other.lengths[id]);
+        }
+        return intern(other.name(id));
+    }
+
+    // Canonical name of a symbol; the same String instance is returned for every occurrence
+    public synchronized String name(int id) {
+        if (names[id] == null) {
+            names[id] = new String(source, starts[id], lengths[id]);
+        }
+        return names[id];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private int insert(int slot, int hash, char[] buffer, int start, int length) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        if (source == buffer) {
+            starts[id] = start;
+            lengths[id] = length;
+        } else {
+            names[id] = new String(buffer, start, length);
+        }
+        hashes[id] = hash;
+        slots[slot] = id;
+
+        // Keep the table at most half full
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, -1);
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+        }
+    }
+
+    private static int hash(char[] buffer, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean matches(int id, char[] buffer, int start, int length) {
+        String name = names[id];
+        if (name == null) {
+            return Arrays.equals(source, starts[id], starts[id] + lengths[id], buffer, start, start + length);
+        }
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != buffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
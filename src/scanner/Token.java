@@ -3,14 +3,22 @@ package scanner;
 public class Token {
     private String content;
     private String type;
+    private TokenKind kind;
     private int line;
     private boolean isFirstToken;
     private boolean isLastToken;
 
     // Constructor
     public Token(String content, String type, int line) {
-        this.content = content;
+        this(content, TokenKind.classify(content, type), line);
         this.type = type;
+    }
+
+    // Constructor for a token whose kind is already known
+    public Token(String content, TokenKind kind, int line) {
+        this.content = content;
+        this.type = kind.getType();
+        this.kind = kind;
         this.line = line;
         this.isFirstToken = false;
         this.isLastToken = false;
@@ -26,6 +34,11 @@ public class Token {
         return type;
     }
 
+    // Getter for kind
+    public TokenKind getKind() {
+        return kind;
+    }
+
     // Getter for line number
     public int getLine() {
         return line;
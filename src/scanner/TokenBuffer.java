@@ -0,0 +1,152 @@
+package scanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Token sequence stored as parallel primitive arrays over the source characters.
+// Token text is not copied: it is the range [start, start + length) of the source,
+// and identifiers carry their interned symbol id.
+public class TokenBuffer {
+    private final char[] source;
+    private byte[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] symbols;
+    private int size;
+
+    public TokenBuffer(char[] source) {
+        this(source, Math.max(16, source.length / 4));
+    }
+
+    public TokenBuffer(char[] source, int capacity) {
+        this.source = source;
+        this.kinds = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.lines = new int[capacity];
+        this.symbols = new int[capacity];
+    }
+
+    // Append a token
+    public void add(TokenKind kind, int start, int length, int line, int symbol) {
+        if (size == kinds.length) {
+            grow();
+        }
+        kinds[size] = (byte) kind.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        symbols[size] = symbol;
+        size++;
+    }
+
+    // Append all tokens of a buffer lexed with another symbol table, re-interning its identifiers here.
+    // symbolMap caches the translation and must start out filled with -1.
+    public void addRemapped(TokenBuffer other, Symbols from, Symbols to, int[] symbolMap) {
+        int count = other.size;
+        while (size + count > kinds.length) {
+            grow();
+        }
+        System.arraycopy(other.kinds, 0, kinds, size, count);
+        System.arraycopy(other.starts, 0, starts, size, count);
+        System.arraycopy(other.lengths, 0, lengths, size, count);
+        System.arraycopy(other.lines, 0, lines, size, count);
+        for (int i = 0; i < count; i++) {
+            int symbol = other.symbols[i];
+            if (symbol >= 0) {
+                if (symbolMap[symbol] == -1) {
+                    symbolMap[symbol] = to.intern(from, symbol);
+                }
+                symbol = symbolMap[symbol];
+            }
+            symbols[size + i] = symbol;
+        }
+        size += count;
+    }
+
+    // Check that two buffers hold exactly the same tokens
+    public boolean sameTokens(TokenBuffer other) {
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (kinds[i] != other.kinds[i] || starts[i] != other.starts[i] || lengths[i] != other.lengths[i]
+                    || lines[i] != other.lines[i] || symbols[i] != other.symbols[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public char[] source() {
+        return source;
+    }
+
+    public TokenKind kind(int index) {
+        return TokenKind.fromOrdinal(kinds[index]);
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    // Interned symbol id of an identifier, or -1 for any other token
+    public int symbol(int index) {
+        return symbols[index];
+    }
+
+    // Text of a token; only literals and unknown operators allocate a new String
+    public String text(int index) {
+        TokenKind kind = kind(index);
+        if (kind.getText() != null) {
+            return kind.getText();
+        } else if (symbols[index] >= 0) {
+            return Symbols.GLOBAL.name(symbols[index]);
+        } else {
+            return new String(source, starts[index], lengths[index]);
+        }
+    }
+
+    // Materialize the tokens as Token objects, with the first and last tokens marked
+    public List<Token> toTokens() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(new Token(text(i), kind(i), lines[i]));
+        }
+
+        // Mark the first and last tokens
+        if (!tokens.isEmpty()) {
+            tokens.get(0).makeFirstToken();
+            tokens.get(tokens.size() - 1).makeLastToken();
+        }
+
+        return tokens;
+    }
+
+    public TokenBufferCursor cursor() {
+        return new TokenBufferCursor(this);
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, kinds.length * 2);
+        kinds = Arrays.copyOf(kinds, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        symbols = Arrays.copyOf(symbols, capacity);
+    }
+}
@@ -0,0 +1,52 @@
+package scanner;
+
+// Cursor over a token buffer; reading the current token allocates nothing
+public class TokenBufferCursor implements TokenCursor {
+    private final TokenBuffer tokens;
+    private int index;
+
+    public TokenBufferCursor(TokenBuffer tokens) {
+        this.tokens = tokens;
+        this.index = 0;
+    }
+
+    @Override
+    public TokenKind kind() {
+        return index < tokens.size() ? tokens.kind(index) : TokenKind.END_OF_INPUT;
+    }
+
+    @Override
+    public String value() {
+        return index < tokens.size() ? tokens.text(index) : TokenKind.END_OF_INPUT.getText();
+    }
+
+    @Override
+    public int symbol() {
+        return index < tokens.size() ? tokens.symbol(index) : -1;
+    }
+
+    @Override
+    public int line() {
+        if (tokens.size() == 0) {
+            return 1;
+        }
+        return tokens.line(Math.min(index, tokens.size() - 1));
+    }
+
+    @Override
+    public void advance() {
+        if (index < tokens.size()) {
+            index++;
+        }
+    }
+
+    // Index of the current token in the buffer
+    public int position() {
+        return index;
+    }
+
+    // Jump to the token at the given index
+    public void seek(int index) {
+        this.index = index;
+    }
+}
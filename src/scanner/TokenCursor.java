@@ -0,0 +1,21 @@
+package scanner;
+
+// Pull-based access to a token sequence, one token at a time.
+// After the last token the cursor reports END_OF_INPUT.
+public interface TokenCursor {
+
+    // Kind of the current token
+    TokenKind kind();
+
+    // Text of the current token
+    String value();
+
+    // Symbol id of the current identifier in Symbols.GLOBAL (in its own table for a TokenGapCursor), or -1 for other tokens
+    int symbol();
+
+    // Line of the current token, or of the last token once the input is exhausted
+    int line();
+
+    // Move to the next token
+    void advance();
+}
@@ -0,0 +1,39 @@
+package scanner;
+
+// Result of re-tokenizing an edited source: which old tokens survived.
+// Old tokens [0, firstChanged) keep their index, old tokens from oldResume on moved to newResume on,
+// and the ones in between were replaced.
+public class TokenEdit {
+    private final int firstChanged;
+    private final int oldResume;
+    private final int newResume;
+
+    public TokenEdit(int firstChanged, int oldResume, int newResume) {
+        this.firstChanged = firstChanged;
+        this.oldResume = oldResume;
+        this.newResume = newResume;
+    }
+
+    public int getFirstChanged() {
+        return firstChanged;
+    }
+
+    public int getOldResume() {
+        return oldResume;
+    }
+
+    public int getNewResume() {
+        return newResume;
+    }
+
+    // New index of an old token, or -1 if it was replaced. The end of input counts as one more token.
+    public int map(int oldIndex) {
+        if (oldIndex < firstChanged) {
+            return oldIndex;
+        } else if (oldIndex >= oldResume) {
+            return oldIndex - oldResume + newResume;
+        } else {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package scanner;
+
+import java.util.Arrays;
+
+// Tokens of a SourceText that is edited repeatedly, kept as a gap buffer like the text itself.
+// The tokens after the gap store their offset and line relative to the shifts below, so an edit moves all of them
+// at once, and only the tokens between it and the previous edit are copied across the gap.
+// Identifiers are interned into the buffer's own symbol table.
+public class TokenGapBuffer {
+    private final SourceText text;
+    private final Symbols symbols;
+    private final TokenMark endMark = new TokenMark(-1);
+
+    private byte[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] symbolIds;
+    private TokenMark[] marks;
+    private int gapStart;
+    private int gapEnd;
+
+    // Added to the stored offset and line of every token after the gap
+    private int offsetShift;
+    private int lineShift;
+
+    public TokenGapBuffer(SourceText text, Symbols symbols) {
+        this.text = text;
+        this.symbols = symbols;
+        this.kinds = new byte[64];
+        this.starts = new int[64];
+        this.lengths = new int[64];
+        this.lines = new int[64];
+        this.symbolIds = new int[64];
+        this.marks = new TokenMark[64];
+        this.gapEnd = 64;
+    }
+
+    public int size() {
+        return kinds.length - (gapEnd - gapStart);
+    }
+
+    public SourceText text() {
+        return text;
+    }
+
+    public Symbols symbols() {
+        return symbols;
+    }
+
+    public TokenKind kind(int index) {
+        return TokenKind.fromOrdinal(kinds[slot(index)]);
+    }
+
+    public int start(int index) {
+        return index < gapStart ? starts[index] : starts[index + gapEnd - gapStart] + offsetShift;
+    }
+
+    public int length(int index) {
+        return lengths[slot(index)];
+    }
+
+    public int line(int index) {
+        return index < gapStart ? lines[index] : lines[index + gapEnd - gapStart] + lineShift;
+    }
+
+    // Id of an identifier in symbols(), or -1 for any other token
+    public int symbol(int index) {
+        return symbolIds[slot(index)];
+    }
+
+    // Text of a token; only literals and unknown operators allocate a new String
+    public String text(int index) {
+        TokenKind kind = kind(index);
+        if (kind.getText() != null) {
+            return kind.getText();
+        } else if (symbol(index) >= 0) {
+            return symbols.name(symbol(index));
+        }
+        int start = start(index);
+        return text.substring(start, start + length(index));
+    }
+
+    // Replace tokens [from, to) with the tokens of 'replacement', whose offsets and lines are already those of the
+    // edited text, and move the tokens after them by offsetShift characters and lineShift lines.
+    // Marks of the replaced tokens are dropped.
+    public void replace(int from, int to, TokenBuffer replacement, int offsetShift, int lineShift) {
+        moveGap(to);
+        for (int i = from; i < to; i++) {
+            if (marks[i] != null) {
+                marks[i].slot = -1;
+                marks[i] = null;
+            }
+        }
+        gapStart = from;
+
+        int count = replacement.size();
+        if (gapEnd - gapStart < count) {
+            grow(count);
+        }
+        for (int i = 0; i < count; i++) {
+            kinds[gapStart + i] = (byte) replacement.kind(i).ordinal();
+            starts[gapStart + i] = replacement.start(i);
+            lengths[gapStart + i] = replacement.length(i);
+            lines[gapStart + i] = replacement.line(i);
+            symbolIds[gapStart + i] = replacement.symbol(i);
+        }
+        gapStart += count;
+        this.offsetShift += offsetShift;
+        this.lineShift += lineShift;
+    }
+
+    // Mark of a token, made on first use; the end of input has a mark of its own
+    public TokenMark mark(int index) {
+        if (index == size()) {
+            return endMark;
+        }
+        int slot = slot(index);
+        if (marks[slot] == null) {
+            marks[slot] = new TokenMark(slot);
+        }
+        return marks[slot];
+    }
+
+    // Mark of a token if it has one, or null
+    public TokenMark findMark(int index) {
+        return index < size() ? marks[slot(index)] : null;
+    }
+
+    // Current index of a marked token, or -1 if the token was replaced
+    public int index(TokenMark mark) {
+        if (mark == endMark) {
+            return size();
+        }
+        return mark.slot < gapStart ? mark.slot : mark.slot - (gapEnd - gapStart);
+    }
+
+    public TokenGapCursor cursor() {
+        return new TokenGapCursor(this);
+    }
+
+    private int slot(int index) {
+        return index < gapStart ? index : index + gapEnd - gapStart;
+    }
+
+    // Move the gap to just before the token at 'index'
+    private void moveGap(int index) {
+        if (index < gapStart) {
+            int count = gapStart - index;
+            int to = gapEnd - count;
+            copy(index, to, count);
+            for (int i = to; i < gapEnd; i++) {
+                starts[i] -= offsetShift;
+                lines[i] -= lineShift;
+                if (marks[i] != null) {
+                    marks[i].slot = i;
+                }
+            }
+            Arrays.fill(marks, index, Math.min(gapStart, to), null);
+        } else if (index > gapStart) {
+            int count = index - gapStart;
+            copy(gapEnd, gapStart, count);
+            for (int i = gapStart; i < index; i++) {
+                starts[i] += offsetShift;
+                lines[i] += lineShift;
+                if (marks[i] != null) {
+                    marks[i].slot = i;
+                }
+            }
+            Arrays.fill(marks, Math.max(gapEnd, index), gapEnd + count, null);
+        }
+        gapEnd += index - gapStart;
+        gapStart = index;
+    }
+
+    private void copy(int from, int to, int count) {
+        System.arraycopy(kinds, from, kinds, to, count);
+        System.arraycopy(starts, from, starts, to, count);
+        System.arraycopy(lengths, from, lengths, to, count);
+        System.arraycopy(lines, from, lines, to, count);
+        System.arraycopy(symbolIds, from, symbolIds, to, count);
+        System.arraycopy(marks, from, marks, to, count);
+    }
+
+    // Widen the gap to hold at least 'needed' tokens
+    private void grow(int needed) {
+        int after = kinds.length - gapEnd;
+        int capacity = Math.max(kinds.length * 2, gapStart + needed + after + 64);
+        int newGapEnd = capacity - after;
+        kinds = widen(kinds, capacity, newGapEnd);
+        starts = widen(starts, capacity, newGapEnd);
+        lengths = widen(lengths, capacity, newGapEnd);
+        lines = widen(lines, capacity, newGapEnd);
+        symbolIds = widen(symbolIds, capacity, newGapEnd);
+        TokenMark[] newMarks = new TokenMark[capacity];
+        System.arraycopy(marks, 0, newMarks, 0, gapStart);
+        System.arraycopy(marks, gapEnd, newMarks, newGapEnd, after);
+        marks = newMarks;
+        gapEnd = newGapEnd;
+        for (int i = gapEnd; i < capacity; i++) {
+            if (marks[i] != null) {
+                marks[i].slot = i;
+            }
+        }
+    }
+
+    private byte[] widen(byte[] array, int capacity, int newGapEnd) {
+        byte[] wider = new byte[capacity];
+        System.arraycopy(array, 0, wider, 0, gapStart);
+        System.arraycopy(array, gapEnd, wider, newGapEnd, array.length - gapEnd);
+        return wider;
+    }
+
+    private int[] widen(int[] array, int capacity, int newGapEnd) {
+        int[] wider = new int[capacity];
+        System.arraycopy(array, 0, wider, 0, gapStart);
+        System.arraycopy(array, gapEnd, wider, newGapEnd, array.length - gapEnd);
+        return wider;
+    }
+}
@@ -0,0 +1,101 @@
+package scanner;
+
+// Kind of a token. Keywords, punctuation and the operators the grammar knows get a kind of their own,
+// so the parser can compare kinds instead of strings.
+public enum TokenKind {
+    IDENTIFIER("<IDENTIFIER>", null),
+    INTEGER("<INTEGER>", null),
+    STRING("<STRING>", null),
+    OPERATOR("<OPERATOR>", null),
+
+    // Keywords
+    LET("<KEYWORD>", "let"),
+    IN("<KEYWORD>", "in"),
+    WHERE("<KEYWORD>", "where"),
+    REC("<KEYWORD>", "rec"),
+    FN("<KEYWORD>", "fn"),
+    AUG("<KEYWORD>", "aug"),
+    OR("<KEYWORD>", "or"),
+    NOT("<KEYWORD>", "not"),
+    GR("<KEYWORD>", "gr"),
+    GE("<KEYWORD>", "ge"),
+    LS("<KEYWORD>", "ls"),
+    LE("<KEYWORD>", "le"),
+    EQ("<KEYWORD>", "eq"),
+    NE("<KEYWORD>", "ne"),
+    TRUE("<KEYWORD>", "true"),
+    FALSE("<KEYWORD>", "false"),
+    NIL("<KEYWORD>", "nil"),
+    DUMMY("<KEYWORD>", "dummy"),
+    WITHIN("<KEYWORD>", "within"),
+    AND("<KEYWORD>", "and"),
+
+    // Punctuation
+    LEFT_PAREN("<PUNCTUATION>", "("),
+    RIGHT_PAREN("<PUNCTUATION>", ")"),
+    SEMICOLON("<PUNCTUATION>", ";"),
+    COMMA("<PUNCTUATION>", ","),
+
+    // Operators used by the grammar
+    ARROW("<OPERATOR>", "->"),
+    BAR("<OPERATOR>", "|"),
+    DOT("<OPERATOR>", "."),
+    EQUALS("<OPERATOR>", "="),
+    AMPERSAND("<OPERATOR>", "&"),
+    PLUS("<OPERATOR>", "+"),
+    MINUS("<OPERATOR>", "-"),
+    STAR("<OPERATOR>", "*"),
+    SLASH("<OPERATOR>", "/"),
+    POWER("<OPERATOR>", "**"),
+    AT("<OPERATOR>", "@"),
+    GREATER("<OPERATOR>", ">"),
+    GREATER_EQUAL("<OPERATOR>", ">="),
+    LESS("<OPERATOR>", "<"),
+    LESS_EQUAL("<OPERATOR>", "<="),
+
+    // Past the last token
+    END_OF_INPUT("<EOF>", "end of input");
+
+    private static final TokenKind[] VALUES = values();
+
+    private final String type;
+    private final String text;
+
+    TokenKind(String type, String text) {
+        this.type = type;
+        this.text = text;
+    }
+
+    // Type tag as reported by Token.getType(), e.g. "<IDENTIFIER>"
+    public String getType() {
+        return type;
+    }
+
+    // Fixed spelling of the token, or null for identifiers, literals and unknown operators
+    public String getText() {
+        return text;
+    }
+
+    public static TokenKind fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    // Kind of a token described by its text and type tag
+    public static TokenKind classify(String text, String type) {
+        switch (type) {
+            case "<IDENTIFIER>":
+                return IDENTIFIER;
+            case "<INTEGER>":
+                return INTEGER;
+            case "<STRING>":
+                return STRING;
+            default:
+                for (TokenKind kind : VALUES) {
+                    if (text.equals(kind.text) && type.equals(kind.type)) {
+                        return kind;
+                    }
+                }
+                return OPERATOR;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package scanner;
+
+import java.util.List;
+
+// Cursor over tokens that were already collected into a list
+public class TokenListCursor implements TokenCursor {
+    private final List<Token> tokens;
+    private int currentIndex;
+
+    public TokenListCursor(List<Token> tokens) {
+        this.tokens = tokens;
+        this.currentIndex = 0;
+    }
+
+    @Override
+    public TokenKind kind() {
+        return currentIndex < tokens.size() ? tokens.get(currentIndex).getKind() : TokenKind.END_OF_INPUT;
+    }
+
+    @Override
+    public String value() {
+        return currentIndex < tokens.size() ? tokens.get(currentIndex).getValue() : TokenKind.END_OF_INPUT.getText();
+    }
+
+    @Override
+    public int symbol() {
+        return kind() == TokenKind.IDENTIFIER ? Symbols.GLOBAL.intern(value()) : -1;
+    }
+
+    @Override
+    public int line() {
+        if (tokens.isEmpty()) {
+            return 1;
+        }
+        return tokens.get(Math.min(currentIndex, tokens.size() - 1)).getLine();
+    }
+
+    @Override
+    public void advance() {
+        if (currentIndex < tokens.size()) {
+            currentIndex++;
+        }
+    }
+}
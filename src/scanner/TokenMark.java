@@ -0,0 +1,22 @@
+package scanner;
+
+// A token of a TokenGapBuffer that is followed through later edits, e.g. the first token of a parsed subtree.
+// The mark knows where its token is kept, so TokenGapBuffer.index finds it without searching.
+public final class TokenMark {
+    // Index of the token in the buffer's arrays, or -1 once the token was replaced
+    int slot;
+    private Object attachment;
+
+    TokenMark(int slot) {
+        this.slot = slot;
+    }
+
+    // Whatever the owner of the buffer keeps for this token
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+}
@@ -0,0 +1,54 @@
+package scanner;
+
+// Cursor that lexes tokens on demand instead of materializing the whole token list.
+// The current token is kept as its kind, line and symbol id, with its characters marked in the reader's window;
+// no Token is created, and the text of an integer or string is only copied out when value() asks for it.
+public class TokenStream implements TokenCursor {
+    private final LexicalAnalyzer lexer;
+    private TokenKind kind;
+    private String value;
+    private int currentSymbol;
+    private int lastLine;
+
+    public TokenStream(LexicalAnalyzer lexer) {
+        this.lexer = lexer;
+        this.lastLine = 1;
+        advance();
+    }
+
+    @Override
+    public TokenKind kind() {
+        return kind;
+    }
+
+    @Override
+    public String value() {
+        if (value == null) {
+            value = kind != TokenKind.END_OF_INPUT ? lexer.text(kind) : TokenKind.END_OF_INPUT.getText();
+        }
+        return value;
+    }
+
+    @Override
+    public int symbol() {
+        return kind != TokenKind.END_OF_INPUT ? currentSymbol : -1;
+    }
+
+    @Override
+    public int line() {
+        return lastLine;
+    }
+
+    @Override
+    public void advance() {
+        TokenKind next = lexer.scan();
+        value = null;
+        if (next != null) {
+            kind = next;
+            currentSymbol = lexer.symbol();
+            lastLine = lexer.line();
+        } else {
+            kind = TokenKind.END_OF_INPUT;
+        }
+    }
+}
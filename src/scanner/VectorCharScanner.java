@@ -0,0 +1,92 @@
+package scanner;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Scanner that classifies a whole vector of characters per step with the incubating vector API.
+// Needs --add-modules jdk.incubator.vector to compile and run; LexicalAnalyzer falls back to
+// ScalarCharScanner when this class cannot be loaded.
+public class VectorCharScanner implements CharScanner {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    // Most identifiers, numbers and gaps are short: check this many characters one by one before using vectors
+    private static final int SCALAR_PREFIX = 8;
+
+    private final ScalarCharScanner tail = new ScalarCharScanner();
+
+    @Override
+    public int skipBlanks(char[] buffer, int from, int to) {
+        int i = tail.skipBlanks(buffer, from, Math.min(to, from + SCALAR_PREFIX));
+        if (i < from + SCALAR_PREFIX) {
+            return i;
+        }
+        for (; i + LANES <= to; i += LANES) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, buffer, i);
+            VectorMask<Short> blank = chars.eq((short) ' ')
+                    .or(chars.eq((short) '\t'))
+                    .or(chars.eq((short) '\r'));
+            int first = blank.not().firstTrue();
+            if (first < LANES) {
+                return i + first;
+            }
+        }
+        return tail.skipBlanks(buffer, i, to);
+    }
+
+    @Override
+    public int skipIdentifierChars(char[] buffer, int from, int to) {
+        int i = tail.skipIdentifierChars(buffer, from, Math.min(to, from + SCALAR_PREFIX));
+        if (i < from + SCALAR_PREFIX) {
+            return i;
+        }
+        for (; i + LANES <= to; i += LANES) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, buffer, i);
+            // Setting bit 0x20 maps upper case letters onto lower case ones
+            ShortVector folded = chars.or((short) 0x20);
+            VectorMask<Short> identifier = inRange(folded, 'a', 'z')
+                    .or(inRange(chars, '0', '9'))
+                    .or(chars.eq((short) '_'));
+            int first = identifier.not().firstTrue();
+            if (first < LANES) {
+                return i + first;
+            }
+        }
+        return tail.skipIdentifierChars(buffer, i, to);
+    }
+
+    @Override
+    public int skipDigits(char[] buffer, int from, int to) {
+        int i = tail.skipDigits(buffer, from, Math.min(to, from + SCALAR_PREFIX));
+        if (i < from + SCALAR_PREFIX) {
+            return i;
+        }
+        for (; i + LANES <= to; i += LANES) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, buffer, i);
+            int first = inRange(chars, '0', '9').not().firstTrue();
+            if (first < LANES) {
+                return i + first;
+            }
+        }
+        return tail.skipDigits(buffer, i, to);
+    }
+
+    @Override
+    public int skipToNewline(char[] buffer, int from, int to) {
+        int i = from;
+        for (; i + LANES <= to; i += LANES) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, buffer, i);
+            int first = chars.eq((short) '\n').firstTrue();
+            if (first < LANES) {
+                return i + first;
+            }
+        }
+        return tail.skipToNewline(buffer, i, to);
+    }
+
+    // Characters are loaded as signed shorts, so anything from 0x8000 up is negative and never in range
+    private static VectorMask<Short> inRange(ShortVector chars, char low, char high) {
+        return chars.compare(VectorOperators.GE, (short) low).and(chars.compare(VectorOperators.LE, (short) high));
+    }
+}
@@ -0,0 +1,226 @@
+package standardizer;
+
+import parser.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Standardizes large Node trees on a ForkJoinPool.
+//
+// A rule only rearranges a node and its children, so disjoint subtrees can be standardized independently and
+// a node only waits for the subtrees below it. A walk goes down through the subtrees with at least 'threshold'
+// nodes. When a node has several of them (separate 'and' definitions, tau elements), all but one are walked by
+// forked tasks. Smaller subtrees, like the definitions hanging off a let chain, are collected into batches of
+// about 'threshold' nodes, each standardized sequentially by one task. A node's rule runs after the tasks
+// holding its children are joined, so the result is the tree Standardizer builds, on any number of threads.
+// AstArena trees append new nodes to shared arrays and are always standardized sequentially.
+public class ParallelStandardizer {
+    public static final int DEFAULT_THRESHOLD = 4096;
+    private static final int STEP = 16;
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    public ParallelStandardizer(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    public ParallelStandardizer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_THRESHOLD);
+    }
+
+    public static Node standardizeParallel(Node root) {
+        return new ParallelStandardizer().standardize(root);
+    }
+
+    public Node standardize(Node root) {
+        WalkTask walk = new WalkTask(root);
+        if (walk.size(root) < threshold) {
+            return Standardizer.standardizeSequentially(root);
+        }
+        pool.invoke(walk);
+        return root;
+    }
+
+    // Walks down one path of large subtrees, then applies the rules on the way back up.
+    // Tasks only live inside one standardization and are never serialized.
+    @SuppressWarnings("serial")
+    private class WalkTask extends RecursiveAction {
+        private final Node root;
+
+        // Nodes on the path, each with the index of its first task in 'tasks'
+        private Node[] nodes = new Node[64];
+        private int[] firstTasks = new int[64];
+        private int top;
+        private final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+        // Batch of small subtrees still being filled, and its number of nodes
+        private BatchTask batch;
+        private int batchSize;
+
+        // Stacks, remaining entries and sizes so far of the subtrees being counted
+        private Node[][] stacks = new Node[2][];
+        private int[] counts = new int[2];
+        private int[] sizes = new int[2];
+
+        private Node[] pending = new Node[64];
+
+        WalkTask(Node root) {
+            this.root = root;
+        }
+
+        @Override
+        protected void compute() {
+            for (Node node = root; node != null; ) {
+                node = enter(node);
+            }
+            while (top > 0) {
+                finish();
+            }
+        }
+
+        // Hand the node's children to tasks, except one, which is returned to be walked next.
+        // The children's subtrees are counted in turns until all but one are known to be small or large, so
+        // going down a long path costs about the size of the subtrees beside it, not 'threshold' per node.
+        private Node enter(Node node) {
+            if (top == nodes.length) {
+                nodes = Arrays.copyOf(nodes, top * 2);
+                firstTasks = Arrays.copyOf(firstTasks, top * 2);
+            }
+            nodes[top] = node;
+            firstTasks[top++] = tasks.size();
+
+            List<Node> children = node.getChildren();
+            int open = children.size();
+            if (open < 2) {
+                return open == 0 ? null : children.get(0);
+            }
+            if (open > stacks.length) {
+                stacks = Arrays.copyOf(stacks, open);
+                counts = new int[open];
+                sizes = new int[open];
+            }
+            for (int i = 0; i < open; i++) {
+                if (stacks[i] == null) {
+                    stacks[i] = new Node[64];
+                }
+                stacks[i][0] = children.get(i);
+                counts[i] = 1;
+                sizes[i] = 0;
+            }
+            while (true) {
+                for (int i = 0; i < children.size(); i++) {
+                    if (counts[i] == 0) {
+                        continue;
+                    }
+                    count(i);
+                    if (counts[i] == 0 || sizes[i] >= threshold) {
+                        if (counts[i] == 0) {
+                            addToBatch(children.get(i), sizes[i]);
+                        } else {
+                            counts[i] = 0;
+                            tasks.add(new WalkTask(children.get(i)).fork());
+                        }
+                        if (--open == 1) {
+                            for (int j = 0; j < children.size(); j++) {
+                                if (counts[j] > 0) {
+                                    return children.get(j);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // Count up to STEP more nodes of the subtree of child i
+        private void count(int i) {
+            Node[] stack = stacks[i];
+            int count = counts[i];
+            int size = sizes[i];
+            for (int step = 0; step < STEP && count > 0; step++) {
+                Node node = stack[--count];
+                size++;
+                List<Node> children = node.getChildren();
+                if (count + children.size() > stack.length) {
+                    stack = Arrays.copyOf(stack, Math.max(stack.length * 2, count + children.size()));
+                    stacks[i] = stack;
+                }
+                for (Node child : children) {
+                    stack[count++] = child;
+                }
+            }
+            counts[i] = count;
+            sizes[i] = size;
+        }
+
+        private void addToBatch(Node child, int size) {
+            if (batch == null) {
+                batch = new BatchTask();
+            }
+            batch.roots.add(child);
+            batchSize += size;
+            if (tasks.size() == firstTasks[top - 1] || tasks.get(tasks.size() - 1) != batch) {
+                tasks.add(batch);
+            }
+            if (batchSize >= threshold) {
+                batch.fork();
+                batch = null;
+                batchSize = 0;
+            }
+        }
+
+        // Join the tasks holding the children of the deepest node on the path, then apply its rule
+        private void finish() {
+            Node node = nodes[--top];
+            nodes[top] = null;
+            int first = firstTasks[top];
+            if (batch != null && tasks.subList(first, tasks.size()).contains(batch)) {
+                batch.fork();
+                batch = null;
+                batchSize = 0;
+            }
+            for (int i = tasks.size() - 1; i >= first; i--) {
+                tasks.remove(i).join();
+            }
+            Standardizer.standardize(node);
+        }
+
+        // Number of nodes in the subtree, counting no further than the threshold
+        int size(Node subtree) {
+            int size = 0;
+            int count = 0;
+            pending[count++] = subtree;
+            while (count > 0 && size < threshold) {
+                Node node = pending[--count];
+                size++;
+                List<Node> children = node.getChildren();
+                if (count + children.size() > pending.length) {
+                    pending = Arrays.copyOf(pending, Math.max(pending.length * 2, count + children.size()));
+                }
+                for (Node child : children) {
+                    pending[count++] = child;
+                }
+            }
+            return size;
+        }
+    }
+
+    // Standardizes a batch of small subtrees one after the other
+    @SuppressWarnings("serial")
+    private static class BatchTask extends RecursiveAction {
+        private final List<Node> roots = new ArrayList<>();
+
+        @Override
+        protected void compute() {
+            for (Node root : roots) {
+                Standardizer.standardizeSequentially(root);
+            }
+        }
+    }
+}
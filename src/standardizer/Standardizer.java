@@ -1,164 +1,378 @@
 package standardizer;
 
+import parser.AstArena;
 import parser.Node;
+import parser.NodeKind;
 import parser.Parser;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class Standardizer {
+    // -Drpal.standardizer=parallel standardizes large Node trees on the common ForkJoinPool
+    private static final boolean PARALLEL = "parallel".equals(System.getProperty("rpal.standardizer"));
 
     public static Node standardize(String fileName) throws IOException {
         Node ast = Parser.parse(fileName);
         return makeStandardizedTree(ast);
     }
 
+    // Parse and standardize a file without creating Node objects
+    public static AstArena standardizeArena(String fileName) throws IOException {
+        AstArena ast = Parser.parseArena(fileName);
+        return makeStandardizedTree(ast);
+    }
+
     public static Node makeStandardizedTree(Node root) {
-        // Recursively standardize each child first
-        for (Node child : root.getChildren()) {
-            makeStandardizedTree(child);
+        if (PARALLEL) {
+            return ParallelStandardizer.standardizeParallel(root);
         }
+        return standardizeSequentially(root);
+    }
 
-        // Apply transformations with debug print statements
-        if (root.getValue().equals("let") && root.getChildren().get(0).getValue().equals("=")) {
+    // Standardize the tree bottom-up: every node after all of its children, as the rules require.
+    // The walk keeps its own stack of nodes and child positions, so the depth of the tree is not limited by
+    // the thread stack. A node's children are only rearranged by its own rule or its parent's, which run
+    // after the walk has passed them.
+    static Node standardizeSequentially(Node root) {
+        Node[] nodes = new Node[64];
+        int[] positions = new int[64];
+        int top = 0;
+        nodes[top++] = root;
+
+        while (top > 0) {
+            Node node = nodes[top - 1];
+            List<Node> children = node.getChildren();
+            int position = positions[top - 1];
+            if (position < children.size()) {
+                positions[top - 1] = position + 1;
+                if (top == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, top * 2);
+                    positions = Arrays.copyOf(positions, top * 2);
+                }
+                nodes[top] = children.get(position);
+                positions[top++] = 0;
+            } else {
+                nodes[--top] = null;
+                standardize(node);
+            }
+        }
+        return root;
+    }
 
-            Node child0 = root.getChildren().get(0);
-            Node child1 = root.getChildren().get(1);
+    // Apply the rule for the node's kind, if any, to a node whose children are standardized
+    static void standardize(Node root) {
+        List<Node> children = root.getChildren();
+        switch (root.getKind()) {
+            case LET:
+                // let (= X E) P  =>  gamma (lambda X P) E
+                if (children.get(0).getKind() == NodeKind.EQUALS) {
+                    Node child0 = children.get(0);
+                    Node child1 = children.get(1);
+
+                    children.set(1, child0.getChildren().get(1));
+                    child0.getChildren().set(1, child1);
+                    child0.setKind(NodeKind.LAMBDA);
+                    root.setKind(NodeKind.GAMMA);
+                }
+                break;
+
+            case WHERE:
+                // where P (= X E)  =>  gamma (lambda X P) E
+                if (children.get(1).getKind() == NodeKind.EQUALS) {
+                    Node child0 = children.get(0);
+                    Node child1 = children.get(1);
+
+                    Node expression = child1.getChildren().get(1);
+                    child1.getChildren().set(1, child0);
+                    child1.setKind(NodeKind.LAMBDA);
+                    children.set(0, child1);
+                    children.set(1, expression);
+                    root.setKind(NodeKind.GAMMA);
+                }
+                break;
+
+            case FUNCTION_FORM: {
+                // function_form P V1 .. Vn E  =>  = P (lambda V1 (.. (lambda Vn E)))
+                Node body = children.get(children.size() - 1);
+                for (int i = children.size() - 2; i >= 1; i--) {
+                    Node lambdaNode = new Node(NodeKind.LAMBDA);
+                    lambdaNode.addChild(children.get(i));
+                    lambdaNode.addChild(body);
+                    body = lambdaNode;
+                }
+                Node name = children.get(0);
+                children.clear();
+                children.add(name);
+                children.add(body);
+                root.setKind(NodeKind.EQUALS);
+                break;
+            }
 
-            root.getChildren().set(1, child0.getChildren().get(1));
-            child0.getChildren().set(1, child1);
-            child0.setValue("lambda");
-            root.setValue("gamma");
+            case GAMMA: {
+                // The parser only builds binary gammas. For k > 2 children this gives the tree the original
+                // list manipulation did: with n = k / 2 lambdas, gamma C0 C(n+1) .. C(k-2) L1,
+                // where Li = lambda Ci L(i+1) and Ln = lambda Cn C(k-1)
+                int k = children.size();
+                if (k > 2) {
+                    int n = k / 2;
+                    Node body = children.get(k - 1);
+                    for (int i = n; i >= 1; i--) {
+                        Node lambdaNode = new Node(NodeKind.LAMBDA);
+                        lambdaNode.addChild(children.get(i));
+                        lambdaNode.addChild(body);
+                        body = lambdaNode;
+                    }
+                    List<Node> rest = new ArrayList<>(k - n);
+                    rest.add(children.get(0));
+                    rest.addAll(children.subList(n + 1, k - 1));
+                    rest.add(body);
+                    root.setChildren(rest);
+                }
+                break;
+            }
 
-        } else if (root.getValue().equals("where") && root.getChildren().get(1).getValue().equals("=")) {
+            case WITHIN:
+                // within (= X1 E1) (= X2 E2)  =>  = X2 (gamma (lambda X1 E2) E1)
+                if (children.get(0).getKind() == NodeKind.EQUALS && children.get(1).getKind() == NodeKind.EQUALS) {
+                    Node child0 = children.get(1).getChildren().get(0);
+                    Node gammaNode = new Node(NodeKind.GAMMA);
 
-            Node child0 = root.getChildren().get(0);
-            Node child1 = root.getChildren().get(1);
+                    Node lambdaNode = new Node(NodeKind.LAMBDA);
+                    lambdaNode.addChild(children.get(0).getChildren().get(0));
+                    lambdaNode.addChild(children.get(1).getChildren().get(1));
 
-            root.getChildren().set(0, child1.getChildren().get(1));
-            child1.getChildren().set(1, child0);
-            child1.setValue("lambda");
-            // Swap the two children
-            Node temp = root.getChildren().get(0);
-            root.getChildren().set(0, child1); // lambda node
-            root.getChildren().set(1, temp);   // E
-            root.setValue("gamma");
+                    gammaNode.addChild(lambdaNode);
+                    gammaNode.addChild(children.get(0).getChildren().get(1));
 
-        } else if (root.getValue().equals("function_form")) {
+                    children.set(0, child0);
+                    children.set(1, gammaNode);
+                    root.setKind(NodeKind.EQUALS);
+                }
+                break;
+
+            case AT: {
+                // @ E1 N E2  =>  gamma (gamma N E1) E2
+                Node gammaNode = new Node(NodeKind.GAMMA);
+                gammaNode.addChild(children.get(1));
+                gammaNode.addChild(children.get(0));
+
+                children.set(1, children.get(2));
+                children.set(0, gammaNode);
+                children.remove(2);
+                root.setKind(NodeKind.GAMMA);
+                break;
+            }
 
-            int numChildren = root.getChildren().size(); // Store size before modifying the tree
+            case AND: {
+                // and (= X1 E1) .. (= Xn En)  =>  = (, X1 .. Xn) (tau E1 .. En)
+                Node commaNode = new Node(NodeKind.COMMA);
+                Node tauNode = new Node(NodeKind.TAU);
 
-            // Remove and store the last child as expression E
-            Node expression = root.getChildren().remove(root.getChildren().size() - 1);
+                for (Node child : children) {
+                    commaNode.addChild(child.getChildren().get(0));
+                    tauNode.addChild(child.getChildren().get(1));
+                }
 
-            Node currentNode = root;
+                children.clear();
+                children.add(commaNode);
+                children.add(tauNode);
+                root.setKind(NodeKind.EQUALS);
+                break;
+            }
 
-            if (numChildren == 3) {
+            case REC: {
+                // rec (= X E)  =>  = X (gamma <Y*> (lambda X E)); X is shared by both places
+                Node temp = children.remove(0);
+                temp.setKind(NodeKind.LAMBDA);
 
-                // Remove and wrap the single variable in a lambda
-                Node lambdaNode = new Node("lambda");
-                Node variable = root.getChildren().remove(1); // Second child is variable (V)
-                lambdaNode.addChild(variable);
-                lambdaNode.addChild(expression);
+                Node gammaNode = new Node(NodeKind.GAMMA);
+                gammaNode.addChild(new Node(NodeKind.Y_STAR));
+                gammaNode.addChild(temp);
 
-                // Add lambda to root and set '='
-                root.addChild(lambdaNode);
-                root.setValue("=");
-            } else {
+                children.add(temp.getChildren().get(0));
+                children.add(gammaNode);
+                root.setKind(NodeKind.EQUALS);
+                break;
+            }
 
-                // Handle multiple variables
-                while (root.getChildren().size() > 2) {
-                    Node lambdaNode = new Node("lambda");
+            default:
+                break;
+        }
+    }
 
-                    // Remove the second element (variable) and attach to lambda
-                    Node variable = root.getChildren().remove(1);
-                    lambdaNode.addChild(variable);
+    // Standardize a tree held in an arena, in place; applies the same transformations as above
+    public static AstArena makeStandardizedTree(AstArena ast) {
+        makeStandardizedTree(ast, ast.root());
+        return ast;
+    }
 
-                    // Attach lambda to currentNode
-                    currentNode.addChild(lambdaNode);
-                    currentNode = lambdaNode;
+    private static void makeStandardizedTree(AstArena ast, int root) {
+        // Same walk as for Nodes; each entry holds a node and the next of its children to visit
+        int[] nodes = new int[64];
+        int[] nextChildren = new int[64];
+        int top = 0;
+        nodes[top] = root;
+        nextChildren[top++] = ast.firstChild(root);
+
+        while (top > 0) {
+            int child = nextChildren[top - 1];
+            if (child != -1) {
+                nextChildren[top - 1] = ast.nextSibling(child);
+                if (top == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, top * 2);
+                    nextChildren = Arrays.copyOf(nextChildren, top * 2);
                 }
-
-                // Attach the final expression to the innermost lambda
-                currentNode.addChild(expression);
-                root.setValue("=");
+                nodes[top] = child;
+                nextChildren[top++] = ast.firstChild(child);
+            } else {
+                standardize(ast, nodes[--top]);
             }
-
         }
+    }
 
-        else if (root.getValue().equals("gamma") && root.getChildren().size() > 2) {
-            Node expression = root.getChildren().remove(root.getChildren().size() - 1);
-
-            Node currentNode = root;
-            for (int i = 1; i < root.getChildren().size(); i++) {
-                Node lambdaNode = new Node("lambda");
-                Node child = root.getChildren().remove(1);
-                lambdaNode.addChild(child);
-                currentNode.addChild(lambdaNode);
-                currentNode = lambdaNode;
+    private static void standardize(AstArena ast, int root) {
+        int child0 = ast.firstChild(root);
+        int child1 = child0 != -1 ? ast.nextSibling(child0) : -1;
+
+        switch (ast.kind(root)) {
+            case LET:
+                if (ast.kind(child0) == NodeKind.EQUALS) {
+                    // let (= X E) P  =>  gamma (lambda X P) E
+                    int variable = ast.firstChild(child0);
+                    int expression = ast.nextSibling(variable);
+                    ast.setChildren(child0, variable, child1);
+                    ast.setKind(child0, NodeKind.LAMBDA);
+                    ast.setChildren(root, child0, expression);
+                    ast.setKind(root, NodeKind.GAMMA);
+                }
+                break;
+
+            case WHERE:
+                if (ast.kind(child1) == NodeKind.EQUALS) {
+                    // where P (= X E)  =>  gamma (lambda X P) E
+                    int variable = ast.firstChild(child1);
+                    int expression = ast.nextSibling(variable);
+                    ast.setChildren(child1, variable, child0);
+                    ast.setKind(child1, NodeKind.LAMBDA);
+                    ast.setChildren(root, child1, expression);
+                    ast.setKind(root, NodeKind.GAMMA);
+                }
+                break;
+
+            case FUNCTION_FORM: {
+                // function_form P V1 .. Vn E  =>  = P (lambda V1 (.. (lambda Vn E)))
+                int[] children = children(ast, root);
+                int body = children[children.length - 1];
+                for (int i = children.length - 2; i >= 1; i--) {
+                    int lambda = ast.add(NodeKind.LAMBDA);
+                    ast.setChildren(lambda, children[i], body);
+                    body = lambda;
+                }
+                ast.setChildren(root, children[0], body);
+                ast.setKind(root, NodeKind.EQUALS);
+                break;
             }
 
-            currentNode.addChild(expression);
-
-        } else if (root.getValue().equals("within") &&
-                root.getChildren().get(0).getValue().equals("=") &&
-                root.getChildren().get(1).getValue().equals("=")) {
-
-
-            Node child0 = root.getChildren().get(1).getChildren().get(0);
-            Node gammaNode = new Node("gamma");
-
-            Node lambdaNode = new Node("lambda");
-            lambdaNode.addChild(root.getChildren().get(0).getChildren().get(0));
-            lambdaNode.addChild(root.getChildren().get(1).getChildren().get(1));
-
-            gammaNode.addChild(lambdaNode);
-            gammaNode.addChild(root.getChildren().get(0).getChildren().get(1));
-
-            root.getChildren().set(0, child0);
-            root.getChildren().set(1, gammaNode);
-            root.setValue("=");
-
-        } else if (root.getValue().equals("@")) {
-            Node expression = root.getChildren().remove(0);
-            Node identifier = root.getChildren().get(0);
-
-            Node gammaNode = new Node("gamma");
-            gammaNode.addChild(identifier);
-            gammaNode.addChild(expression);
+            case GAMMA: {
+                // Same tree as for Nodes: gamma C0 C(n+1) .. C(k-2) L1 with n = k / 2 lambdas
+                int[] children = children(ast, root);
+                int k = children.length;
+                if (k > 2) {
+                    int n = k / 2;
+                    int body = children[k - 1];
+                    for (int i = n; i >= 1; i--) {
+                        int lambda = ast.add(NodeKind.LAMBDA);
+                        ast.setChildren(lambda, children[i], body);
+                        body = lambda;
+                    }
+                    int[] rest = new int[k - n];
+                    rest[0] = children[0];
+                    System.arraycopy(children, n + 1, rest, 1, k - n - 2);
+                    rest[k - n - 1] = body;
+                    ast.setChildren(root, rest);
+                }
+                break;
+            }
 
-            root.getChildren().set(0, gammaNode);
-            root.setValue("gamma");
+            case WITHIN:
+                if (ast.kind(child0) == NodeKind.EQUALS && ast.kind(child1) == NodeKind.EQUALS) {
+                    // within (= X1 E1) (= X2 E2)  =>  = X2 (gamma (lambda X1 E2) E1)
+                    int variable1 = ast.firstChild(child0);
+                    int expression1 = ast.nextSibling(variable1);
+                    int variable2 = ast.firstChild(child1);
+                    int expression2 = ast.nextSibling(variable2);
+
+                    int lambdaNode = ast.add(NodeKind.LAMBDA);
+                    ast.setChildren(lambdaNode, variable1, expression2);
+                    int gammaNode = ast.add(NodeKind.GAMMA);
+                    ast.setChildren(gammaNode, lambdaNode, expression1);
+
+                    ast.setChildren(root, variable2, gammaNode);
+                    ast.setKind(root, NodeKind.EQUALS);
+                }
+                break;
+
+            case AT: {
+                // @ E1 N E2  =>  gamma (gamma N E1) E2
+                int identifier = child1;
+                int expression = ast.nextSibling(identifier);
+
+                int gammaNode = ast.add(NodeKind.GAMMA);
+                ast.setChildren(gammaNode, identifier, child0);
+                ast.setChildren(root, gammaNode, expression);
+                ast.setKind(root, NodeKind.GAMMA);
+                break;
+            }
 
-        } else if (root.getValue().equals("and")) {
+            case AND: {
+                // and (= X1 E1) .. (= Xn En)  =>  = (, X1 .. Xn) (tau E1 .. En)
+                int[] definitions = children(ast, root);
+                int[] variables = new int[definitions.length];
+                int[] expressions = new int[definitions.length];
+                for (int i = 0; i < definitions.length; i++) {
+                    variables[i] = ast.firstChild(definitions[i]);
+                    expressions[i] = ast.nextSibling(variables[i]);
+                }
 
-            Node commaNode = new Node(",");
-            Node tauNode = new Node("tau");
+                int commaNode = ast.add(NodeKind.COMMA);
+                ast.setChildren(commaNode, variables);
+                int tauNode = ast.add(NodeKind.TAU);
+                ast.setChildren(tauNode, expressions);
 
-            for (Node child : root.getChildren()) {
-                commaNode.addChild(child.getChildren().get(0));
-                tauNode.addChild(child.getChildren().get(1));
+                ast.setChildren(root, commaNode, tauNode);
+                ast.setKind(root, NodeKind.EQUALS);
+                break;
             }
 
-            root.getChildren().clear();
-            root.addChild(commaNode);
-            root.addChild(tauNode);
-            root.setValue("=");
+            case REC: {
+                // rec (= X E)  =>  = X (gamma <Y*> (lambda X E))
+                // The Node version shares X between both places; an arena node has one parent, so X is copied
+                ast.setKind(child0, NodeKind.LAMBDA);
+                int variable = ast.copy(ast.firstChild(child0));
 
-        } else if (root.getValue().equals("rec")) {
+                int gammaNode = ast.add(NodeKind.GAMMA);
+                ast.setChildren(gammaNode, ast.add(NodeKind.Y_STAR), child0);
 
-            Node temp = root.getChildren().remove(0);
-            temp.setValue("lambda");
-
-            Node gammaNode = new Node("gamma");
-            gammaNode.addChild(new Node("<Y*>"));
-            gammaNode.addChild(temp);
-
-            root.addChild(temp.getChildren().get(0));
-            root.addChild(gammaNode);
-            root.setValue("=");
+                ast.setChildren(root, variable, gammaNode);
+                ast.setKind(root, NodeKind.EQUALS);
+                break;
+            }
 
+            default:
+                break;
         }
+    }
 
-        return root;
+    private static int[] children(AstArena ast, int node) {
+        int[] children = new int[ast.childCount(node)];
+        int child = ast.firstChild(node);
+        for (int i = 0; i < children.length; i++) {
+            children[i] = child;
+            child = ast.nextSibling(child);
+        }
+        return children;
     }
 
     private static void printTree(Node root) {
@@ -0,0 +1,106 @@
+package standardizer;
+
+import parser.Node;
+import parser.NodeKind;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Hash-consing of standardized trees: structurally equal subtrees are replaced by one shared node, which turns
+// the tree into a DAG. Subtrees are shared bottom-up, so two nodes are equal when they have the same kind and text
+// and the very same, already shared, children; no comparison looks deeper than one level.
+// A shared tree reads like the original, but it must not be standardized or otherwise modified afterwards.
+public class TreeSharing {
+    private final Map<Shape, Node> shapes = new HashMap<>();
+    private int nodes;
+
+    public static Node share(Node root) {
+        return new TreeSharing().shareTree(root);
+    }
+
+    // Share the subtrees of a tree, also with the trees shared before by this instance; returns the new root
+    public Node shareTree(Node root) {
+        Node[] path = new Node[64];
+        int[] positions = new int[64];
+        int top = 0;
+        path[top++] = root;
+
+        while (true) {
+            Node node = path[top - 1];
+            List<Node> children = node.getChildren();
+            int position = positions[top - 1];
+            if (position < children.size()) {
+                positions[top - 1] = position + 1;
+                if (top == path.length) {
+                    path = Arrays.copyOf(path, top * 2);
+                    positions = Arrays.copyOf(positions, top * 2);
+                }
+                path[top] = children.get(position);
+                positions[top++] = 0;
+            } else {
+                path[--top] = null;
+                nodes++;
+                Node shared = shapes.computeIfAbsent(new Shape(node), shape -> node);
+                if (top == 0) {
+                    return shared;
+                }
+                path[top - 1].getChildren().set(positions[top - 1] - 1, shared);
+            }
+        }
+    }
+
+    // Nodes in the trees as they were
+    public int getNodes() {
+        return nodes;
+    }
+
+    // Nodes left after sharing
+    public int getSharedNodes() {
+        return shapes.size();
+    }
+
+    // Kind, text and children of a node whose children are shared already
+    private static class Shape {
+        private final NodeKind kind;
+        private final String text;
+        private final List<Node> children;
+        private final int hash;
+
+        Shape(Node node) {
+            this.kind = node.getKind();
+            this.text = node.getText();
+            this.children = node.getChildren();
+            int hash = kind.hashCode() * 31 + Objects.hashCode(text);
+            for (Node child : children) {
+                hash = hash * 31 + System.identityHashCode(child);
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Shape)) {
+                return false;
+            }
+            Shape shape = (Shape) other;
+            if (hash != shape.hash || kind != shape.kind || !Objects.equals(text, shape.text)
+                    || children.size() != shape.children.size()) {
+                return false;
+            }
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i) != shape.children.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
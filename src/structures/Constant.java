@@ -0,0 +1,30 @@
+package structures;
+
+import java.math.BigInteger;
+
+// Literal pushed onto the stack as it is: an integer, a string, a truth value, nil, dummy or Y*
+public class Constant {
+    private final Object value;
+
+    public Constant(Object value) {
+        this.value = value;
+    }
+
+    // Integer literal from its digits: a Long, or a BigInteger beyond the range of long
+    public static Constant integer(String digits) {
+        try {
+            return new Constant(Long.parseLong(digits));
+        } catch (NumberFormatException e) {
+            return new Constant(new BigInteger(digits));
+        }
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "Constant(value=" + value + ")";
+    }
+}
@@ -0,0 +1,32 @@
+package structures;
+
+// Name of a variable with its address: the variable is in slot 'slot' of the environment 'depth' lambdas out from
+// the one it is used in. A depth of -1 means the name is bound nowhere around it.
+public class Identifier {
+    private final String name;
+    private final int depth;
+    private final int slot;
+
+    public Identifier(String name, int depth, int slot) {
+        this.name = name;
+        this.depth = depth;
+        this.slot = slot;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public String toString() {
+        return "Identifier(name=" + name + ", depth=" + depth + ", slot=" + slot + ")";
+    }
+}
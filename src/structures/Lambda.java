@@ -1,38 +1,66 @@
 package structures;
 
+import csemachine.Environment;
+
 // Lambda structure
 public class Lambda {
     private int number;
+    private int label;
     private String boundedVariable;
-    private int environment;
+    private String[] boundedVariables;
+    private Environment environment;
 
     public Lambda(int number) {
         this.number = number;
+        this.label = number;
     }
 
     public int getNumber() {
         return number;
     }
 
+    // Number printed for the closure: the lambda's number before repeated bodies were shared
+    public int getLabel() {
+        return label;
+    }
+
+    public void setLabel(int label) {
+        this.label = label;
+    }
+
+    // Bound variables joined with commas, as printed
     public String getBoundedVariable() {
+        if (boundedVariable == null && boundedVariables != null) {
+            boundedVariable = String.join(",", boundedVariables);
+        }
         return boundedVariable;
     }
 
     public void setBoundedVariable(String boundedVariable) {
         this.boundedVariable = boundedVariable;
+        this.boundedVariables = boundedVariable.split(",");
+    }
+
+    public String[] getBoundedVariables() {
+        return boundedVariables;
+    }
+
+    public void setBoundedVariables(String[] boundedVariables) {
+        this.boundedVariable = null;
+        this.boundedVariables = boundedVariables;
     }
 
-    public int getEnvironment() {
+    public Environment getEnvironment() {
         return environment;
     }
 
-    public void setEnvironment(int environment) {
+    public void setEnvironment(Environment environment) {
         this.environment = environment;
     }
 
         @Override
     public String toString() {
-        return "Lambda(number=" + number + ", boundedVariable=" + boundedVariable + ", environment=" + environment + ")";
+        return "Lambda(number=" + label + ", boundedVariable=" + getBoundedVariable() + ", environment=" + (environment == null ? 0 : environment.getNumber()) + ")";
     }
 
 }